@@ -0,0 +1,188 @@
+package me.jezza.ion;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Drops datagrams this node has already received, before they're journaled, or decoded.
+ * <p>
+ * Every frame carries a sequence number that's unique to the node that sent it, and the lane (Interface) it was sent on, see {@link Frame}.
+ * A lane's sequence numbers are stamped as its frames leave, so only the network can reorder them, not the sender's priorities, or its routes.
+ * For each lane of each sender, all that's kept is the highest sequence number seen so far, and a bitmap of which of the {@link #WINDOW} sequence numbers up to it were seen.
+ * A frame is only let through if its bit isn't set yet. Anything older than the window is dropped as well, as there's no telling whether it was already seen,
+ * so a frame that the network lets more than {@link #WINDOW} others of its lane overtake is lost.
+ * <p>
+ * Senders are looked up without boxing their id, so this doesn't allocate anything either, once a sender is known.
+ * At most {@link #SENDERS} lanes are tracked at once. Senders that go quiet for {@link #IDLE} are forgotten, to make room for new ones,
+ * and if there still isn't any room, datagrams from a new sender are let through unchecked, rather than dropped.
+ *
+ * @author Jezza
+ */
+final class Deduplication {
+	/** how far back each sender's bitmap reaches, a power of two */
+	static final int WINDOW = 1024;
+	static final int SENDERS = 4096;
+	static final long IDLE = TimeUnit.MINUTES.toNanos(5);
+
+	private static final int BUCKETS = 256;
+	private static final Window[] EMPTY = new Window[0];
+
+	/**
+	 * Indexed by the hash of the sender's id, each bucket is copied on write. Writes are guarded by this.
+	 */
+	private final AtomicReferenceArray<Window[]> buckets = new AtomicReferenceArray<>(BUCKETS);
+	private int senders;
+
+	private final LongAdder dropped = new LongAdder();
+	private final LongSupplier clock;
+
+	Deduplication() {
+		this(System::nanoTime);
+	}
+
+	/**
+	 * @param clock - Where the time senders were last heard from comes from, in nanoseconds.
+	 */
+	Deduplication(LongSupplier clock) {
+		this.clock = clock;
+		for (int i = 0; i < BUCKETS; i++)
+			buckets.set(i, EMPTY);
+	}
+
+	/**
+	 * @return - false if the given datagram is a duplicate, or too old to tell, true if it should be received. Datagrams with a header we don't understand are always let through.
+	 */
+	boolean accept(ByteBuf content) {
+		if (Frame.peekKind(content) == -1)
+			return true;
+		long node = Frame.peekNode(content);
+		int lane = Frame.peekLane(content);
+		int sequence = Frame.peekSequence(content);
+		long now = clock.getAsLong();
+		Window window = window(node, lane);
+		if (window == null && (window = track(node, lane, sequence, now)) == null)
+			return true;
+		if (window.accept(sequence, now))
+			return true;
+		dropped.increment();
+		return false;
+	}
+
+	/**
+	 * @return - How many datagrams were dropped.
+	 */
+	long dropped() {
+		return dropped.sum();
+	}
+
+	private Window window(long node, int lane) {
+		for (Window window : buckets.get(bucket(node, lane))) {
+			if (window.node == node && window.lane == lane)
+				return window;
+		}
+		return null;
+	}
+
+	/**
+	 * Starts tracking the given lane of the given sender, just before its first sequence number.
+	 *
+	 * @return - The lane's window, or null if there's no room for it.
+	 */
+	private synchronized Window track(long node, int lane, int sequence, long now) {
+		Window window = window(node, lane);
+		if (window != null)
+			return window;
+		if (senders >= SENDERS && evict(now) == 0)
+			return null;
+		window = new Window(node, lane, sequence - 1, now);
+		int bucket = bucket(node, lane);
+		Window[] windows = Arrays.copyOf(buckets.get(bucket), buckets.get(bucket).length + 1);
+		windows[windows.length - 1] = window;
+		buckets.set(bucket, windows);
+		senders++;
+		return window;
+	}
+
+	/**
+	 * Guarded by this.
+	 *
+	 * @return - How many idle senders were forgotten.
+	 */
+	private int evict(long now) {
+		int evicted = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			Window[] windows = buckets.get(i);
+			int live = 0;
+			for (Window window : windows) {
+				if (now - window.heard < IDLE)
+					live++;
+			}
+			if (live == windows.length)
+				continue;
+			Window[] kept = new Window[live];
+			int index = 0;
+			for (Window window : windows) {
+				if (now - window.heard < IDLE)
+					kept[index++] = window;
+			}
+			buckets.set(i, kept);
+			evicted += windows.length - live;
+		}
+		senders -= evicted;
+		return evicted;
+	}
+
+	private static int bucket(long node, int lane) {
+		// Node ids are random, so any of their bits will do.
+		return (int) (node ^ node >>> 32) + lane & BUCKETS - 1;
+	}
+
+	/**
+	 * The sequence numbers of a single lane of a single sender. Any number of threads can receive from the same sender, so it's guarded by itself.
+	 */
+	static final class Window {
+		final long node;
+		final int lane;
+		private final long[] seen = new long[WINDOW / 64];
+		private int highest;
+		volatile long heard;
+
+		Window(long node, int lane, int highest, long now) {
+			this.node = node;
+			this.lane = lane;
+			this.highest = highest;
+			heard = now;
+		}
+
+		synchronized boolean accept(int sequence, long now) {
+			heard = now;
+			// Sequence numbers wrap, so they're only ever compared by their difference.
+			int ahead = sequence - highest;
+			if (ahead > 0) {
+				if (ahead >= WINDOW) {
+					Arrays.fill(seen, 0);
+				} else {
+					// The slots between the old highest, and the new one, were last used a whole window ago.
+					for (int next = highest + 1; next != sequence; next++)
+						seen[(next & WINDOW - 1) >>> 6] &= ~(1L << next);
+				}
+				highest = sequence;
+				seen[(sequence & WINDOW - 1) >>> 6] |= 1L << sequence;
+				return true;
+			}
+			if (ahead <= -WINDOW)
+				return false;
+			int index = (sequence & WINDOW - 1) >>> 6;
+			long bit = 1L << sequence;
+			if ((seen[index] & bit) != 0)
+				return false;
+			seen[index] |= bit;
+			return true;
+		}
+	}
+}
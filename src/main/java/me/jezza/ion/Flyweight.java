@@ -0,0 +1,141 @@
+package me.jezza.ion;
+
+import java.util.function.Supplier;
+
+import io.netty.buffer.ByteBuf;
+import me.jezza.ion.bus.interfaces.TransientEvent;
+
+/**
+ * An event that's never decoded: its accessors read (and write) their fields straight from (and to) the bytes of the datagram.
+ * <p>
+ * A flyweight type has a fixed layout, and implements its accessors on top of {@link #buffer()} and {@link #offset()}:
+ * <pre>
+ * public final class Tick extends Flyweight {
+ * 	public long instrument() { return buffer().getLong(offset()); }
+ * 	public double price() { return buffer().getDouble(offset() + 8); }
+ *
+ * 	public Tick instrument(long instrument) { buffer().setLong(offset(), instrument); return this; }
+ * 	public Tick price(double price) { buffer().setDouble(offset() + 8, price); return this; }
+ *
+ * 	protected int size() { return 16; }
+ * }
+ * </pre>
+ * Every node that sends or receives a flyweight type has to register it, see {@link Ion#flyweight(Class, Supplier)}.
+ * <ul>
+ * <li>Receiving: A subscriber is handed a view that's only valid while it's handling the event, the same instance is reused for the next one.
+ * To hold onto it any longer, {@link #retain()} it, and {@link #release()} the retained view when it's done.
+ * Any access through a view that's no longer valid throws an {@link IllegalStateException}.</li>
+ * <li>Sending: {@link Ion#claim(Class)} a view over a fresh buffer, set its fields, and {@link Ion#post(Flyweight)} it.
+ * The buffer already has room for the header, so it's sent as is. Once it's posted, the view is no longer valid.</li>
+ * </ul>
+ * A received view is a {@link TransientEvent}, so anything that holds onto it past the post, (A dispatcher that queues it, or hands it to another thread,
+ * a batch, or a {@link me.jezza.ion.reactive.EventPublisher}'s buffer) holds onto a retained view instead. Whichever subscriber it reaches,
+ * the view is valid while it's being handled, and no longer.
+ *
+ * @author Jezza
+ */
+public abstract class Flyweight implements TransientEvent {
+	/** the view belongs to whoever dispatched it, and it's only valid until the dispatch returns */
+	static final int TRANSIENT = 0;
+	/** the view holds a reference of its own, see retain() */
+	static final int RETAINED = 1;
+	/** the view holds the buffer of a frame that hasn't been posted yet, see Ion.claim() */
+	static final int CLAIMED = 2;
+
+	private ByteBuf buffer;
+	private int offset;
+	private int mode;
+
+	Supplier<? extends Flyweight> factory;
+
+	/**
+	 * @return - How many bytes the layout takes up. Every instance of a type has to return the same size.
+	 */
+	protected abstract int size();
+
+	/**
+	 * @return - The buffer the fields are stored in.
+	 * @throws IllegalStateException - If the view is no longer valid.
+	 */
+	protected final ByteBuf buffer() {
+		ByteBuf buffer = this.buffer;
+		if (buffer == null)
+			throw new IllegalStateException("Flyweight is no longer valid, it has to be retained to be used outside of the subscriber.");
+		return buffer;
+	}
+
+	/**
+	 * @return - Where the fields start within {@link #buffer()}.
+	 */
+	protected final int offset() {
+		return offset;
+	}
+
+	/**
+	 * @return - true if the view can still be used.
+	 */
+	public final boolean valid() {
+		return buffer != null;
+	}
+
+	/**
+	 * Copies nothing, it just takes another reference to the same bytes.
+	 *
+	 * @return - A view of the same event that stays valid until it's released.
+	 */
+	@SuppressWarnings("unchecked")
+	public final <T extends Flyweight> T retain() {
+		ByteBuf retained = buffer().retainedSlice(offset, size());
+		Flyweight view = factory.get();
+		view.factory = factory;
+		view.wrap(retained, 0, RETAINED);
+		return (T) view;
+	}
+
+	/**
+	 * The same as {@link #retain()}, for whoever doesn't know the type, see {@link TransientEvent}.
+	 */
+	@Override
+	public final TransientEvent retained() {
+		return retain();
+	}
+
+	/**
+	 * Releases a view that was retained, or claimed and never posted. The view is no longer valid afterwards.
+	 *
+	 * @throws IllegalStateException - If the view isn't retained or claimed, (Those are released by whoever dispatched them) or it's no longer valid.
+	 */
+	@Override
+	public final void release() {
+		if (mode == TRANSIENT)
+			throw new IllegalStateException("Only a retained, or a claimed, flyweight can be released.");
+		buffer().release();
+		detach();
+	}
+
+	final void wrap(ByteBuf buffer, int offset, int mode) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.mode = mode;
+	}
+
+	final int mode() {
+		return mode;
+	}
+
+	/**
+	 * Invalidates the view, without releasing anything.
+	 *
+	 * @return - The buffer the view was wrapping.
+	 */
+	final ByteBuf detach() {
+		ByteBuf buffer = this.buffer;
+		this.buffer = null;
+		return buffer;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + (buffer == null ? "{invalid}" : "{offset=" + offset + ", size=" + size() + '}');
+	}
+}
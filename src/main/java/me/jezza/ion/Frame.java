@@ -0,0 +1,275 @@
+package me.jezza.ion;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.handler.codec.serialization.ObjectDecoderInputStream;
+import io.netty.handler.codec.serialization.ObjectEncoderOutputStream;
+import me.jezza.ion.bus.Priority;
+
+/**
+ * A single event, along with everything that travels with it on the wire.
+ * <p>
+ * Every datagram starts with a small header:
+ * <pre>
+ * +---------+-------+---------+------+----------+---------------+---------+
+ * | version | flags | cluster | node | sequence | kind specific | payload |
+ * +---------+-------+---------+------+----------+---------------+---------+
+ *     1        1        8        8        4
+ * </pre>
+ * The lowest two bits of {@code flags} hold the ordinal of the {@link Priority} the event was posted with, the next three bits hold the kind of frame,
+ * and the highest three bits hold the lane it was sent on, which is the index of the interface it was sent from, see {@link Ion.Builder}.
+ * {@code cluster} identifies the cluster the frame belongs to, see {@link me.jezza.ion.utils.Strings#identify(String)}. Several clusters can share a socket,
+ * or even a group, if their names collide, and the id is what keeps their traffic apart. It's checked before anything is decoded.
+ * {@code node} is the id of the {@link Ion} that sent the frame, and {@code sequence} counts up with every frame it sends on the lane,
+ * so a frame that arrives more than once can be dropped before it's decoded, see {@link Deduplication}.
+ * Both are stamped as the frame is written to the socket, (See {@link #stamp(ByteBuf, int, int)}) so a lane's sequence numbers leave in order,
+ * however the frames were staged and prioritised on the way.
+ * <ul>
+ * <li>{@link #EVENT}: Nothing else.</li>
+ * <li>{@link #REQUEST}: The correlation id the requester is waiting on. (8 bytes)</li>
+ * <li>{@link #REPLY}: The node id of the requester, and the correlation id it's waiting on. (8 + 8 bytes)</li>
+ * <li>{@link #FLYWEIGHT}: The id of the flyweight type. (8 bytes) The payload is the raw layout of the type, see {@link Flyweight}.</li>
+ * <li>{@link #SAMPLE}: The id of the channel, the type of the value, the key, and the value. (8 + 1 + 4 + 8 bytes) There's no payload,
+ * so a sample of any {@link me.jezza.ion.bus.PrimitiveChannel} is always {@link #SAMPLE_LENGTH} bytes.</li>
+ * </ul>
+ *
+ * @author Jezza
+ */
+final class Frame {
+	static final byte VERSION = 7;
+
+	static final int EVENT = 0;
+	static final int REQUEST = 1;
+	static final int REPLY = 2;
+	static final int FLYWEIGHT = 3;
+	static final int SAMPLE = 4;
+
+	/** the types of value a sample can carry, the value itself is always sent as 8 bytes */
+	static final int SAMPLE_INT = 0;
+	static final int SAMPLE_LONG = 1;
+	static final int SAMPLE_DOUBLE = 2;
+
+	/** the part of the header every kind of frame has */
+	static final int HEADER = 22;
+	/** where the layout of a flyweight starts */
+	static final int FLYWEIGHT_HEADER = HEADER + 8;
+	/** the length of every sample */
+	static final int SAMPLE_LENGTH = HEADER + 8 + 1 + 4 + 8;
+
+	/** how many lanes fit in the header, and so how many interfaces a node can be on, as two interfaces on the same lane would stamp it with sequence numbers of their own */
+	static final int LANES = 8;
+
+	private static final int PRIORITY_MASK = 0b11;
+	private static final int KIND_SHIFT = 2;
+	private static final int KIND_MASK = 0b111;
+	private static final int LANE_SHIFT = 5;
+	private static final int SEQUENCE = 18;
+
+	final int kind;
+	final Priority priority;
+	final long cluster;
+	final long node;
+	final long target;
+	final long correlation;
+
+	Serializable event;
+	/** an outbound frame that's already encoded, see Flyweight */
+	ByteBuf encoded;
+	/** where an inbound frame came from */
+	InetSocketAddress sender;
+
+	private Frame(int kind, Priority priority, long cluster, long node, long target, long correlation, Serializable event) {
+		this.kind = kind;
+		this.priority = priority;
+		this.cluster = cluster;
+		this.node = node;
+		this.target = target;
+		this.correlation = correlation;
+		this.event = event;
+	}
+
+	static Frame event(long cluster, long node, Priority priority, Serializable event) {
+		return new Frame(EVENT, priority, cluster, node, 0, 0, event);
+	}
+
+	static Frame request(long cluster, long node, Priority priority, long correlation, Serializable event) {
+		return new Frame(REQUEST, priority, cluster, node, 0, correlation, event);
+	}
+
+	static Frame reply(long cluster, long node, Priority priority, long target, long correlation, Serializable event) {
+		return new Frame(REPLY, priority, cluster, node, target, correlation, event);
+	}
+
+	/**
+	 * @param encoded - A buffer with room for the header, followed by the id of the flyweight type, and its layout. It's owned by the frame from now on.
+	 */
+	static Frame flyweight(long cluster, long node, Priority priority, ByteBuf encoded) {
+		Frame frame = new Frame(FLYWEIGHT, priority, cluster, node, 0, 0, null);
+		int end = encoded.writerIndex();
+		encoded.writerIndex(0);
+		frame.writeHeader(encoded);
+		encoded.writerIndex(end);
+		frame.encoded = encoded;
+		return frame;
+	}
+
+	/**
+	 * @param encoded - An empty buffer with room for {@link #SAMPLE_LENGTH} bytes. It's owned by the frame from now on.
+	 * @param channel - The id of the channel, see {@link me.jezza.ion.utils.Strings#identify(String)}.
+	 * @param type    - The type of the value.
+	 * @param value   - The value, or the bits of it, if it's a double.
+	 */
+	static Frame sample(long cluster, long node, Priority priority, ByteBuf encoded, long channel, int type, int key, long value) {
+		Frame frame = new Frame(SAMPLE, priority, cluster, node, 0, 0, null);
+		frame.writeHeader(encoded);
+		encoded.writeLong(channel);
+		encoded.writeByte(type);
+		encoded.writeInt(key);
+		encoded.writeLong(value);
+		frame.encoded = encoded;
+		return frame;
+	}
+
+	/**
+	 * Writes the header with the lane, and sequence number, left empty, see {@link #stamp(ByteBuf, int, int)}.
+	 */
+	void writeHeader(ByteBuf out) {
+		out.writeByte(VERSION);
+		out.writeByte(kind << KIND_SHIFT | priority.ordinal() & PRIORITY_MASK);
+		out.writeLong(cluster);
+		out.writeLong(node);
+		out.writeInt(0);
+		if (kind == REQUEST) {
+			out.writeLong(correlation);
+		} else if (kind == REPLY) {
+			out.writeLong(target);
+			out.writeLong(correlation);
+		}
+	}
+
+	/**
+	 * Fills in the lane, and sequence number, of an encoded frame, just before it's written to the socket.
+	 *
+	 * @param encoded  - A frame with its header written, starting at its reader index.
+	 * @param lane     - The lane it's being sent on.
+	 * @param sequence - The next sequence number of the lane.
+	 */
+	static void stamp(ByteBuf encoded, int lane, int sequence) {
+		int index = encoded.readerIndex();
+		encoded.setByte(index + 1, encoded.getByte(index + 1) & ~(LANES - 1 << LANE_SHIFT) | (lane & LANES - 1) << LANE_SHIFT);
+		encoded.setInt(index + SEQUENCE, sequence);
+	}
+
+	void writePayload(ByteBuf out) throws IOException {
+		try (ByteBufOutputStream data = new ByteBufOutputStream(out);
+			 ObjectEncoderOutputStream output = new ObjectEncoderOutputStream(data)) {
+			output.writeObject(event);
+			output.flush();
+		}
+	}
+
+	/**
+	 * Reads the payload that follows the header into {@link #event}.
+	 */
+	void readPayload(ByteBuf in) throws IOException, ClassNotFoundException {
+		try (ByteBufInputStream data = new ByteBufInputStream(in);
+			 ObjectDecoderInputStream output = new ObjectDecoderInputStream(data)) {
+			event = (Serializable) output.readObject();
+		}
+	}
+
+	/**
+	 * @return - The kind of the given datagram, without reading anything, or -1 if the header isn't one we understand.
+	 */
+	static int peekKind(ByteBuf in) {
+		int index = in.readerIndex();
+		if (in.readableBytes() < HEADER || in.getByte(index) != VERSION)
+			return -1;
+		return in.getByte(index + 1) >> KIND_SHIFT & KIND_MASK;
+	}
+
+	/**
+	 * @return - The priority of the given datagram, without reading anything, or null if the header isn't one we understand.
+	 */
+	static Priority peekPriority(ByteBuf in) {
+		int index = in.readerIndex();
+		if (in.readableBytes() < HEADER || in.getByte(index) != VERSION)
+			return null;
+		int ordinal = in.getByte(index + 1) & PRIORITY_MASK;
+		return ordinal < Priority.count() ? Priority.of(ordinal) : null;
+	}
+
+	/**
+	 * @return - The id of the cluster the given datagram belongs to, without reading anything, or 0 if the header isn't one we understand.
+	 */
+	static long peekCluster(ByteBuf in) {
+		int index = in.readerIndex();
+		if (in.readableBytes() < HEADER || in.getByte(index) != VERSION)
+			return 0;
+		return in.getLong(index + 2);
+	}
+
+	/**
+	 * @return - The id of the node that sent the given datagram, without reading anything, or 0 if the header isn't one we understand.
+	 */
+	static long peekNode(ByteBuf in) {
+		int index = in.readerIndex();
+		if (in.readableBytes() < HEADER || in.getByte(index) != VERSION)
+			return 0;
+		return in.getLong(index + 10);
+	}
+
+	/**
+	 * @return - The sequence number of the given datagram, without reading anything. Only meaningful if the header is one we understand, see {@link #peekKind(ByteBuf)}.
+	 */
+	static int peekSequence(ByteBuf in) {
+		return in.getInt(in.readerIndex() + SEQUENCE);
+	}
+
+	/**
+	 * @return - The lane the given datagram was sent on, without reading anything. Only meaningful if the header is one we understand, see {@link #peekKind(ByteBuf)}.
+	 */
+	static int peekLane(ByteBuf in) {
+		return (in.getByte(in.readerIndex() + 1) & 0xFF) >>> LANE_SHIFT;
+	}
+
+	/**
+	 * Reads everything but the payload.
+	 *
+	 * @return - The frame described by the header, or null if the header isn't one we understand.
+	 */
+	static Frame readHeader(ByteBuf in) {
+		if (in.readableBytes() < HEADER || in.readByte() != VERSION)
+			return null;
+		int flags = in.readByte();
+		int ordinal = flags & PRIORITY_MASK;
+		int kind = flags >> KIND_SHIFT & KIND_MASK;
+		if (ordinal >= Priority.count())
+			return null;
+		Priority priority = Priority.of(ordinal);
+		long cluster = in.readLong();
+		long node = in.readLong();
+		// Only deduplication cares about the sequence number, and it reads it without decoding anything.
+		in.skipBytes(4);
+		switch (kind) {
+			case EVENT:
+				return new Frame(EVENT, priority, cluster, node, 0, 0, null);
+			case REQUEST:
+				if (in.readableBytes() < 8)
+					return null;
+				return new Frame(REQUEST, priority, cluster, node, 0, in.readLong(), null);
+			case REPLY:
+				if (in.readableBytes() < 16)
+					return null;
+				long target = in.readLong();
+				return new Frame(REPLY, priority, cluster, node, target, in.readLong(), null);
+			default:
+				return null;
+		}
+	}
+}
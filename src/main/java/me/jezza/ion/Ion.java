@@ -5,123 +5,995 @@ import java.io.Serializable;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 
-import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufInputStream;
-import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.DefaultAddressedEnvelope;
-import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.FixedRecvByteBufAllocator;
 import io.netty.channel.SimpleChannelInboundHandler;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.DatagramChannel;
-import io.netty.channel.socket.InternetProtocolFamily;
-import io.netty.channel.socket.nio.NioDatagramChannel;
-import io.netty.handler.codec.DatagramPacketDecoder;
+import io.netty.channel.socket.DatagramPacket;
 import io.netty.handler.codec.DatagramPacketEncoder;
-import io.netty.handler.codec.MessageToMessageDecoder;
 import io.netty.handler.codec.MessageToMessageEncoder;
-import io.netty.handler.codec.serialization.ObjectDecoderInputStream;
-import io.netty.handler.codec.serialization.ObjectEncoderOutputStream;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import me.jezza.ion.bus.DoubleChannel;
 import me.jezza.ion.bus.EventBus;
+import me.jezza.ion.bus.IntChannel;
+import me.jezza.ion.bus.LongChannel;
+import me.jezza.ion.bus.PrimitiveChannel;
+import me.jezza.ion.bus.Priority;
+import me.jezza.ion.journal.Journal;
+import me.jezza.ion.reactive.Backpressure;
+import me.jezza.ion.reactive.EventPublisher;
+import me.jezza.ion.reactive.IonSink;
+import me.jezza.ion.reactive.Overflow;
 import me.jezza.ion.utils.Addresses;
-import me.jezza.ion.utils.Pair;
 import me.jezza.ion.utils.Strings;
+import me.jezza.ion.utils.TimingWheel;
 
 /**
  * @author Jezza
  */
 public final class Ion {
+	private static final Logger log = LoggerFactory.getLogger(Ion.class);
+
+	/**
+	 * Times out requests that never got a reply. A single timer is shared by every {@link Ion}, its cost doesn't depend on how many requests are outstanding.
+	 */
+	private static final HashedWheelTimer TIMER = new HashedWheelTimer(new DefaultThreadFactory("ion-timer", true), 10, TimeUnit.MILLISECONDS, 1024);
+
+	/**
+	 * How long a sender can go quiet on the interface it was first heard on, before its traffic is taken from another interface instead.
+	 */
+	private static final long FAILOVER = TimeUnit.MILLISECONDS.toNanos(500);
+
+	/**
+	 * Every interface this node is on, see {@link Builder#networkInterface(NetworkInterface)}. The first one is the one it's known by, see {@link #address()}.
+	 */
+	private final Home[] homes;
+	/**
+	 * true if the runtimes were created just for this node, so they're shut down with it.
+	 */
+	private final boolean owner;
+	private final Routes routes;
+
 	private final EventBus bus;
-	private final DatagramChannel channel;
-	private final EventLoopGroup group;
+	/**
+	 * The same-host transport, or null if shared memory isn't available. (Or this node hasn't finished starting)
+	 */
+	private volatile SharedMemory shm;
+	private volatile Journaling journaling;
+	/**
+	 * The registered flyweight types, copied on write.
+	 */
+	private volatile FlyweightType<?>[] flyweights = new FlyweightType<?>[0];
+	/**
+	 * The channels samples are received on, copied on write.
+	 */
+	private volatile SampleChannel[] channels = new SampleChannel[0];
+
+	private final Reading reading = new Reading();
+
+	/**
+	 * The id of this node, it's sent with every frame.
+	 */
+	private final long node;
+	/**
+	 * The id of the cluster this node belongs to, it's sent with every frame.
+	 */
+	private final long cluster;
+
+	private final AtomicLong correlations = new AtomicLong();
+	private final Deduplication deduplication = new Deduplication();
+
+	/**
+	 * Holds the events that were posted with a delay, created the first time one is.
+	 */
+	private volatile TimingWheel<Serializable> delayed;
+
+	/**
+	 * Requests this node is waiting on a reply for, indexed by correlation id.
+	 */
+	private final ConcurrentMap<Long, CompletableFuture<Serializable>> pending = new ConcurrentHashMap<>();
+
+	/**
+	 * Requests this node received, and hasn't replied to yet.
+	 * The keys are weak (and compared by identity), so a request that's never replied to doesn't stick around.
+	 */
+	private final Cache<Object, ReplyTo> requests = Caffeine.newBuilder()
+			.weakKeys()
+			.build();
+
+	/**
+	 * The unicast address of every node we've heard from recently, indexed by node id.
+	 */
+	private final Cache<Long, InetSocketAddress> peers = Caffeine.newBuilder()
+			.expireAfterAccess(5, TimeUnit.MINUTES)
+			.build();
+
+	/**
+	 * The interface each sender was first heard on, indexed by the address it sends from. Only a multi-homed node uses it, see {@link #stick(InetSocketAddress, IonRuntime)}.
+	 */
+	private final Cache<InetSocketAddress, Sticky> stickies = Caffeine.newBuilder()
+			.expireAfterAccess(5, TimeUnit.MINUTES)
+			.build();
 
-	private final InetSocketAddress localAddress;
 	private final InetSocketAddress broadcast;
 
-	private Ion(EventBus bus, int port) throws IOException {
+	/**
+	 * Completes once this node is bound, and has joined its group.
+	 */
+	private final CompletableFuture<Ion> started;
+
+	private Ion(List<IonRuntime> runtimes, boolean owner, Routes routes, EventBus bus, InetAddress group, int port, Map<ChannelOption<?>, Object> options) {
+		this.owner = owner;
+		this.routes = routes;
 		this.bus = bus;
-		InetAddress normalised = Strings.normalise(bus.identifier);
-		broadcast = new InetSocketAddress(normalised, port);
-
-		group = new NioEventLoopGroup();
-
-		final Pair<NetworkInterface, InetAddress> networkPair = Addresses.getIp4Address();
-		final NetworkInterface ni = networkPair.first();
-		final InetAddress localAddress = networkPair.second();
-		this.localAddress = new InetSocketAddress(localAddress, port);
-		channel = (DatagramChannel) new Bootstrap()
-				.group(group)
-				.channelFactory(() -> new NioDatagramChannel(InternetProtocolFamily.IPv4))
-//				.localAddress(localAddress, port)
-				.option(ChannelOption.SO_REUSEADDR, true)
-//				.option(ChannelOption.SO_BROADCAST, true)
-				.option(ChannelOption.IP_MULTICAST_IF, ni)
-				.handler(new ChannelInitializer<NioDatagramChannel>() {
-					@Override
-					protected void initChannel(NioDatagramChannel ch) throws Exception {
-						final ChannelPipeline p = ch.pipeline();
-						// Encoder
-						p.addLast(new DatagramPacketEncoder<>(new ObjectEncoder()));
-
-						// Decoder
-						p.addLast(new DatagramPacketDecoder(new ObjectDecoder()));
-						p.addLast(new BusNotifier(bus));
+		node = new SecureRandom().nextLong();
+		cluster = Strings.identify(bus.identifier);
+		broadcast = new InetSocketAddress(group != null ? group : Strings.group(bus.identifier), port);
+
+		homes = new Home[runtimes.size()];
+		CompletableFuture<?>[] bound = new CompletableFuture<?>[homes.length];
+		boolean sharedMemory = true;
+		for (int i = 0; i < homes.length; i++) {
+			homes[i] = new Home(runtimes.get(i), i, port, options);
+			bound[i] = homes[i].bound;
+			sharedMemory &= homes[i].runtime.transport().sharedMemory();
+		}
 
+		boolean shared = sharedMemory;
+		started = CompletableFuture.allOf(bound)
+				.thenCompose(v -> {
+					// The ephemeral port is only known once we're bound, and peers need it to reply to us.
+					SharedMemory shm = !shared ? null : SharedMemory.open(bus.identifier, cluster, node, address(), broadcast, (content, sender) -> receive(content, sender));
+					if (shm != null) {
+						// Whichever interface a frame is routed to, it still has to be published to the ring.
+						for (Home home : homes)
+							home.unicast.pipeline().addFirst(shm);
 					}
+					this.shm = shm;
+					CompletableFuture<?>[] joined = new CompletableFuture<?>[homes.length];
+					for (int i = 0; i < homes.length; i++)
+						joined[i] = homes[i].runtime.join(this, port, broadcast, options);
+					return CompletableFuture.allOf(joined);
 				})
-				.bind(port)
-				.syncUninterruptibly()
-				.channel();
+				.handle((v, cause) -> {
+					if (cause == null)
+						return this;
+					// Tear down whatever did start, but not on the event loop that's completing this.
+					ForkJoinPool.commonPool().execute(this::shutdown);
+					throw cause instanceof CompletionException ? (CompletionException) cause : new CompletionException(cause);
+				});
+	}
 
-		channel.joinGroup(broadcast, channel.config().getNetworkInterface()).syncUninterruptibly();
+	long cluster() {
+		return cluster;
 	}
 
-	private static final class ObjectEncoder extends MessageToMessageEncoder<Serializable> {
+	/**
+	 * Stamps every frame with the lane of its interface, and the lane's next sequence number, as it's written, see {@link Frame#stamp(ByteBuf, int, int)}.
+	 * A channel only ever encodes on its own event loop, so the sequence doesn't need to be atomic.
+	 */
+	private static final class FrameEncoder extends MessageToMessageEncoder<Frame> {
+		private final int lane;
+		private int sequence;
+
+		FrameEncoder(int lane) {
+			this.lane = lane;
+		}
+
 		@Override
-		protected void encode(ChannelHandlerContext ctx, Serializable msg, List<Object> out) throws Exception {
-			ByteBuf buf = ctx.alloc().ioBuffer();
-			try (ByteBufOutputStream data = new ByteBufOutputStream(buf);
-				 ObjectEncoderOutputStream output = new ObjectEncoderOutputStream(data)) {
-				output.writeObject(msg);
-				output.flush();
+		protected void encode(ChannelHandlerContext ctx, Frame msg, List<Object> out) throws Exception {
+			ByteBuf buf = msg.encoded;
+			if (buf == null) {
+				buf = ctx.alloc().ioBuffer();
+				msg.writeHeader(buf);
+				msg.writePayload(buf);
 			}
+			Frame.stamp(buf, lane, sequence++);
 			out.add(buf);
 		}
 	}
 
-	private static final class ObjectDecoder extends MessageToMessageDecoder<ByteBuf> {
+	private final class Receiver extends SimpleChannelInboundHandler<DatagramPacket> {
 		@Override
-		protected void decode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
-			try (ByteBufInputStream data = new ByteBufInputStream(msg);
-				 ObjectDecoderInputStream output = new ObjectDecoderInputStream(data)) {
-				out.add(output.readObject());
-			}
+		protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg) throws Exception {
+			receive(msg.content(), msg.sender());
 		}
 	}
 
-	private static final class BusNotifier extends SimpleChannelInboundHandler<Serializable> {
-		private final EventBus bus;
+	/**
+	 * A single interface this node is on: the runtime that owns the interface, and the node's own socket on it.
+	 */
+	private final class Home {
+		final IonRuntime runtime;
+		/**
+		 * Bound to an ephemeral port. Everything is sent from here, so the address every other node sees is unique to this node
+		 * (Several nodes on the same host share the cluster's port), which makes it the address unicast traffic arrives at.
+		 * Multicast traffic arrives on the runtime's socket for the cluster's port, see {@link IonRuntime}.
+		 */
+		final Channel unicast;
+		final Outbound outbound;
+		final CompletableFuture<Void> bound;
+
+		Home(IonRuntime runtime, int lane, int port, Map<ChannelOption<?>, Object> options) {
+			this.runtime = runtime;
+			ChannelFuture bind = runtime.bootstrap(options)
+					.handler(new ChannelInitializer<Channel>() {
+						@Override
+						protected void initChannel(Channel ch) throws Exception {
+							final ChannelPipeline p = ch.pipeline();
+							// Encoder
+							p.addLast(new DatagramPacketEncoder<>(new FrameEncoder(lane)));
+
+							// Decoder
+							p.addLast(new Receiver());
 
-		BusNotifier(EventBus bus) {
-			this.bus = Objects.requireNonNull(bus);
+						}
+					})
+					.bind(0);
+			unicast = bind.channel();
+			outbound = new Outbound(unicast, new InetSocketAddress(runtime.localAddress(), port));
+			unicast.pipeline().addLast(outbound);
+			bound = IonRuntime.completion(bind);
 		}
+	}
+
+	/**
+	 * Called by the runtime, for every datagram of our cluster that arrives on its multicast socket.
+	 *
+	 * @param via - The runtime whose socket it arrived on.
+	 */
+	void receive(DatagramPacket packet, IonRuntime via) {
+		if (homes.length > 1 && !stick(packet.sender(), via))
+			return;
+		receive(packet.content(), packet.sender());
+	}
+
+	/**
+	 * A multi-homed node usually receives every multicast datagram once per interface, as every socket bound to the port hears every group that's been joined on it.
+	 * Every datagram a sender sends comes from the same address, so only the interface the sender was first heard on is listened to,
+	 * until the sender goes quiet on it for {@link #FAILOVER}, at which point whichever interface still hears it takes over.
+	 * A sender that routes its traffic over several interfaces sends from a different address on each, so each of them sticks on its own.
+	 *
+	 * @return - true if the datagram should be received, false if it's a copy that arrived on another interface.
+	 */
+	private boolean stick(InetSocketAddress sender, IonRuntime via) {
+		long now = System.nanoTime();
+		Sticky sticky = stickies.getIfPresent(sender);
+		if (sticky == null && (sticky = stickies.asMap().putIfAbsent(sender, new Sticky(via, now))) == null)
+			return true;
+		if (sticky.via != via) {
+			if (now - sticky.heard < FAILOVER)
+				return false;
+			log.debug("{} went quiet on {}, failing over to {}.", sender, sticky.via, via);
+			sticky.via = via;
+		}
+		sticky.heard = now;
+		return true;
+	}
+
+	/**
+	 * Decodes a frame that arrived on either socket, or from shared memory, and hands it to {@link #receive(Frame)}.
+	 * A multicast datagram is handed to every {@link Ion} of its cluster that shares the socket, so the buffer is only ever read through a duplicate.
+	 */
+	private void receive(ByteBuf content, InetSocketAddress sender) {
+		if (Frame.peekKind(content) == -1) {
+			log.debug("Dropping datagram with an unknown header.");
+			return;
+		}
+		// Another cluster's traffic can still reach our unicast socket, and it mustn't be journaled, or take up room in the deduplication.
+		if (Frame.peekCluster(content) != cluster)
+			return;
+		// However many paths a datagram took to get here, (Both sockets, and shared memory) it's only received once.
+		if (!deduplication.accept(content))
+			return;
+		Journaling journaling = this.journaling;
+		if (journaling != null)
+			journaling.received(content);
+		switch (Frame.peekKind(content)) {
+			case Frame.FLYWEIGHT:
+				receiveFlyweight(content);
+				return;
+			case Frame.SAMPLE:
+				receiveSample(content);
+				return;
+		}
+		ByteBuf msg = content.duplicate();
+		Frame frame = Frame.readHeader(msg);
+		if (frame == null) {
+			log.debug("Dropping datagram with an unknown header.");
+			return;
+		}
+		// Replies are sent straight to the requester, so this is only defensive: Several nodes can share an address, (Such as a cluster's port on one host) and only the target should decode it.
+		if (frame.kind == Frame.REPLY && frame.target != node)
+			return;
+		try {
+			frame.readPayload(msg);
+		} catch (IOException | ClassNotFoundException e) {
+			log.warn("Dropping datagram from " + sender + " that couldn't be decoded.", e);
+			return;
+		}
+		frame.sender = sender;
+		receive(frame);
+	}
+
+	/**
+	 * Posts a flyweight straight out of the buffer it arrived in. This doesn't allocate anything, not even a {@link Frame},
+	 * which is also why the sender of a flyweight isn't remembered, see {@link #send(Serializable, long)}.
+	 */
+	private void receiveFlyweight(ByteBuf content) {
+		if (content.readableBytes() < Frame.FLYWEIGHT_HEADER)
+			return;
+		int index = content.readerIndex();
+		FlyweightType<?> type = flyweight(content.getLong(index + Frame.HEADER));
+		if (type == null) {
+			log.debug("Dropping flyweight of an unregistered type.");
+			return;
+		}
+		if (content.readableBytes() < Frame.FLYWEIGHT_HEADER + type.size)
+			return;
+		Flyweight view = type.views.get();
+		view.wrap(content, index + Frame.FLYWEIGHT_HEADER, Flyweight.TRANSIENT);
+		try {
+			bus.post(view, Frame.peekPriority(content));
+		} finally {
+			// Anything that's still holding onto the event has retained a view of its own, see TransientEvent.
+			view.detach();
+		}
+	}
+
+	/**
+	 * Posts a sample straight to its channel, see {@link PrimitiveChannel}. Just like a flyweight, this doesn't allocate anything.
+	 */
+	private void receiveSample(ByteBuf content) {
+		if (content.readableBytes() < Frame.SAMPLE_LENGTH)
+			return;
+		int index = content.readerIndex() + Frame.HEADER;
+		SampleChannel channel = channel(content.getLong(index));
+		// Nobody on this node cares about the channel.
+		if (channel == null)
+			return;
+		int type = content.getByte(index + 8);
+		if (type != channel.type) {
+			log.debug("Dropping sample of {} with a different type of value.", channel.channel);
+			return;
+		}
+		int key = content.getInt(index + 9);
+		long value = content.getLong(index + 13);
+		switch (type) {
+			case Frame.SAMPLE_INT:
+				((IntChannel) channel.channel).post(key, (int) value);
+				break;
+			case Frame.SAMPLE_LONG:
+				((LongChannel) channel.channel).post(key, value);
+				break;
+			case Frame.SAMPLE_DOUBLE:
+				((DoubleChannel) channel.channel).post(key, Double.longBitsToDouble(value));
+				break;
+		}
+	}
+
+	private SampleChannel channel(long id) {
+		for (SampleChannel channel : channels) {
+			if (channel.id == id)
+				return channel;
+		}
+		return null;
+	}
+
+	private FlyweightType<?> flyweight(long id) {
+		// Linear, so the id is never boxed. There's only ever a handful of types.
+		for (FlyweightType<?> type : flyweights) {
+			if (type.id == id)
+				return type;
+		}
+		return null;
+	}
+
+	/**
+	 * Every inbound frame ends up here, whether it came from the network, or from shared memory.
+	 */
+	private void receive(Frame msg) {
+		if (!msg.sender.equals(peers.getIfPresent(msg.node)))
+			peers.put(msg.node, msg.sender);
+		switch (msg.kind) {
+			case Frame.REPLY:
+				// Straight to whoever's waiting on it, the bus never sees replies.
+				CompletableFuture<Serializable> future = pending.get(msg.correlation);
+				if (future != null)
+					future.complete(msg.event);
+				break;
+			case Frame.REQUEST:
+				requests.put(msg.event, new ReplyTo(msg.node, msg.correlation, msg.priority, msg.sender));
+				// Requests are posted like any other event.
+				bus.post(msg.event, msg.priority);
+				break;
+			default:
+				bus.post(msg.event, msg.priority);
+		}
+	}
+
+	private static final class FlyweightType<T extends Flyweight> {
+		final Class<T> type;
+		final long id;
+		final Supplier<T> factory;
+		final int size;
+		/** the view each receiving thread reuses */
+		final ThreadLocal<T> views;
+
+		FlyweightType(Class<T> type, Supplier<T> factory) {
+			this.type = type;
+			this.factory = factory;
+			id = Strings.identify(type.getName());
+			size = create().size();
+			views = ThreadLocal.withInitial(this::create);
+		}
+
+		T create() {
+			T view = factory.get();
+			view.factory = factory;
+			return view;
+		}
+	}
+
+	/**
+	 * Pauses reading from every socket, for subscribers of a {@link #publisher(Class, int, Overflow)} that fell behind.
+	 */
+	private final class Reading implements Backpressure {
+		private int paused;
 
 		@Override
-		protected void channelRead0(ChannelHandlerContext ctx, Serializable msg) throws Exception {
-			bus.post(msg);
+		public synchronized void pause() {
+			if (paused++ != 0)
+				return;
+			for (Home home : homes) {
+				home.unicast.config().setAutoRead(false);
+				home.runtime.pause(broadcast.getPort());
+			}
+		}
+
+		@Override
+		public synchronized void resume() {
+			if (paused == 0 || --paused != 0)
+				return;
+			for (Home home : homes) {
+				home.unicast.config().setAutoRead(true);
+				home.runtime.resume(broadcast.getPort());
+			}
+		}
+	}
+
+	private static final class Sticky {
+		volatile IonRuntime via;
+		/** when the sender was last heard on it, as per System.nanoTime() */
+		volatile long heard;
+
+		Sticky(IonRuntime via, long heard) {
+			this.via = via;
+			this.heard = heard;
+		}
+	}
+
+	private static final class SampleChannel {
+		final PrimitiveChannel<?> channel;
+		final long id;
+		final int type;
+
+		SampleChannel(PrimitiveChannel<?> channel, int type) {
+			this.channel = channel;
+			this.type = type;
+			id = Strings.identify(channel.name);
+		}
+	}
+
+	private static final class ReplyTo {
+		final long node;
+		final long correlation;
+		final Priority priority;
+		final InetSocketAddress address;
+
+		ReplyTo(long node, long correlation, Priority priority, InetSocketAddress address) {
+			this.node = node;
+			this.correlation = correlation;
+			this.priority = priority;
+			this.address = address;
 		}
 	}
 
+	/**
+	 * Posts the given event to every node in the cluster (Including this one), with the {@link Priority} declared on its type.
+	 * If the channel is backed up, the event is staged until it can be written, see {@link Outbound}.
+	 */
 	public ChannelFuture post(Serializable event) throws IOException {
-		return channel.writeAndFlush(new DefaultAddressedEnvelope<>(event, broadcast, localAddress));
+		Priority priority = Priority.of(event);
+		return outbound(event.getClass(), priority).post(Frame.event(cluster, node, priority, event), broadcast);
+	}
+
+	/**
+	 * Posts the given event to every node in the cluster (Including this one), with the given {@link Priority}.
+	 * Staged events of a higher priority are sent before any staged events of a lower priority,
+	 * and the priority travels with the event, so it's also dispatched with it on every node.
+	 */
+	public ChannelFuture post(Serializable event, Priority priority) throws IOException {
+		Objects.requireNonNull(priority);
+		return outbound(event.getClass(), priority).post(Frame.event(cluster, node, priority, event), broadcast);
+	}
+
+	/**
+	 * Posts the given event to every node in the cluster, once the given delay has passed, see {@link #post(Serializable)}.
+	 * Delayed events are held in a {@link TimingWheel}, so there can be millions of them, and they're only serialised once they're due,
+	 * so anything that goes wrong along the way is only logged.
+	 *
+	 * @return - A handle that can be used to cancel the event, before it's posted.
+	 */
+	public TimingWheel.Timeout postDelayed(Serializable event, long delay, TimeUnit unit) {
+		Objects.requireNonNull(event, "Argument 'event' may not be null.");
+		Objects.requireNonNull(unit, "Argument 'unit' may not be null.");
+		TimingWheel<Serializable> delayed = this.delayed;
+		if (delayed == null) {
+			synchronized (this) {
+				delayed = this.delayed;
+				if (delayed == null)
+					this.delayed = delayed = TimingWheel.of("ion-delayed-" + bus.identifier, this::postDelayed);
+			}
+		}
+		return delayed.schedule(event, delay, unit);
+	}
+
+	/**
+	 * Posts the given event to every node in the cluster at the given time, or as soon as possible if it's already passed, see {@link #postDelayed(Serializable, long, TimeUnit)}.
+	 *
+	 * @return - A handle that can be used to cancel the event, before it's posted.
+	 */
+	public TimingWheel.Timeout postAt(Serializable event, Instant at) {
+		Objects.requireNonNull(at, "Argument 'at' may not be null.");
+		return postDelayed(event, at.toEpochMilli() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	private void postDelayed(Serializable event) {
+		try {
+			post(event).addListener(f -> {
+				if (!f.isSuccess())
+					log.warn("Couldn't send delayed event " + event, f.cause());
+			});
+		} catch (IOException | RuntimeException e) {
+			log.warn("Couldn't post delayed event " + event, e);
+		}
+	}
+
+	/**
+	 * Posts every event of the given batch to every node in the cluster (Including this one), in order, each with the {@link Priority} declared on its type.
+	 * Each event is still a datagram of its own, but they're all written before a single flush.
+	 * A multi-homed node splits the batch by interface, and only the events that are sent on the same interface stay in order.
+	 *
+	 * @return - A future that completes once every event was sent, or fails with the first one that couldn't be.
+	 */
+	public ChannelFuture postAll(Collection<? extends Serializable> events) {
+		List<Frame> frames = new ArrayList<>(events.size());
+		for (Serializable event : events)
+			frames.add(Frame.event(cluster, node, Priority.of(event), Objects.requireNonNull(event, "Events may not be null.")));
+		if (homes.length == 1)
+			return homes[0].outbound.postAll(frames, broadcast);
+		List<List<Frame>> routed = new ArrayList<>(homes.length);
+		for (int i = 0; i < homes.length; i++)
+			routed.add(new ArrayList<>());
+		for (Frame frame : frames)
+			routed.get(routes.route(frame.event.getClass(), frame.priority)).add(frame);
+		List<ChannelFuture> futures = new ArrayList<>(homes.length);
+		for (int i = 0; i < homes.length; i++) {
+			if (!routed.get(i).isEmpty())
+				futures.add(homes[i].outbound.postAll(routed.get(i), broadcast));
+		}
+		if (futures.size() == 1)
+			return futures.get(0);
+		ChannelPromise aggregate = homes[0].unicast.newPromise();
+		if (futures.isEmpty())
+			return aggregate.setSuccess();
+		AtomicInteger remaining = new AtomicInteger(futures.size());
+		for (ChannelFuture future : futures) {
+			future.addListener(f -> {
+				if (!f.isSuccess())
+					aggregate.tryFailure(f.cause());
+				if (remaining.decrementAndGet() == 0)
+					aggregate.trySuccess();
+			});
+		}
+		return aggregate;
+	}
+
+	/**
+	 * @see #postAll(Collection)
+	 */
+	public ChannelFuture postAll(Serializable... events) {
+		return postAll(Arrays.asList(events));
+	}
+
+	/**
+	 * Sends the given event to a single node, with the {@link Priority} declared on its type.
+	 * It's delivered into that node's {@link EventBus} exactly like a posted event, but no other node receives it.
+	 *
+	 * @param event  - The event to send.
+	 * @param target - The id of the node to send it to, see {@link #node()}.
+	 * @throws IllegalArgumentException - If we haven't heard from the given node recently.
+	 */
+	public ChannelFuture send(Serializable event, long target) {
+		InetSocketAddress address = peers.getIfPresent(target);
+		if (address == null)
+			throw new IllegalArgumentException("Unknown node: " + Long.toHexString(target));
+		return send(event, address);
+	}
+
+	/**
+	 * Sends the given event to a single node, with the {@link Priority} declared on its type.
+	 * It's delivered into that node's {@link EventBus} exactly like a posted event, but no other node receives it.
+	 *
+	 * @param event   - The event to send.
+	 * @param address - The unicast address of the node, see {@link #address()}.
+	 */
+	public ChannelFuture send(Serializable event, InetSocketAddress address) {
+		Objects.requireNonNull(event, "Argument 'event' may not be null.");
+		Priority priority = Priority.of(event);
+		return outbound(event.getClass(), priority).post(Frame.event(cluster, node, priority, event), Objects.requireNonNull(address));
+	}
+
+	/**
+	 * @return - The send side of whichever interface the given type of event, with the given priority, is routed to, see {@link Builder#route(Class, InetAddress)}.
+	 */
+	private Outbound outbound(Class<?> type, Priority priority) {
+		return homes.length == 1 ? homes[0].outbound : homes[routes.route(type, priority)].outbound;
+	}
+
+	/**
+	 * Registers a flyweight type, so this node can claim, post, and receive it. Types are identified by their name, so every node has to use the same class.
+	 *
+	 * @param type    - The flyweight type.
+	 * @param factory - Creates empty views of the type, (Usually its constructor) a receiving thread only ever needs one.
+	 * @return - This instance.
+	 */
+	public synchronized <T extends Flyweight> Ion flyweight(Class<T> type, Supplier<T> factory) {
+		Objects.requireNonNull(type, "Argument 'type' may not be null.");
+		Objects.requireNonNull(factory, "Argument 'factory' may not be null.");
+		FlyweightType<T> flyweight = new FlyweightType<>(type, factory);
+		for (FlyweightType<?> existing : flyweights) {
+			if (existing.id == flyweight.id)
+				throw new IllegalArgumentException("Flyweight type already registered: " + (existing.type == type ? type : existing.type + ", which has the same id as " + type));
+		}
+		FlyweightType<?>[] flyweights = Arrays.copyOf(this.flyweights, this.flyweights.length + 1);
+		flyweights[flyweights.length - 1] = flyweight;
+		this.flyweights = flyweights;
+		return this;
+	}
+
+	/**
+	 * Claims a view of the given flyweight type, over a fresh buffer that's laid out exactly like the datagram it'll be sent as.
+	 * Set its fields, and then {@link #post(Flyweight)} it, or {@link Flyweight#release()} it to throw it away. The fields start out zeroed.
+	 *
+	 * @throws IllegalArgumentException - If the type isn't registered, see {@link #flyweight(Class, Supplier)}.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Flyweight> T claim(Class<T> type) {
+		FlyweightType<?> flyweight = flyweight(Strings.identify(type.getName()));
+		if (flyweight == null || flyweight.type != type)
+			throw new IllegalArgumentException("Unregistered flyweight type: " + type);
+		int length = Frame.FLYWEIGHT_HEADER + flyweight.size;
+		ByteBuf buf = homes[0].unicast.alloc().ioBuffer(length);
+		buf.setZero(0, length);
+		buf.setLong(Frame.HEADER, flyweight.id);
+		buf.writerIndex(length);
+		Flyweight view = flyweight.create();
+		view.wrap(buf, Frame.FLYWEIGHT_HEADER, Flyweight.CLAIMED);
+		return (T) view;
+	}
+
+	/**
+	 * Posts a claimed flyweight to every node in the cluster (Including this one), with the {@link Priority} declared on its type.
+	 * The buffer it was claimed with is sent as is, and the view is no longer valid afterwards.
+	 *
+	 * @throws IllegalArgumentException - If the flyweight wasn't claimed, or it was already posted.
+	 */
+	public ChannelFuture post(Flyweight event) {
+		return post(event, Priority.of(event));
+	}
+
+	/**
+	 * Posts a claimed flyweight to every node in the cluster (Including this one), with the given {@link Priority}.
+	 * The buffer it was claimed with is sent as is, and the view is no longer valid afterwards.
+	 *
+	 * @throws IllegalArgumentException - If the flyweight wasn't claimed, or it was already posted.
+	 */
+	public ChannelFuture post(Flyweight event, Priority priority) {
+		Objects.requireNonNull(priority, "Argument 'priority' may not be null.");
+		if (event.mode() != Flyweight.CLAIMED || !event.valid())
+			throw new IllegalArgumentException("Only a claimed flyweight can be posted, and only once: " + event);
+		return outbound(event.getClass(), priority).post(Frame.flyweight(cluster, node, priority, event.detach()), broadcast);
+	}
+
+	/**
+	 * The channel of {@code int} samples with the given name, on the local bus. Samples posted to it by any node of the cluster are handed to it from now on.
+	 * See {@link EventBus#intChannel(String)}, and {@link #post(IntChannel, int, int)}.
+	 *
+	 * @throws IllegalArgumentException - If a channel of a different type already has that name.
+	 */
+	public IntChannel intChannel(String name) {
+		IntChannel channel = bus.intChannel(name);
+		channel(channel, Frame.SAMPLE_INT);
+		return channel;
+	}
+
+	/**
+	 * The channel of {@code long} samples with the given name, on the local bus. Samples posted to it by any node of the cluster are handed to it from now on.
+	 * See {@link EventBus#longChannel(String)}, and {@link #post(LongChannel, int, long)}.
+	 *
+	 * @throws IllegalArgumentException - If a channel of a different type already has that name.
+	 */
+	public LongChannel longChannel(String name) {
+		LongChannel channel = bus.longChannel(name);
+		channel(channel, Frame.SAMPLE_LONG);
+		return channel;
+	}
+
+	/**
+	 * The channel of {@code double} samples with the given name, on the local bus. Samples posted to it by any node of the cluster are handed to it from now on.
+	 * See {@link EventBus#doubleChannel(String)}, and {@link #post(DoubleChannel, int, double)}.
+	 *
+	 * @throws IllegalArgumentException - If a channel of a different type already has that name.
+	 */
+	public DoubleChannel doubleChannel(String name) {
+		DoubleChannel channel = bus.doubleChannel(name);
+		channel(channel, Frame.SAMPLE_DOUBLE);
+		return channel;
+	}
+
+	/**
+	 * Posts a sample to the given channel on every node in the cluster (Including this one).
+	 * Every sample is a fixed 43 byte datagram, that's never serialised, and never boxed.
+	 *
+	 * @param channel - A channel of the local bus.
+	 */
+	public ChannelFuture post(IntChannel channel, int key, int value) {
+		return post(channel(channel, Frame.SAMPLE_INT), key, value);
+	}
+
+	/**
+	 * Posts a sample to the given channel on every node in the cluster (Including this one).
+	 * Every sample is a fixed 43 byte datagram, that's never serialised, and never boxed.
+	 *
+	 * @param channel - A channel of the local bus.
+	 */
+	public ChannelFuture post(LongChannel channel, int key, long value) {
+		return post(channel(channel, Frame.SAMPLE_LONG), key, value);
+	}
+
+	/**
+	 * Posts a sample to the given channel on every node in the cluster (Including this one).
+	 * Every sample is a fixed 43 byte datagram, that's never serialised, and never boxed.
+	 *
+	 * @param channel - A channel of the local bus.
+	 */
+	public ChannelFuture post(DoubleChannel channel, int key, double value) {
+		return post(channel(channel, Frame.SAMPLE_DOUBLE), key, Double.doubleToRawLongBits(value));
+	}
+
+	private ChannelFuture post(SampleChannel channel, int key, long value) {
+		ByteBuf buf = homes[0].unicast.alloc().ioBuffer(Frame.SAMPLE_LENGTH);
+		return outbound(channel.channel.getClass(), Priority.NORMAL).post(Frame.sample(cluster, node, Priority.NORMAL, buf, channel.id, channel.type, key, value), broadcast);
+	}
+
+	/**
+	 * @return - The given channel, ready to send and receive samples. (Hashing its name every time would be a waste)
+	 */
+	private SampleChannel channel(PrimitiveChannel<?> channel, int type) {
+		Objects.requireNonNull(channel, "Argument 'channel' may not be null.");
+		for (SampleChannel existing : channels) {
+			if (existing.channel == channel)
+				return existing;
+		}
+		synchronized (this) {
+			for (SampleChannel existing : channels) {
+				if (existing.channel == channel)
+					return existing;
+			}
+			SampleChannel sample = new SampleChannel(channel, type);
+			for (SampleChannel existing : channels) {
+				if (existing.id == sample.id)
+					throw new IllegalArgumentException(channel + " has the same id as " + existing.channel + '.');
+			}
+			if (channel != channelOf(channel.name, type))
+				throw new IllegalArgumentException(channel + " belongs to another bus.");
+			SampleChannel[] channels = Arrays.copyOf(this.channels, this.channels.length + 1);
+			channels[channels.length - 1] = sample;
+			this.channels = channels;
+			return sample;
+		}
+	}
+
+	private PrimitiveChannel<?> channelOf(String name, int type) {
+		switch (type) {
+			case Frame.SAMPLE_INT:
+				return bus.intChannel(name);
+			case Frame.SAMPLE_LONG:
+				return bus.longChannel(name);
+			default:
+				return bus.doubleChannel(name);
+		}
+	}
+
+	/**
+	 * Publishes every event of the given type this node receives, as a Reactive Streams publisher, see {@link EventPublisher}.
+	 * <p>
+	 * With {@link Overflow#PAUSE}, a subscriber that falls behind stops this node from reading any more datagrams until it catches up,
+	 * so it's the socket's receive buffer that fills up instead. (And once that's full, the kernel drops them)
+	 * That pauses every other cluster that shares the runtime's socket for the cluster's port, and it doesn't pause frames read from shared memory.
+	 *
+	 * @param capacity - How many events each subscription buffers.
+	 * @param overflow - What each subscription does once its buffer is full.
+	 */
+	public <T> EventPublisher<T> publisher(Class<T> type, int capacity, Overflow overflow) {
+		return new EventPublisher<>(bus, type, capacity, overflow, reading);
+	}
+
+	/**
+	 * A Reactive Streams subscriber that posts everything it receives to the cluster, in batches, see {@link IonSink}.
+	 *
+	 * @param batchSize - The most events that are posted at once.
+	 * @param linger    - How long an event can wait for its batch to fill up. 0 to never wait.
+	 */
+	public <T extends Serializable> IonSink<T> sink(int batchSize, long linger, TimeUnit unit) {
+		return new IonSink<>(this, batchSize, linger, unit, homes[0].unicast.eventLoop());
+	}
+
+	/**
+	 * Posts the given event to every node in the cluster (Including this one), as a request.
+	 * A subscriber on any node can answer it with {@link #reply(Object, Serializable)}, and the first reply that arrives completes the returned future.
+	 * Replies are routed straight to the future, they're never posted to the {@link EventBus}.
+	 * <p>
+	 * If no reply arrives within the timeout, the future completes exceptionally with a {@link TimeoutException}.
+	 * Cancelling the future stops waiting on the request.
+	 *
+	 * @param request - The event to post.
+	 * @param timeout - How long to wait for a reply.
+	 * @param unit    - The unit of {@code timeout}.
+	 * @return - A future of the reply. (Note: The type of the reply isn't checked.)
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Serializable> CompletableFuture<T> request(Serializable request, long timeout, TimeUnit unit) {
+		Objects.requireNonNull(request, "Argument 'request' may not be null.");
+		long correlation = correlations.incrementAndGet();
+		CompletableFuture<Serializable> future = new CompletableFuture<>();
+		pending.put(correlation, future);
+		Timeout timer = TIMER.newTimeout(t -> future.completeExceptionally(new TimeoutException("No reply to " + request + " within " + timeout + ' ' + unit)), timeout, unit);
+		// However the future completes (reply, timeout, failed write, or the caller cancelling it), stop tracking it.
+		future.whenComplete((reply, cause) -> {
+			pending.remove(correlation);
+			timer.cancel();
+		});
+		Priority priority = Priority.of(request);
+		outbound(request.getClass(), priority).post(Frame.request(cluster, node, priority, correlation, request), broadcast).addListener(f -> {
+			if (!f.isSuccess())
+				future.completeExceptionally(f.cause());
+		});
+		return (CompletableFuture<T>) future;
+	}
+
+	/**
+	 * Replies to a request that was received by this node.
+	 * The reply is sent with the priority of the request, straight to the node that sent the request.
+	 *
+	 * @param request  - The request, exactly as it was received by the subscriber.
+	 * @param response - The reply.
+	 * @throws IllegalArgumentException - If the given object isn't a request this node received, or it has already been replied to.
+	 */
+	public ChannelFuture reply(Object request, Serializable response) {
+		Objects.requireNonNull(response, "Argument 'response' may not be null.");
+		ReplyTo replyTo = requests.asMap().remove(request);
+		if (replyTo == null)
+			throw new IllegalArgumentException("Not an outstanding request: " + request);
+		return outbound(response.getClass(), replyTo.priority).post(Frame.reply(cluster, node, replyTo.priority, replyTo.node, replyTo.correlation, response), replyTo.address);
+	}
+
+	/**
+	 * @return - How many datagrams this node dropped, because it had already received them.
+	 * A datagram can arrive more than once if it's duplicated by the network, or if the node is on several interfaces, see {@link Builder#networkInterface(NetworkInterface)}.
+	 */
+	public long duplicates() {
+		return deduplication.dropped();
+	}
+
+	/**
+	 * @return - The id of this node. It's random, and unique to this instance.
+	 */
+	public long node() {
+		return node;
+	}
+
+	/**
+	 * @return - The address other nodes can send unicast traffic to. A multi-homed node can be reached on any of its interfaces, but this is the first one's.
+	 */
+	public InetSocketAddress address() {
+		Home home = homes[0];
+		return new InetSocketAddress(home.runtime.localAddress(), ((InetSocketAddress) home.unicast.localAddress()).getPort());
+	}
+
+	/**
+	 * Appends every event this node posts, sends, or receives from now on to the given {@link Journal}.
+	 * Events are journaled in their encoded form, so they can be replayed with {@link #replay(Journal, EventBus, long, TimeUnit)}.
+	 *
+	 * @return - This instance.
+	 */
+	public Ion journal(Journal journal) {
+		Journaling journaling = new Journaling(Objects.requireNonNull(journal, "Argument 'journal' may not be null."), node);
+		this.journaling = journaling;
+		for (Home home : homes)
+			home.unicast.pipeline().addFirst(journaling);
+		return this;
+	}
+
+	/**
+	 * Posts every event in the given journal that was journaled within the given duration to the given {@link EventBus}, on the calling thread.
+	 * Events are posted with the priority they were originally sent with. Replies aren't replayed, nobody's waiting on them anymore,
+	 * and neither are flyweights, or samples, as there's no registry of their types, or channels, to read them with, see {@link #flyweight(Class, Supplier)}.
+	 *
+	 * @param journal  - The journal to replay.
+	 * @param bus      - The bus to post the events to.
+	 * @param duration - How far back to replay.
+	 * @param unit     - The unit of {@code duration}.
+	 * @return - The number of events that were replayed.
+	 */
+	public static long replay(Journal journal, EventBus bus, long duration, TimeUnit unit) throws IOException {
+		Objects.requireNonNull(bus, "Argument 'bus' may not be null.");
+		long[] count = {0};
+		journal.replay(System.currentTimeMillis() - unit.toMillis(duration), record -> {
+			ByteBuf buf = Unpooled.wrappedBuffer(record);
+			Frame frame = Frame.readHeader(buf);
+			if (frame == null || frame.kind == Frame.REPLY)
+				return;
+			try {
+				frame.readPayload(buf);
+			} catch (IOException | ClassNotFoundException e) {
+				log.warn("Skipping journaled event that couldn't be decoded.", e);
+				return;
+			}
+			bus.post(frame.event, frame.priority);
+			count[0]++;
+		});
+		return count[0];
 	}
 
 	public EventBus local() {
@@ -129,8 +1001,23 @@ public final class Ion {
 	}
 
 	public void shutdown() {
-		group.shutdownGracefully().syncUninterruptibly();
-		channel.close().syncUninterruptibly();
+		IllegalStateException shutdown = new IllegalStateException(this + " was shut down.");
+		pending.values().forEach(future -> future.completeExceptionally(shutdown));
+		TimingWheel<Serializable> delayed = this.delayed;
+		if (delayed != null)
+			delayed.clear();
+		SharedMemory shm = this.shm;
+		if (shm != null)
+			shm.close();
+		for (Home home : homes)
+			home.runtime.leave(this, broadcast.getPort(), broadcast);
+		// The channels have to be closed while their event loops are still around to do it.
+		for (Home home : homes)
+			home.unicast.close().syncUninterruptibly();
+		if (owner) {
+			for (Home home : homes)
+				home.runtime.shutdown();
+		}
 	}
 
 	@Override
@@ -138,12 +1025,292 @@ public final class Ion {
 		return "[Ion:" + bus.identifier + ']';
 	}
 
+	/**
+	 * Joins the given cluster on the given port, with a {@link IonRuntime} of its own, waiting until it's started.
+	 * To join several clusters, share a runtime between them, see {@link IonRuntime#cluster(String, int)}.
+	 * To start without waiting, or to tune the sockets, see {@link #builder()}.
+	 */
 	public static Ion cluster(String name, int port) {
 		try {
-			return new Ion(new EventBus(name), port);
-		} catch (IOException e) {
-			// @TODO Jezza - 23 Aug 2017: Fix this...
-			throw new IllegalStateException(e);
+			return builder()
+					.name(name)
+					.port(port)
+					.start()
+					.join();
+		} catch (CompletionException e) {
+			// Failing to start has always been an IllegalStateException here, whatever the builder's future says.
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Configures, and starts, a single {@link Ion}.
+	 * <p>
+	 * Socket options apply to the unicast socket of the node, which is where everything is sent from, and to the multicast socket of the port,
+	 * if this is the first node of its {@link IonRuntime} to use the port. Otherwise, it shares the socket that's already there, options and all.
+	 * <pre>
+	 * CompletableFuture&lt;Ion&gt; ion = Ion.builder()
+	 * 		.name("prices")
+	 * 		.port(4455)
+	 * 		.networkInterface("eth1")
+	 * 		.receiveBufferSize(8 * 1024 * 1024)
+	 * 		.maxDatagramSize(1500)
+	 * 		.start();
+	 * </pre>
+	 * A node can also be on several interfaces at once, with its own sockets and event loops on each.
+	 * It joins the group on every one of them, and receives each datagram once, whichever interface it arrived on.
+	 * What it sends goes out on the first interface, unless it's routed elsewhere:
+	 * <pre>
+	 * Ion.builder()
+	 * 		.name("prices")
+	 * 		.port(4455)
+	 * 		.networkInterface("eth1")
+	 * 		.networkInterface("eth2")
+	 * 		.route(Priority.CONTROL, NetworkInterface.getByName("eth2"))
+	 * 		.route(Snapshot.class, NetworkInterface.getByName("eth1"))
+	 * 		.start();
+	 * </pre>
+	 *
+	 * @author Jezza
+	 */
+	public static final class Builder {
+		/**
+		 * Every node shares the same pool, so buffers are reused between sockets.
+		 */
+		private static final ByteBufAllocator ALLOCATOR = new PooledByteBufAllocator(true);
+
+		private final List<IonRuntime> runtimes = new ArrayList<>();
+		private EventBus bus;
+		private String name;
+		private InetAddress group;
+		private int port = -1;
+		private final List<NetworkInterface> networkInterfaces = new ArrayList<>();
+		private int threads;
+
+		private final Map<Priority, InetAddress> priorityRoutes = new EnumMap<>(Priority.class);
+		private final Map<Class<?>, InetAddress> typeRoutes = new LinkedHashMap<>();
+
+		private final Map<ChannelOption<?>, Object> options = new LinkedHashMap<>();
+
+		private Builder() {
+			options.put(ChannelOption.ALLOCATOR, ALLOCATOR);
+		}
+
+		/**
+		 * The name of the cluster, it decides the group, see {@link Strings#group(String)}. Either this, or {@link #bus(EventBus)} is required.
+		 */
+		public Builder name(String name) {
+			this.name = Objects.requireNonNull(name, "Argument 'name' may not be null.");
+			return this;
+		}
+
+		/**
+		 * The bus events from the cluster are posted to. The cluster is named by its identifier.
+		 */
+		public Builder bus(EventBus bus) {
+			this.bus = Objects.requireNonNull(bus, "Argument 'bus' may not be null.");
+			return this;
+		}
+
+		/**
+		 * The group of the cluster, instead of the one its name maps to. Every node of the cluster has to agree on it.
+		 * Useful when the name of the cluster collides with another cluster's, or when the network only routes a few specific groups.
+		 */
+		public Builder group(InetAddress group) {
+			if (!Objects.requireNonNull(group, "Argument 'group' may not be null.").isMulticastAddress())
+				throw new IllegalArgumentException("Not a multicast address: " + group);
+			this.group = group;
+			return this;
+		}
+
+		/**
+		 * The port of the cluster. Required.
+		 */
+		public Builder port(int port) {
+			if (port < 0 || port > 0xFFFF)
+				throw new IllegalArgumentException("Invalid port: " + port);
+			this.port = port;
+			return this;
+		}
+
+		/**
+		 * Shares the given runtime, instead of creating one for this node alone.
+		 * The runtime decides the network interface, and the event loop threads, so neither can be configured alongside it.
+		 * Sharing several runtimes, each on a different interface, puts the node on every one of them, the first one being its primary.
+		 * A node can be on at most 8 interfaces.
+		 */
+		public Builder runtime(IonRuntime runtime) {
+			Objects.requireNonNull(runtime, "Argument 'runtime' may not be null.");
+			if (!runtimes.contains(runtime))
+				runtimes.add(runtime);
+			return this;
+		}
+
+		/**
+		 * The interface multicast traffic is sent and received on. (Default: The first IPv4 interface that's up)
+		 * Every interface that's given gets a runtime of its own, so the node joins its group on each of them, with its own sockets, and event loops.
+		 * The first one is its primary, it's what the node is known by, and what it sends on, unless it's told otherwise, see {@link #route(Priority, InetAddress)}.
+		 * A node can be on at most 8 interfaces.
+		 */
+		public Builder networkInterface(NetworkInterface networkInterface) {
+			Objects.requireNonNull(networkInterface, "Argument 'networkInterface' may not be null.");
+			if (!networkInterfaces.contains(networkInterface))
+				networkInterfaces.add(networkInterface);
+			return this;
+		}
+
+		/**
+		 * The interface multicast traffic is sent and received on, by name. (Default: The first IPv4 interface that's up)
+		 * See {@link #networkInterface(NetworkInterface)}.
+		 *
+		 * @throws IllegalArgumentException - If there's no such interface.
+		 */
+		public Builder networkInterface(String name) throws SocketException {
+			NetworkInterface networkInterface = NetworkInterface.getByName(name);
+			if (networkInterface == null)
+				throw new IllegalArgumentException("Unknown network interface: " + name);
+			return networkInterface(networkInterface);
+		}
+
+		/**
+		 * Sends events of the given priority on the interface with the given address, instead of the primary one.
+		 * Any rule for the type of an event wins over this, see {@link #route(Class, InetAddress)}.
+		 *
+		 * @param via - The local address of one of the node's interfaces, see {@link IonRuntime#localAddress()}.
+		 */
+		public Builder route(Priority priority, InetAddress via) {
+			priorityRoutes.put(Objects.requireNonNull(priority, "Argument 'priority' may not be null."), Objects.requireNonNull(via, "Argument 'via' may not be null."));
+			return this;
+		}
+
+		/**
+		 * @see #route(Priority, InetAddress)
+		 */
+		public Builder route(Priority priority, NetworkInterface via) throws SocketException {
+			return route(priority, Addresses.getIp4Address(via));
+		}
+
+		/**
+		 * Sends events of the given type, or any of its subtypes, on the interface with the given address, instead of the primary one.
+		 * If several rules cover a type, the one that was added first wins. Flyweights, and samples (By the type of their channel), are routed the same way.
+		 *
+		 * @param via - The local address of one of the node's interfaces, see {@link IonRuntime#localAddress()}.
+		 */
+		public Builder route(Class<?> type, InetAddress via) {
+			typeRoutes.put(Objects.requireNonNull(type, "Argument 'type' may not be null."), Objects.requireNonNull(via, "Argument 'via' may not be null."));
+			return this;
+		}
+
+		/**
+		 * @see #route(Class, InetAddress)
+		 */
+		public Builder route(Class<?> type, NetworkInterface via) throws SocketException {
+			return route(type, Addresses.getIp4Address(via));
+		}
+
+		/**
+		 * How many event loop threads the node's own runtime has. (Default: Netty's default)
+		 * A node on several interfaces has this many threads for each of them.
+		 */
+		public Builder threads(int threads) {
+			if (threads < 1)
+				throw new IllegalArgumentException("Threads must be positive: " + threads);
+			this.threads = threads;
+			return this;
+		}
+
+		/**
+		 * SO_RCVBUF, how many bytes the kernel can queue up for us, before it starts dropping datagrams.
+		 * High packet rates need a lot more than the default. (Note: The kernel caps it, see net.core.rmem_max on Linux)
+		 */
+		public Builder receiveBufferSize(int bytes) {
+			return option(ChannelOption.SO_RCVBUF, bytes);
+		}
+
+		/**
+		 * SO_SNDBUF, how many bytes the kernel can queue up for sending. (Note: The kernel caps it, see net.core.wmem_max on Linux)
+		 */
+		public Builder sendBufferSize(int bytes) {
+			return option(ChannelOption.SO_SNDBUF, bytes);
+		}
+
+		/**
+		 * The size of the buffer each datagram is read into, anything bigger is truncated. (Default: 2048)
+		 * Buffers are direct, and pooled, so the size should be kept close to the biggest datagram the cluster actually sends.
+		 */
+		public Builder maxDatagramSize(int bytes) {
+			if (bytes < 64 || bytes > 0xFFFF)
+				throw new IllegalArgumentException("Invalid datagram size: " + bytes);
+			return option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(bytes));
+		}
+
+		/**
+		 * IP_MULTICAST_TTL, how many hops multicast traffic can make. (Default: 1, the local network)
+		 */
+		public Builder ttl(int ttl) {
+			if (ttl < 0 || ttl > 255)
+				throw new IllegalArgumentException("Invalid TTL: " + ttl);
+			return option(ChannelOption.IP_MULTICAST_TTL, ttl);
+		}
+
+		/**
+		 * Whether multicast traffic loops back to this host. (Default: true)
+		 * Without it, nodes on this host only hear each other via shared memory, if that's enabled, (See {@code ion.shm.enabled}) and this node doesn't hear its own posts.
+		 */
+		public Builder loopback(boolean loopback) {
+			return option(ChannelOption.IP_MULTICAST_LOOP_DISABLED, !loopback);
+		}
+
+		/**
+		 * Sets any other option of the node's sockets.
+		 */
+		public <T> Builder option(ChannelOption<T> option, T value) {
+			options.put(Objects.requireNonNull(option, "Argument 'option' may not be null."), Objects.requireNonNull(value, "Argument 'value' may not be null."));
+			return this;
+		}
+
+		/**
+		 * Starts the node, without blocking. Any node can be started from any thread, so several can be started in parallel.
+		 *
+		 * @return - A future that completes once the node is bound, and has joined its group.
+		 */
+		public CompletableFuture<Ion> start() {
+			if (bus == null && name == null)
+				throw new IllegalStateException("Either a name, or a bus, is required.");
+			if (port < 0)
+				throw new IllegalStateException("A port is required.");
+			if (!runtimes.isEmpty() && (!networkInterfaces.isEmpty() || threads != 0))
+				throw new IllegalStateException("The network interface and threads of a shared runtime are decided by the runtime.");
+			// Each interface sends on a lane of its own, see Frame.
+			if (Math.max(runtimes.size(), networkInterfaces.size()) > Frame.LANES)
+				throw new IllegalStateException("A node can't be on more than " + Frame.LANES + " interfaces: " + Math.max(runtimes.size(), networkInterfaces.size()));
+			EventBus bus = this.bus != null ? this.bus : new EventBus(name);
+			Map<ChannelOption<?>, Object> options = new LinkedHashMap<>(this.options);
+			boolean owner = runtimes.isEmpty();
+			List<IonRuntime> runtimes = new ArrayList<>(this.runtimes);
+			try {
+				if (owner && networkInterfaces.isEmpty()) {
+					runtimes.add(new IonRuntime(threads));
+				} else if (owner) {
+					for (NetworkInterface networkInterface : networkInterfaces)
+						runtimes.add(new IonRuntime(threads, networkInterface));
+				}
+				List<InetAddress> addresses = new ArrayList<>(runtimes.size());
+				for (IonRuntime runtime : runtimes)
+					addresses.add(runtime.localAddress());
+				Routes routes = Routes.of(addresses, priorityRoutes, typeRoutes);
+				return new Ion(runtimes, owner, routes, bus, group, port, options).started;
+			} catch (IllegalStateException | IllegalArgumentException e) {
+				if (owner)
+					runtimes.forEach(IonRuntime::shutdown);
+				CompletableFuture<Ion> failed = new CompletableFuture<>();
+				failed.completeExceptionally(e instanceof IllegalStateException && e.getCause() != null ? e.getCause() : e);
+				return failed;
+			}
 		}
 	}
 }
@@ -0,0 +1,313 @@
+package me.jezza.ion;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.socket.DatagramPacket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import me.jezza.ion.bus.EventBus;
+import me.jezza.ion.transport.NioTransport;
+import me.jezza.ion.transport.Transport;
+
+/**
+ * Everything any number of {@link Ion}s can share: the {@link Transport} they all run on, and a single multicast socket per port.
+ * <p>
+ * Every cluster on a port joins its group on that port's socket, and each datagram that arrives is handed to the {@link Ion}s of the cluster
+ * named in its header, see {@link Frame}. Datagrams of a cluster that none of this runtime's {@link Ion}s belong to are dropped before they're decoded.
+ * Each {@link Ion} still has a unicast socket of its own, as its address is what identifies it to every other node.
+ * <p>
+ * {@link Ion#cluster(String, int)} gives each {@link Ion} a runtime of its own. A service that joins several clusters should share a single runtime instead:
+ * <pre>
+ * IonRuntime runtime = new IonRuntime(2);
+ * Ion orders = runtime.cluster("orders", 4455);
+ * Ion prices = runtime.cluster("prices", 4455);
+ * </pre>
+ * By default, the transport is a real network interface, see {@link NioTransport}, but it can be anything, such as a simulated network, see {@link me.jezza.ion.transport.MemoryNetwork}.
+ *
+ * @author Jezza
+ */
+public final class IonRuntime {
+	private static final Logger log = LoggerFactory.getLogger(IonRuntime.class);
+
+	private final Transport transport;
+
+	/**
+	 * Indexed by port. Guarded by this.
+	 */
+	private final Map<Integer, Endpoint> endpoints = new HashMap<>();
+
+	/**
+	 * A runtime backed by Netty's default event loop group, on the first IPv4 network interface that's up.
+	 */
+	public IonRuntime() {
+		this(new NioTransport(0, null));
+	}
+
+	/**
+	 * @param threads - How many event loop threads every {@link Ion} of this runtime shares.
+	 */
+	public IonRuntime(int threads) {
+		this(new NioTransport(threads, null));
+	}
+
+	/**
+	 * @param threads          - How many event loop threads every {@link Ion} of this runtime shares.
+	 * @param networkInterface - The interface multicast traffic is sent and received on. It has to have an IPv4 address.
+	 */
+	public IonRuntime(int threads, NetworkInterface networkInterface) {
+		this(new NioTransport(threads, Objects.requireNonNull(networkInterface, "Argument 'networkInterface' may not be null.")));
+	}
+
+	/**
+	 * @param group - The event loop group every {@link Ion} of this runtime runs on. It isn't shut down with the runtime.
+	 */
+	public IonRuntime(EventLoopGroup group) {
+		this(new NioTransport(group, null));
+	}
+
+	/**
+	 * @param group            - The event loop group every {@link Ion} of this runtime runs on. It isn't shut down with the runtime.
+	 * @param networkInterface - The interface multicast traffic is sent and received on. It has to have an IPv4 address.
+	 */
+	public IonRuntime(EventLoopGroup group, NetworkInterface networkInterface) {
+		this(new NioTransport(group, Objects.requireNonNull(networkInterface, "Argument 'networkInterface' may not be null.")));
+	}
+
+	/**
+	 * @param transport - What every {@link Ion} of this runtime sends and receives through. It's shut down with the runtime.
+	 */
+	public IonRuntime(Transport transport) {
+		this.transport = Objects.requireNonNull(transport, "Argument 'transport' may not be null.");
+	}
+
+	/**
+	 * Joins the given cluster on the given port.
+	 */
+	public Ion cluster(String name, int port) {
+		return cluster(new EventBus(name), port);
+	}
+
+	/**
+	 * Joins the cluster named by the identifier of the given bus on the given port. Events from the cluster are posted to the given bus.
+	 */
+	public Ion cluster(EventBus bus, int port) {
+		try {
+			return Ion.builder()
+					.runtime(this)
+					.bus(bus)
+					.port(port)
+					.start()
+					.join();
+		} catch (CompletionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * @param options - Extra options for the channel, see {@link Ion.Builder}.
+	 */
+	@SuppressWarnings("unchecked")
+	Bootstrap bootstrap(Map<ChannelOption<?>, Object> options) {
+		Bootstrap bootstrap = transport.bootstrap()
+				// Keep Netty's own buffer small, so a backlog builds up in the staged lanes of Outbound, where control events can skip it.
+				.option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(8 * 1024, 32 * 1024));
+		options.forEach((option, value) -> bootstrap.option((ChannelOption<Object>) option, value));
+		return bootstrap;
+	}
+
+	/**
+	 * @return - The address of the interface this runtime is on, see {@link Transport#localAddress()}.
+	 */
+	public InetAddress localAddress() {
+		return transport.localAddress();
+	}
+
+	Transport transport() {
+		return transport;
+	}
+
+	/**
+	 * Starts handing the multicast traffic of the given {@link Ion}'s cluster to it, binding the port, and joining the group if nobody else has yet.
+	 * If the port has to be bound, it's bound with the given options, and whoever else joins the port later shares them.
+	 *
+	 * @return - A future that completes once the port is bound, and the group is joined.
+	 */
+	synchronized CompletableFuture<Void> join(Ion ion, int port, InetSocketAddress broadcast, Map<ChannelOption<?>, Object> options) {
+		Endpoint endpoint = endpoints.get(port);
+		if (endpoint == null) {
+			endpoint = new Endpoint();
+			ChannelFuture bind = bootstrap(options)
+					.handler(endpoint)
+					.bind(port);
+			endpoint.channel = bind.channel();
+			endpoint.bound = completion(bind);
+			endpoints.put(port, endpoint);
+		}
+		Channel channel = endpoint.channel;
+		Membership membership = endpoint.groups.computeIfAbsent(broadcast.getAddress(), k -> new Membership());
+		String name = ion.local().identifier;
+		for (String other : membership.names) {
+			if (!other.equals(name))
+				log.warn("Clusters '{}' and '{}' collide on {}:{}. Their traffic is kept apart, but every node of either still receives the other's, consider giving one of them its own group.", name, other, broadcast.getAddress().getHostAddress(), port);
+		}
+		membership.names.add(name);
+		if (membership.count++ == 0)
+			membership.joined = endpoint.bound.thenCompose(v -> completion(transport.joinGroup(channel, broadcast)));
+		endpoint.members.computeIfAbsent(ion.cluster(), k -> new CopyOnWriteArrayList<>()).add(ion);
+		return membership.joined;
+	}
+
+	/**
+	 * Stops handing multicast traffic to the given {@link Ion}, leaving the group, and closing the port if nobody else is using them.
+	 * This doesn't wait for either to happen, so it's safe to call from an event loop.
+	 */
+	synchronized void leave(Ion ion, int port, InetSocketAddress broadcast) {
+		Endpoint endpoint = endpoints.get(port);
+		if (endpoint == null)
+			return;
+		List<Ion> members = endpoint.members.get(ion.cluster());
+		if (members == null || !members.remove(ion))
+			return;
+		if (members.isEmpty())
+			endpoint.members.remove(ion.cluster());
+		Membership membership = endpoint.groups.get(broadcast.getAddress());
+		if (--membership.count == 0) {
+			membership.names.clear();
+			endpoint.groups.remove(broadcast.getAddress());
+			if (endpoint.channel.isActive())
+				transport.leaveGroup(endpoint.channel, broadcast);
+		}
+		if (endpoint.members.isEmpty()) {
+			endpoints.remove(port);
+			endpoint.channel.close();
+		}
+	}
+
+	/**
+	 * Stops reading from the multicast socket of the given port, until it's resumed as many times as it was paused.
+	 * Every cluster on the port is paused along with it, as they all share the socket.
+	 */
+	synchronized void pause(int port) {
+		Endpoint endpoint = endpoints.get(port);
+		if (endpoint != null && endpoint.paused++ == 0)
+			endpoint.channel.config().setAutoRead(false);
+	}
+
+	synchronized void resume(int port) {
+		Endpoint endpoint = endpoints.get(port);
+		if (endpoint != null && endpoint.paused > 0 && --endpoint.paused == 0)
+			endpoint.channel.config().setAutoRead(true);
+	}
+
+	/**
+	 * Adapts a Netty future, so it can be composed with everything else.
+	 */
+	static CompletableFuture<Void> completion(ChannelFuture future) {
+		CompletableFuture<Void> completion = new CompletableFuture<>();
+		future.addListener(f -> {
+			if (f.isSuccess()) {
+				completion.complete(null);
+			} else {
+				completion.completeExceptionally(f.cause());
+			}
+		});
+		return completion;
+	}
+
+	/**
+	 * Closes every socket of this runtime, and shuts down the transport.
+	 * {@link Ion}s of this runtime should be shut down first.
+	 */
+	public void shutdown() {
+		List<Endpoint> endpoints;
+		synchronized (this) {
+			endpoints = new ArrayList<>(this.endpoints.values());
+			this.endpoints.clear();
+		}
+		// The channels have to be closed while their event loop is still around to do it.
+		for (Endpoint endpoint : endpoints)
+			endpoint.channel.close().syncUninterruptibly();
+		transport.shutdown();
+	}
+
+	@Override
+	public String toString() {
+		return "[IonRuntime:" + transport + ']';
+	}
+
+	/**
+	 * The multicast socket of a single port, and the demultiplexer of its traffic.
+	 */
+	private final class Endpoint extends SimpleChannelInboundHandler<DatagramPacket> {
+		Channel channel;
+		/**
+		 * Indexed by cluster id.
+		 */
+		final ConcurrentMap<Long, List<Ion>> members = new ConcurrentHashMap<>();
+		/**
+		 * Completes once the port is bound.
+		 */
+		CompletableFuture<Void> bound;
+		/**
+		 * Guarded by the runtime.
+		 */
+		final Map<InetAddress, Membership> groups = new HashMap<>();
+		/**
+		 * How many times reading was paused, guarded by the runtime.
+		 */
+		int paused;
+
+		/**
+		 * The ids of foreign clusters we've already warned about.
+		 */
+		private final Set<Long> foreign = new HashSet<>();
+
+		@Override
+		protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg) throws Exception {
+			long cluster = Frame.peekCluster(msg.content());
+			List<Ion> ions = members.get(cluster);
+			if (ions == null) {
+				// Only ever touched by the channel's event loop. Bounded, so a flood of garbage can't grow it forever.
+				if (cluster != 0 && foreign.size() < 1024 && foreign.add(cluster))
+					log.warn("Dropping traffic of foreign cluster {} from {} on port {}. If it was sent to one of our groups, its name collides with one of ours.", Long.toHexString(cluster), msg.sender(), msg.recipient().getPort());
+				return;
+			}
+			for (Ion ion : ions)
+				ion.receive(msg, IonRuntime.this);
+		}
+	}
+
+	/**
+	 * How many members joined a single group, and when the group was actually joined.
+	 */
+	private static final class Membership {
+		int count;
+		CompletableFuture<Void> joined;
+		/**
+		 * The names of every cluster that joined the group.
+		 */
+		final Set<String> names = new HashSet<>();
+	}
+}
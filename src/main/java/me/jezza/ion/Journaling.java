@@ -0,0 +1,41 @@
+package me.jezza.ion;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.socket.DatagramPacket;
+import me.jezza.ion.journal.Journal;
+
+/**
+ * Sits at the head of the unicast pipeline, and appends every datagram this node sends to a {@link Journal}.
+ * Datagrams this node receives are handed to {@link #received(ByteBuf)}, as multicast traffic arrives on a socket that's shared with other clusters.
+ * Our own multicast traffic loops back to us, so inbound datagrams that we sent are skipped, they were already journaled on the way out.
+ * <p>
+ * Appending only retains the buffer, the actual write happens on the journal's own thread, so the event loop never waits on it.
+ *
+ * @author Jezza
+ */
+@Sharable
+final class Journaling extends ChannelOutboundHandlerAdapter {
+	private final Journal journal;
+	private final long node;
+
+	Journaling(Journal journal, long node) {
+		this.journal = journal;
+		this.node = node;
+	}
+
+	void received(ByteBuf content) {
+		if (Frame.peekNode(content) != node)
+			journal.append(content);
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+		if (msg instanceof DatagramPacket)
+			journal.append(((DatagramPacket) msg).content());
+		ctx.write(msg, promise);
+	}
+}
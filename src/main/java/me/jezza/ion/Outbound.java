@@ -0,0 +1,177 @@
+package me.jezza.ion;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultAddressedEnvelope;
+import io.netty.util.concurrent.PromiseNotifier;
+import me.jezza.ion.bus.Conflation;
+import me.jezza.ion.bus.Priority;
+import me.jezza.ion.bus.interfaces.Conflate;
+import me.jezza.ion.utils.ConflatingQueue;
+import me.jezza.ion.utils.Pair;
+
+/**
+ * The send side of an {@link Ion}.
+ * <p>
+ * While the channel is writable, events are written straight through.
+ * Once it isn't (The outbound buffer hit its high water mark), events are staged here instead, and drained on the event loop as soon as it's writable again.
+ * <p>
+ * There's a staging lane for each {@link Priority}, and they're drained strictly in order of priority, so control events bypass any backlog of bulk events.
+ * While they're staged, events of a {@link Conflate} type replace any older staged event with the same key, which bounds both the memory and the catch-up time of a backlog.
+ * The future of a replaced event completes with the future of the event that replaced it.
+ *
+ * @author Jezza
+ */
+final class Outbound extends ChannelInboundHandlerAdapter implements Runnable {
+	private final Channel channel;
+	private final InetSocketAddress sender;
+
+	private final ConflatingQueue<Pending>[] lanes;
+	private int staged;
+
+	/** true if a drain has been submitted to the event loop, and hasn't run yet */
+	private boolean scheduled;
+
+	@SuppressWarnings("unchecked")
+	Outbound(Channel channel, InetSocketAddress sender) {
+		this.channel = channel;
+		this.sender = sender;
+		lanes = (ConflatingQueue<Pending>[]) new ConflatingQueue<?>[Priority.count()];
+		for (int i = 0; i < lanes.length; i++)
+			lanes[i] = new ConflatingQueue<>();
+	}
+
+	ChannelFuture post(Frame frame, InetSocketAddress recipient) {
+		Object key = keyOf(frame, recipient);
+		synchronized (this) {
+			if (staged != 0 || !channel.isWritable()) {
+				ChannelPromise promise = stage(key, frame, recipient);
+				schedule();
+				return promise;
+			}
+		}
+		return channel.writeAndFlush(new DefaultAddressedEnvelope<>(frame, recipient, sender));
+	}
+
+	/**
+	 * Posts every frame in order, with a single flush.
+	 *
+	 * @return - A future that completes once every frame was written, or fails with the first frame that couldn't be.
+	 */
+	ChannelFuture postAll(List<Frame> frames, InetSocketAddress recipient) {
+		ChannelPromise aggregate = channel.newPromise();
+		if (frames.isEmpty())
+			return aggregate.setSuccess();
+		AtomicInteger remaining = new AtomicInteger(frames.size());
+		ChannelFutureListener listener = future -> {
+			if (!future.isSuccess())
+				aggregate.tryFailure(future.cause());
+			if (remaining.decrementAndGet() == 0)
+				aggregate.trySuccess();
+		};
+		Object[] keys = new Object[frames.size()];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = keyOf(frames.get(i), recipient);
+		synchronized (this) {
+			if (staged != 0 || !channel.isWritable()) {
+				for (int i = 0; i < keys.length; i++)
+					stage(keys[i], frames.get(i), recipient).addListener(listener);
+				schedule();
+				return aggregate;
+			}
+		}
+		for (Frame frame : frames)
+			channel.write(new DefaultAddressedEnvelope<>(frame, recipient, sender)).addListener(listener);
+		channel.flush();
+		return aggregate;
+	}
+
+	private static Object keyOf(Frame frame, InetSocketAddress recipient) {
+		// Requests and replies are never conflated, someone's waiting on each of them.
+		Object key = frame.kind == Frame.EVENT ? Conflation.keyOf(frame.event) : null;
+		// An event only supersedes another one that's going to the same place.
+		return key != null ? Pair.of(recipient, key) : null;
+	}
+
+	/**
+	 * Guarded by this.
+	 */
+	private ChannelPromise stage(Object key, Frame frame, InetSocketAddress recipient) {
+		ChannelPromise promise = channel.newPromise();
+		Pending replaced = lanes[frame.priority.ordinal()].offer(key, new Pending(frame, recipient, promise));
+		if (replaced != null) {
+			promise.addListener(new PromiseNotifier<>(replaced.promise));
+		} else {
+			staged++;
+		}
+		return promise;
+	}
+
+	private void schedule() {
+		// Always hand it to the event loop, even if the channel isn't writable, so the drain and the writability events are ordered.
+		if (!scheduled) {
+			scheduled = true;
+			channel.eventLoop().execute(this);
+		}
+	}
+
+	private Pending poll() {
+		for (ConflatingQueue<Pending> lane : lanes) {
+			Pending next = lane.poll();
+			if (next != null) {
+				staged--;
+				return next;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void run() {
+		boolean wrote = false;
+		while (true) {
+			Pending next;
+			synchronized (this) {
+				if (!channel.isWritable() || (next = poll()) == null) {
+					scheduled = false;
+					break;
+				}
+			}
+			channel.write(new DefaultAddressedEnvelope<>(next.frame, next.recipient, sender), next.promise);
+			wrote = true;
+		}
+		if (wrote)
+			channel.flush();
+	}
+
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		if (ctx.channel().isWritable()) {
+			synchronized (this) {
+				if (staged != 0)
+					schedule();
+			}
+		}
+		super.channelWritabilityChanged(ctx);
+	}
+
+	private static final class Pending {
+		final Frame frame;
+		final InetSocketAddress recipient;
+		final ChannelPromise promise;
+
+		Pending(Frame frame, InetSocketAddress recipient, ChannelPromise promise) {
+			this.frame = frame;
+			this.recipient = recipient;
+			this.promise = promise;
+		}
+	}
+}
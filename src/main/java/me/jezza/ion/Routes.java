@@ -0,0 +1,82 @@
+package me.jezza.ion;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import me.jezza.ion.bus.Priority;
+import me.jezza.ion.utils.Pair;
+
+/**
+ * Decides which interface of a multi-homed {@link Ion} an event is sent on, see {@link Ion.Builder#route(Class, InetAddress)}.
+ * <p>
+ * A rule for the type of the event (Or any of its supertypes, in the order they were added) wins over a rule for its priority.
+ * Anything neither covers goes out on the first interface.
+ * Which interface a type maps to is only worked out once, so routing costs a single lookup per event.
+ *
+ * @author Jezza
+ */
+final class Routes {
+	private static final int NONE = -1;
+
+	/** the interface of each priority, by ordinal, or -1 */
+	private final int[] priorities;
+	private final List<Pair<Class<?>, Integer>> types;
+	private final ConcurrentMap<Class<?>, Integer> resolved = new ConcurrentHashMap<>();
+
+	private Routes(int[] priorities, List<Pair<Class<?>, Integer>> types) {
+		this.priorities = priorities;
+		this.types = types;
+	}
+
+	/**
+	 * @param addresses  - The local address of each interface, in order.
+	 * @param priorities - The interface each priority is sent on, by address.
+	 * @param types      - The interface each type is sent on, by address.
+	 * @throws IllegalArgumentException - If a rule names an address that isn't one of the interfaces, or two interfaces share an address.
+	 */
+	static Routes of(List<InetAddress> addresses, Map<Priority, InetAddress> priorities, Map<Class<?>, InetAddress> types) {
+		for (int i = 0; i < addresses.size(); i++) {
+			if (addresses.indexOf(addresses.get(i)) != i)
+				throw new IllegalArgumentException("A node can only be on each interface once, but there's several on " + addresses.get(i).getHostAddress());
+		}
+		int[] byPriority = new int[Priority.count()];
+		Arrays.fill(byPriority, NONE);
+		priorities.forEach((priority, address) -> byPriority[priority.ordinal()] = indexOf(addresses, address));
+		List<Pair<Class<?>, Integer>> byType = new ArrayList<>(types.size());
+		types.forEach((type, address) -> byType.add(Pair.of(type, indexOf(addresses, address))));
+		return new Routes(byPriority, byType);
+	}
+
+	private static int indexOf(List<InetAddress> addresses, InetAddress address) {
+		int index = addresses.indexOf(address);
+		if (index == -1)
+			throw new IllegalArgumentException("None of the node's interfaces has the address " + address.getHostAddress() + ", they're " + addresses);
+		return index;
+	}
+
+	/**
+	 * @return - The index of the interface the given type of event, with the given priority, is sent on.
+	 */
+	int route(Class<?> type, Priority priority) {
+		Integer index = resolved.get(type);
+		if (index == null)
+			index = resolved.computeIfAbsent(type, this::resolve);
+		if (index >= 0)
+			return index;
+		int route = priorities[priority.ordinal()];
+		return route != NONE ? route : 0;
+	}
+
+	private Integer resolve(Class<?> type) {
+		for (Pair<Class<?>, Integer> rule : types) {
+			if (rule.first().isAssignableFrom(type))
+				return rule.second();
+		}
+		return NONE;
+	}
+}
@@ -0,0 +1,307 @@
+package me.jezza.ion;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.socket.DatagramPacket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import me.jezza.ion.shm.BroadcastRing;
+
+/**
+ * The same-host transport: every node on a host publishes the frames it multicasts into its own {@link BroadcastRing} under {@code /dev/shm},
+ * and reads the rings of every other node of the same cluster on that host. Frames read from a ring are handed over exactly like a datagram.
+ * <p>
+ * Rings are named after the cluster and the node that writes to them, so a node discovers its local peers by scanning the directory.
+ * A peer that stops updating its heartbeat for {@link #STALE} (It crashed, or was shut down) is detached again, and its ring is deleted,
+ * as it's taking up memory, not disk. Only the header of a ring is read until it's known to be alive, so a stale ring is never mapped,
+ * and rings that can't be deleted, or that turn out to belong to another cluster, are remembered, and left alone from then on.
+ * <p>
+ * Frames are still multicast as usual, so remote nodes still receive them, and local peers get both copies. Whichever copy arrives second
+ * is dropped by the receiver's {@link Deduplication}, so the ring only ever makes a frame arrive sooner. A frame that's too big for the ring,
+ * or that's written before a peer has attached to the ring, still reaches that peer over the network.
+ * So the network cost is unchanged: Not a single send, or receive, is saved, the ring only races the kernel to local peers.
+ * <p>
+ * Every node has a reader thread of its own, that spins while there's traffic, then backs off to yielding, and then to parking for up to a millisecond,
+ * so an idle node doesn't burn a core, but it still wakes up about a thousand times a second, as does every other node of the runtime.
+ * That's only worth it for latency-sensitive nodes on a shared host, so shared memory has to be enabled explicitly.
+ * <p>
+ * Configured with the system properties:
+ * <ul>
+ * <li>{@code ion.shm.enabled}: Whether to use shared memory at all. (Default: false)</li>
+ * <li>{@code ion.shm.directory}: Where the rings are created. If it doesn't exist, shared memory isn't used. (Default: /dev/shm)</li>
+ * <li>{@code ion.shm.capacity}: The capacity of each ring, in bytes, a power of two. (Default: 4MB)</li>
+ * </ul>
+ *
+ * @author Jezza
+ */
+@Sharable
+final class SharedMemory extends ChannelOutboundHandlerAdapter implements Runnable {
+	private static final Logger log = LoggerFactory.getLogger(SharedMemory.class);
+
+	private static final String ENABLED = "ion.shm.enabled";
+	private static final String DIRECTORY = "ion.shm.directory";
+	private static final String CAPACITY = "ion.shm.capacity";
+
+	private static final String EXTENSION = ".ring";
+
+	private static final long SCAN_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+	/** how long a peer can go without a heartbeat, before it's considered dead */
+	private static final long STALE = TimeUnit.SECONDS.toMillis(5);
+
+	private static final int SPINS = 1000;
+	private static final int YIELDS = 100;
+	private static final long MAX_PARK = TimeUnit.MILLISECONDS.toNanos(1);
+	/** the most records read from a single ring, before moving onto the next one */
+	private static final int BATCH = 64;
+
+	private final String cluster;
+	private final long node;
+	private final Path directory;
+	private final String prefix;
+	private final InetSocketAddress broadcast;
+	private final BiConsumer<ByteBuf, InetSocketAddress> receiver;
+	private final BroadcastRing ring;
+
+	private final ConcurrentMap<Long, Peer> peers = new ConcurrentHashMap<>();
+	/** rings that aren't worth looking at again, only touched by the reader */
+	private final Set<Path> rejected = new HashSet<>();
+	private final Thread reader;
+	private volatile boolean running = true;
+
+	private SharedMemory(String cluster, long id, long node, Path directory, int capacity, InetSocketAddress address, InetSocketAddress broadcast, BiConsumer<ByteBuf, InetSocketAddress> receiver) throws IOException {
+		this.cluster = cluster;
+		this.node = node;
+		this.directory = directory;
+		this.broadcast = broadcast;
+		this.receiver = receiver;
+		prefix = "ion-" + Long.toHexString(id) + '-' + broadcast.getPort() + '-';
+		ring = BroadcastRing.create(directory.resolve(prefix + Long.toHexString(node) + EXTENSION), capacity, metadata(cluster, node, address));
+
+		reader = new Thread(this, "ion-shm-reader");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/**
+	 * @param cluster   - The name of the cluster, only nodes of the same cluster (and port) read each other's rings.
+	 * @param id        - The id of the cluster, see {@link Ion#cluster()}.
+	 * @param node      - The id of this node.
+	 * @param address   - The unicast address of this node, it's handed to peers, so they can reply to the frames they read.
+	 * @param broadcast - The group of the cluster. Only frames multicast to it are published to the ring.
+	 * @param receiver  - Where frames read from the rings of peers go, along with the unicast address of the peer. The buffer is released once it returns.
+	 * @return - The transport, or null if shared memory isn't available on this host.
+	 */
+	static SharedMemory open(String cluster, long id, long node, InetSocketAddress address, InetSocketAddress broadcast, BiConsumer<ByteBuf, InetSocketAddress> receiver) {
+		if (!Boolean.parseBoolean(System.getProperty(ENABLED, "false")))
+			return null;
+		Path directory = Paths.get(System.getProperty(DIRECTORY, "/dev/shm"));
+		if (!Files.isDirectory(directory) || !Files.isWritable(directory))
+			return null;
+		try {
+			int capacity = Integer.getInteger(CAPACITY, 4 * 1024 * 1024);
+			return new SharedMemory(cluster, id, node, directory, capacity, address, broadcast, receiver);
+		} catch (IOException | IllegalArgumentException | LinkageError e) {
+			// LinkageError: Unsafe isn't available, see BroadcastRing.
+			log.warn("Failed to set up shared memory in " + directory + ", only the network will be used.", e);
+			return null;
+		}
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+		// Always written, as a peer can be reading the ring before we've found its own.
+		if (msg instanceof DatagramPacket) {
+			DatagramPacket packet = (DatagramPacket) msg;
+			if (broadcast.equals(packet.recipient()) && !ring.write(packet.content()))
+				log.debug("Frame is too big for {}, local peers will only get it over the network.", ring);
+		}
+		ctx.write(msg, promise);
+	}
+
+	@Override
+	public void run() {
+		ByteBufAllocator allocator = ByteBufAllocator.DEFAULT;
+		long lastScan = System.nanoTime() - SCAN_INTERVAL;
+		int idle = 0;
+		while (running) {
+			long now = System.nanoTime();
+			if (now - lastScan >= SCAN_INTERVAL) {
+				lastScan = now;
+				ring.heartbeat();
+				scan();
+			}
+			int read = 0;
+			for (Peer peer : peers.values()) {
+				ByteBuf buf;
+				for (int i = 0; i < BATCH && (buf = peer.ring.read(allocator)) != null; i++) {
+					read++;
+					try {
+						deliver(peer, buf);
+					} finally {
+						buf.release();
+					}
+				}
+			}
+			if (read > 0) {
+				idle = 0;
+			} else if (++idle > SPINS + YIELDS) {
+				LockSupport.parkNanos(Math.min(MAX_PARK, 1000L << Math.min(idle - SPINS - YIELDS, 10)));
+			} else if (idle > SPINS) {
+				Thread.yield();
+			}
+		}
+	}
+
+	private void deliver(Peer peer, ByteBuf buf) {
+		try {
+			receiver.accept(buf, peer.address);
+		} catch (RuntimeException e) {
+			log.error("Failed to deliver frame from " + peer.ring, e);
+		}
+	}
+
+	/**
+	 * Attaches to the rings of new peers, and detaches from the rings of dead ones.
+	 */
+	private void scan() {
+		long now = System.currentTimeMillis();
+		for (Iterator<Map.Entry<Long, Peer>> it = peers.entrySet().iterator(); it.hasNext(); ) {
+			Peer peer = it.next().getValue();
+			if (!Files.exists(peer.ring.path())) {
+				log.debug("Detaching from {}", peer.ring);
+				it.remove();
+			} else if (now - peer.ring.lastHeartbeat() > STALE) {
+				log.debug("Detaching from {}", peer.ring);
+				it.remove();
+				remove(peer.ring.path());
+			}
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + '*' + EXTENSION)) {
+			Set<Path> seen = new HashSet<>();
+			for (Path path : stream) {
+				String name = path.getFileName().toString();
+				long peer;
+				try {
+					peer = Long.parseUnsignedLong(name.substring(prefix.length(), name.length() - EXTENSION.length()), 16);
+				} catch (NumberFormatException e) {
+					continue;
+				}
+				seen.add(path);
+				if (peer != node && !peers.containsKey(peer) && !rejected.contains(path))
+					attach(peer, path, now);
+			}
+			// Anything that's gone can't come back, as node ids are never reused.
+			rejected.retainAll(seen);
+		} catch (IOException e) {
+			log.warn("Failed to scan " + directory + " for local peers.", e);
+		}
+	}
+
+	private void attach(long peer, Path path, long now) {
+		try {
+			long heartbeat = BroadcastRing.lastHeartbeat(path);
+			// Not a ring, or its writer is still setting it up.
+			if (heartbeat == -1)
+				return;
+			if (now - heartbeat > STALE) {
+				remove(path);
+				return;
+			}
+			BroadcastRing ring = BroadcastRing.attach(path);
+			if (ring == null)
+				return;
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(ring.metadata()));
+			// The id is hashed from the name, so make sure it's actually the same cluster.
+			if (in.readLong() != peer || !cluster.equals(in.readUTF())) {
+				rejected.add(path);
+				return;
+			}
+			byte[] ip = new byte[in.readUnsignedByte()];
+			in.readFully(ip);
+			InetSocketAddress address = new InetSocketAddress(InetAddress.getByAddress(ip), in.readUnsignedShort());
+			log.debug("Attaching to {}", ring);
+			peers.put(peer, new Peer(ring, address));
+		} catch (IOException e) {
+			log.debug("Failed to attach to " + path, e);
+		}
+	}
+
+	/**
+	 * Deletes the ring of a dead peer, which would otherwise hold onto its memory until the host restarts.
+	 */
+	private void remove(Path path) {
+		try {
+			Files.deleteIfExists(path);
+			log.debug("Removed stale {}", path);
+		} catch (IOException e) {
+			log.debug("Failed to remove stale " + path, e);
+			rejected.add(path);
+		}
+	}
+
+	private static byte[] metadata(String cluster, long node, InetSocketAddress address) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeLong(node);
+			out.writeUTF(cluster);
+			byte[] ip = address.getAddress().getAddress();
+			out.writeByte(ip.length);
+			out.write(ip);
+			out.writeShort(address.getPort());
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Stops reading, and removes this node's ring, so peers detach straight away.
+	 */
+	void close() {
+		running = false;
+		LockSupport.unpark(reader);
+		try {
+			reader.join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			Files.deleteIfExists(ring.path());
+		} catch (IOException e) {
+			log.warn("Failed to remove " + ring.path(), e);
+		}
+	}
+
+	private static final class Peer {
+		final BroadcastRing ring;
+		final InetSocketAddress address;
+
+		Peer(BroadcastRing ring, InetSocketAddress address) {
+			this.ring = ring;
+			this.address = address;
+		}
+	}
+}
@@ -3,10 +3,15 @@ package me.jezza.ion.bus;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -16,8 +21,10 @@ import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 
+import me.jezza.ion.bus.interfaces.Batch;
 import me.jezza.ion.bus.interfaces.EventSubscriber;
 import me.jezza.ion.bus.interfaces.SubscriberStrategy;
+import me.jezza.ion.bus.subscriber.BatchEventSubscriber;
 import me.jezza.ion.bus.subscriber.MethodEventSubscriber;
 import me.jezza.ion.bus.subscriber.SynchronisedMethodEventSubscriber;
 import me.jezza.ion.utils.Types;
@@ -25,6 +32,8 @@ import me.jezza.ion.utils.Types;
 /**
  * A base implementation of finding {@link EventSubscriber}s from methods that have a certain annotation on them.
  * The annotations in question are passed into the constructor.
+ * <p>
+ * Methods that are also annotated with {@link Batch} take a {@link List} of events, and subscribe to the type of its elements.
  *
  * @author jezza
  * @date 12 Sep 2016
@@ -66,7 +75,7 @@ public class AnnotatedSubscriberStrategy implements SubscriberStrategy {
 			final EventSubscriber subscriber = makeSubscriber(listener, method);
 			if (subscriber != null) {
 				// We check the parameter length within getAnnotatedMethods, so this shouldn't break.
-				methodsInListener.computeIfAbsent(method.getParameterTypes()[0], k -> new ArrayList<>()).add(subscriber);
+				methodsInListener.computeIfAbsent(eventType(method), k -> new ArrayList<>()).add(subscriber);
 			}
 		}
 		return methodsInListener;
@@ -81,9 +90,53 @@ public class AnnotatedSubscriberStrategy implements SubscriberStrategy {
 		if (isClass) {
 			listener = null;
 		}
-		return threadSafe(method)
+		final EventSubscriber subscriber = threadSafe(method)
 				? new MethodEventSubscriber(listener, method)
 				: new SynchronisedMethodEventSubscriber(listener, method);
+		final Batch batch = method.getAnnotation(Batch.class);
+		return batch == null ? subscriber : new BatchEventSubscriber(subscriber, batch.maxSize(), batch.linger(), batch.unit());
+	}
+
+	/**
+	 * @return - The type of event the given subscriber method subscribes to. That's the type of its parameter, or for {@link Batch} methods, the type of the elements of its list.
+	 */
+	protected Class<?> eventType(final Method method) {
+		if (!method.isAnnotationPresent(Batch.class)) {
+			return method.getParameterTypes()[0];
+		}
+		return elementType(method);
+	}
+
+	/**
+	 * @return - The type of the elements of the list the given {@link Batch} method takes, or null if it doesn't say, such as a raw {@code List}, or a {@code List<?>}.
+	 */
+	private static Class<?> elementType(final Method method) {
+		final Type parameter = method.getGenericParameterTypes()[0];
+		if (!(parameter instanceof ParameterizedType)) {
+			return null;
+		}
+		final Type element = ((ParameterizedType) parameter).getActualTypeArguments()[0];
+		return element instanceof Class ? (Class<?>) element : erase(element);
+	}
+
+	/**
+	 * @return - The class the given type erases to, or null if that's only {@link Object} because nothing narrower was given.
+	 */
+	private static Class<?> erase(final Type type) {
+		if (type instanceof Class) {
+			return type != Object.class ? (Class<?>) type : null;
+		}
+		if (type instanceof ParameterizedType) {
+			return (Class<?>) ((ParameterizedType) type).getRawType();
+		}
+		if (type instanceof WildcardType) {
+			return erase(((WildcardType) type).getUpperBounds()[0]);
+		}
+		if (type instanceof TypeVariable) {
+			return erase(((TypeVariable<?>) type).getBounds()[0]);
+		}
+		// Generic arrays, which can't be posted anyway.
+		return null;
 	}
 
 	protected boolean threadSafe(final Method method) {
@@ -112,6 +165,20 @@ public class AnnotatedSubscriberStrategy implements SubscriberStrategy {
 								Integer.toString(parameterCount));
 						throw new IllegalArgumentException(message);
 					}
+					if (method.isAnnotationPresent(Batch.class) && method.getParameterTypes()[0] != List.class) {
+						final String message = String.format("Method '%s' has @%s and @%s annotations, but doesn't take a List.  Batch subscriber methods must take a List of events.",
+								method,
+								annotationClass.getSimpleName(),
+								Batch.class.getSimpleName());
+						throw new IllegalArgumentException(message);
+					}
+					if (method.isAnnotationPresent(Batch.class) && elementType(method) == null) {
+						final String message = String.format("Method '%s' has @%s and @%s annotations, but its List doesn't have a concrete element type.  Batch subscriber methods must say what type of event they take, such as List<MyEvent>.",
+								method,
+								annotationClass.getSimpleName(),
+								Batch.class.getSimpleName());
+						throw new IllegalArgumentException(message);
+					}
 
 					final MethodIdentifier ident = new MethodIdentifier(method);
 					if (!identifiers.containsKey(ident)) {
@@ -0,0 +1,87 @@
+package me.jezza.ion.bus;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+
+import me.jezza.ion.bus.interfaces.Conflate;
+import me.jezza.ion.utils.Pair;
+import me.jezza.ion.utils.Types;
+
+/**
+ * Resolves the conflation key of events whose type is annotated with {@link Conflate}.
+ *
+ * @author jezza
+ */
+public final class Conflation {
+	private static final Function<Object, Object> NONE = event -> null;
+
+	/**
+	 * A thread-safe cache of how to read the key of any given event class.
+	 * The lookup is only ever done once per class, after that, it's just a call through a {@link MethodHandle}.
+	 */
+	private static final LoadingCache<Class<?>, Function<Object, Object>> KEYS = Caffeine.newBuilder()
+			.weakKeys()
+			.build(Conflation::resolve);
+
+	private Conflation() {
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * @param event - The event in question.
+	 * @return - The key the given event should be conflated by, or null if the event should never be conflated.
+	 * Keys of different event types never collide.
+	 */
+	public static Object keyOf(final Object event) {
+		return KEYS.get(event.getClass()).apply(event);
+	}
+
+	private static Function<Object, Object> resolve(final Class<?> type) {
+		final Conflate conflate = type.getAnnotation(Conflate.class);
+		if (conflate == null) {
+			return NONE;
+		}
+		final String name = conflate.value();
+		if (name.isEmpty()) {
+			return event -> type;
+		}
+		final MethodHandle accessor = accessor(type, name);
+		return event -> {
+			try {
+				return Pair.of(type, accessor.invoke(event));
+			} catch (final Throwable e) {
+				throw new IllegalStateException("Failed to read conflation key '" + name + "' of " + event, e);
+			}
+		};
+	}
+
+	static MethodHandle accessor(final Class<?> type, final String name) {
+		final Set<? extends Class<?>> types = Types.classes(type);
+		try {
+			for (final Class<?> current : types) {
+				for (final Method method : current.getDeclaredMethods()) {
+					if (method.getName().equals(name) && method.getParameterCount() == 0 && method.getReturnType() != void.class) {
+						method.setAccessible(true);
+						return MethodHandles.lookup().unreflect(method);
+					}
+				}
+				for (final Field field : current.getDeclaredFields()) {
+					if (field.getName().equals(name)) {
+						field.setAccessible(true);
+						return MethodHandles.lookup().unreflectGetter(field);
+					}
+				}
+			}
+		} catch (final IllegalAccessException e) {
+			throw new IllegalArgumentException("Key '" + name + "' of " + type + " is inaccessible.", e);
+		}
+		throw new IllegalArgumentException(type + " has no field or no-argument method named '" + name + "'.");
+	}
+}
@@ -0,0 +1,52 @@
+package me.jezza.ion.bus;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import me.jezza.ion.bus.interfaces.DeadEventPolicy;
+
+/**
+ * Aggregates dead events into a count per event type, instead of doing anything with the individual events.
+ * The counts can be read with {@link #counts()}, or read and reset with {@link #drain()}, typically from some periodic reporter.
+ *
+ * @author jezza
+ */
+public class CountingDeadEventPolicy implements DeadEventPolicy {
+	private final ConcurrentMap<Class<?>, LongAdder> counts = new ConcurrentHashMap<>();
+
+	@Override
+	public void deadEvent(final EventBus bus, final Object event) {
+		final Class<?> type = event.getClass();
+		LongAdder count = counts.get(type);
+		if (count == null) {
+			count = counts.computeIfAbsent(type, k -> new LongAdder());
+		}
+		count.increment();
+	}
+
+	/**
+	 * @return - A snapshot of the number of dead events seen for each event type.
+	 */
+	public Map<Class<?>, Long> counts() {
+		final Map<Class<?>, Long> snapshot = new HashMap<>(counts.size());
+		counts.forEach((type, count) -> snapshot.put(type, count.sum()));
+		return snapshot;
+	}
+
+	/**
+	 * @return - A snapshot of the number of dead events seen for each event type since the last drain, resetting the counts.
+	 */
+	public Map<Class<?>, Long> drain() {
+		final Map<Class<?>, Long> snapshot = new HashMap<>(counts.size());
+		counts.forEach((type, count) -> {
+			final long sum = count.sumThenReset();
+			if (sum != 0) {
+				snapshot.put(type, sum);
+			}
+		});
+		return snapshot;
+	}
+}
@@ -0,0 +1,15 @@
+package me.jezza.ion.bus;
+
+import me.jezza.ion.bus.interfaces.DeadEventPolicy;
+
+/**
+ * Wraps every dead event in a {@link DeadEvent}, and reposts it on the same {@link EventBus}.
+ *
+ * @author jezza
+ */
+public class DefaultDeadEventPolicy implements DeadEventPolicy {
+	@Override
+	public void deadEvent(final EventBus bus, final Object event) {
+		bus.post(new DeadEvent(bus, event));
+	}
+}
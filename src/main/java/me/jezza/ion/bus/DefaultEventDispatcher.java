@@ -1,54 +1,343 @@
 package me.jezza.ion.bus;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Queue;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+
+import me.jezza.ion.bus.interfaces.Batch;
 import me.jezza.ion.bus.interfaces.EventDispatcher;
 import me.jezza.ion.bus.interfaces.EventSubscriber;
+import me.jezza.ion.bus.subscriber.BatchEventSubscriber;
 
 /**
+ * Events are dispatched on the thread that posted them, unless that thread is already dispatching, in which case they're queued, and dispatched once it's done.
+ * While queued, an event of a {@link me.jezza.ion.bus.interfaces.Conflate} type is replaced in place by a newer one with the same key.
+ * <p>
+ * Events for a {@link BatchEventSubscriber} (See {@link Batch}) are accumulated instead, and each batch is delivered as a single event,
+ * either by whichever thread fills it up, or by a shared background thread, once it's lingered for long enough.
+ * Batches for the same subscriber are delivered one at a time, in order, so a thread that fills a batch up waits for the previous one to be delivered.
+ *
  * @author jezza
  * @date 12 Sep 2016
  */
 public class DefaultEventDispatcher implements EventDispatcher {
-	/** queues of events for the current thread to dispatch */
-	protected final ThreadLocal<Queue<Event>> queue = ThreadLocal.withInitial(ArrayDeque::new);
+	/** queues of events for the current thread to dispatch, one for each {@link Priority} */
+	protected final ThreadLocal<Lanes> queue;
 
 	/** true if the current thread is currently dispatching an event */
 	protected final ThreadLocal<Boolean> dispatching = ThreadLocal.withInitial(() -> Boolean.FALSE);
 
+	/** the events that are accumulating for each {@link BatchEventSubscriber} */
+	private final LoadingCache<EventSubscriber, Accumulator> batches = Caffeine.newBuilder()
+			.weakKeys()
+			.build(subscriber -> new Accumulator((BatchEventSubscriber) subscriber));
+
+	/**
+	 * Drains the queued events with strict priority: a queued event is only dispatched if no event of a higher {@link Priority} is queued.
+	 */
 	public DefaultEventDispatcher() {
+		queue = ThreadLocal.withInitial(() -> new Lanes(null));
+	}
+
+	/**
+	 * Drains the queued events with weighted priority: for every round, up to {@code weights[n]} queued events of the n-th {@link Priority} are dispatched.
+	 * This keeps a constant stream of high priority events from starving the rest entirely.
+	 *
+	 * @param weights - The weight of each {@link Priority}, in declaration order.
+	 */
+	public DefaultEventDispatcher(final int... weights) {
+		Objects.requireNonNull(weights, "Argument 'weights' may not be null.");
+		if (weights.length != Priority.count()) {
+			throw new IllegalArgumentException("Expected a weight for each of the " + Priority.count() + " priorities, got " + weights.length);
+		}
+		for (final int weight : weights) {
+			if (weight < 1) {
+				throw new IllegalArgumentException("Weights must be positive: " + weight);
+			}
+		}
+		final int[] copy = weights.clone();
+		queue = ThreadLocal.withInitial(() -> new Lanes(copy));
 	}
 
 	@Override
 	public void dispatch(final EventBus bus, final Object event, final Iterator<EventSubscriber> subscribers) {
+		dispatch(bus, event, Priority.of(event), subscribers);
+	}
+
+	@Override
+	public void dispatch(final EventBus bus, final Object event, final Priority priority, final Iterator<EventSubscriber> subscribers) {
+		enqueue(bus, priority, new Event(event, subscribers, null));
+	}
+
+	/**
+	 * Queued exactly like {@link #dispatch(EventBus, Object, Priority, Iterator)}, so if the calling thread is already dispatching (A subscriber posted it),
+	 * the returned future only completes once the calling thread gets around to it.
+	 */
+	@Override
+	public CompletableFuture<Void> dispatchAsync(final EventBus bus, final Object event, final Priority priority, final Iterator<EventSubscriber> subscribers) {
+		final CompletableFuture<Void> completion = new CompletableFuture<>();
+		enqueue(bus, priority, new Event(event, subscribers, completion));
+		return completion;
+	}
+
+	/**
+	 * Queues the whole batch before draining any of it, so the batch is dispatched in a single pass, in order of priority.
+	 */
+	@Override
+	public void dispatchAll(final EventBus bus, final List<?> events, final List<Priority> priorities, final List<Iterator<EventSubscriber>> subscribers) {
+		final Lanes queueForThread = queue.get();
+		final boolean later = dispatching.get().booleanValue();
+		for (int i = 0, l = events.size(); i < l; i++) {
+			final Event event = new Event(events.get(i), subscribers.get(i), null);
+			if (later) {
+				event.retain();
+			}
+			queueForThread.offer(priorities.get(i), event);
+		}
+		drain(bus, queueForThread);
+	}
+
+	private void enqueue(final EventBus bus, final Priority priority, final Event event) {
 		// Queue the {@code event} for dispatch during the inner dispatch.
-		// Events are queued in-order of occurrence so they can be dispatched in the same order.
-		final Queue<Event> queueForThread = queue.get();
-		queueForThread.offer(new Event(event, subscribers));
+		// Events are queued in-order of occurrence (for each priority) so they can be dispatched in the same order.
+		final Lanes queueForThread = queue.get();
+		if (dispatching.get().booleanValue()) {
+			// It'll only be dispatched once the outer dispatch gets to it, which is after the post has returned.
+			event.retain();
+		}
+		queueForThread.offer(priority, event);
+		drain(bus, queueForThread);
+	}
+
+	private void drain(final EventBus bus, final Lanes queueForThread) {
 		if (!dispatching.get().booleanValue()) {
 			dispatching.set(Boolean.TRUE);
 			// Drain the queue of events to be dispatched. As the queue is being drained, new events may be posted to the end of the queue.
 			try {
 				Event nextEvent;
 				while ((nextEvent = queueForThread.poll()) != null) {
-					while (nextEvent.subscribers.hasNext()) {
-						final EventSubscriber subscriber = nextEvent.subscribers.next();
-						try {
-							subscriber.handle(nextEvent.event);
-						} catch (final Throwable e) {
-							bus.handleException(e, event, subscriber);
-						}
+					final CompletableFuture<Void> completion = nextEvent.completion;
+					final CompletableFuture<Void> delivered;
+					try {
+						delivered = deliverAll(bus, nextEvent.event, nextEvent.subscribers, completion != null);
+					} finally {
+						// Anything that's still delivering it by now has retained it for itself.
+						nextEvent.release();
+					}
+					if (completion == null) {
+						continue;
+					}
+					if (delivered == null) {
+						completion.complete(null);
+					} else {
+						delivered.whenComplete((v, t) -> completion.complete(null));
 					}
 				}
 			} finally {
 				dispatching.remove();
-				queue.remove();
+				// The lanes are kept for the thread's next post, but anything still queued was left behind by a failure, and shouldn't be dispatched by some later post.
+				queueForThread.clear();
+			}
+		}
+	}
+
+	/**
+	 * Hands a single event to all of its subscribers.
+	 * Subclasses can override this to change how many subscribers are invoked at once.
+	 * Anything that's still delivering the event once this returns has to hold onto it through {@link EventBus#retain(Object)}.
+	 *
+	 * @param bus         - The {@link EventBus} the event was posted on.
+	 * @param event       - The event that should be delivered.
+	 * @param subscribers - The subscribers that should receive the event.
+	 * @param async       - true if whoever posted the event isn't waiting for it to be delivered, so it's fine to return before it is.
+	 * @return - null if the event was delivered to every subscriber before returning, otherwise, a future that completes once it has been.
+	 */
+	protected CompletableFuture<Void> deliverAll(final EventBus bus, final Object event, final Iterator<EventSubscriber> subscribers, final boolean async) {
+		while (subscribers.hasNext()) {
+			offer(bus, event, subscribers.next());
+		}
+		return null;
+	}
+
+	/**
+	 * Either delivers the event straight away, or if the subscriber takes batches, adds it to the subscriber's batch, delivering that if it's full.
+	 *
+	 * @param bus        - The {@link EventBus} the event was posted on.
+	 * @param event      - The event that should be delivered.
+	 * @param subscriber - The subscriber that should receive the event.
+	 */
+	protected final void offer(final EventBus bus, final Object event, final EventSubscriber subscriber) {
+		if (subscriber instanceof BatchEventSubscriber) {
+			batches.get(subscriber).add(bus, event, (BatchEventSubscriber) subscriber);
+		} else {
+			deliver(bus, event, subscriber);
+		}
+	}
+
+	/**
+	 * Delivers every batch that's still accumulating, without waiting for them to fill up, or linger.
+	 * Useful before shutting down, so nothing's left behind.
+	 */
+	public void flush() {
+		for (final Accumulator accumulator : batches.asMap().values()) {
+			accumulator.flush();
+		}
+	}
+
+	/**
+	 * Hands a single event to a single subscriber, reporting anything it throws back to the {@link EventBus}.
+	 * Subclasses can override this to change how (or where) subscribers are invoked.
+	 *
+	 * @param bus        - The {@link EventBus} the event was posted on.
+	 * @param event      - The event that should be delivered.
+	 * @param subscriber - The subscriber that should receive the event.
+	 */
+	protected void deliver(final EventBus bus, final Object event, final EventSubscriber subscriber) {
+		try {
+			subscriber.handle(event);
+		} catch (final Throwable e) {
+			bus.handleException(e, event, subscriber);
+		}
+	}
+
+	/**
+	 * The batch that's accumulating for a single {@link BatchEventSubscriber}.
+	 * Events are added under the lock of the accumulator itself, and once a batch is taken, it's queued behind any other batch that hasn't been delivered yet.
+	 * Batches are only delivered under {@link #delivering}, so they're delivered in the order they were taken.
+	 * <p>
+	 * Accumulators are weakly keyed by their subscriber, so they only hold onto it while it has a batch that's accumulating, or waiting to be delivered.
+	 * That's bounded by how long the subscriber lingers for, so a subscriber that's no longer registered is still collected.
+	 *
+	 * @author jezza
+	 */
+	private final class Accumulator implements Runnable {
+		private final int maxSize;
+		private final long linger;
+		private final Object delivering = new Object();
+
+		/** guarded by this */
+		private List<Object> events;
+		private EventBus bus;
+		private BatchEventSubscriber subscriber;
+		private ScheduledFuture<?> lingering;
+		private final ArrayDeque<Taken> taken = new ArrayDeque<>();
+
+		Accumulator(final BatchEventSubscriber subscriber) {
+			maxSize = subscriber.maxSize;
+			linger = subscriber.linger;
+		}
+
+		void add(final EventBus bus, final Object event, final BatchEventSubscriber subscriber) {
+			synchronized (this) {
+				if (events == null) {
+					events = new ArrayList<>(Math.min(maxSize, 64));
+				}
+				// The batch can outlive the post that added the event.
+				events.add(EventBus.retain(event));
+				this.bus = bus;
+				this.subscriber = subscriber;
+				if (events.size() < maxSize && linger != 0) {
+					if (events.size() == 1) {
+						lingering = Linger.SCHEDULER.schedule(this, linger, TimeUnit.NANOSECONDS);
+					}
+					return;
+				}
+				take();
+			}
+			deliver();
+		}
+
+		@Override
+		public void run() {
+			flush();
+		}
+
+		void flush() {
+			synchronized (this) {
+				if (events == null) {
+					return;
+				}
+				take();
+			}
+			deliver();
+		}
+
+		/**
+		 * Guarded by this.
+		 */
+		private void take() {
+			taken.offer(new Taken(bus, subscriber, events));
+			events = null;
+			bus = null;
+			subscriber = null;
+			if (lingering != null) {
+				lingering.cancel(false);
+				lingering = null;
+			}
+		}
+
+		private void deliver() {
+			synchronized (delivering) {
+				for (; ; ) {
+					final Taken batch;
+					synchronized (this) {
+						batch = taken.poll();
+					}
+					if (batch == null) {
+						return;
+					}
+					try {
+						DefaultEventDispatcher.this.deliver(batch.bus, batch.events, batch.subscriber);
+					} finally {
+						for (final Object event : batch.events) {
+							EventBus.release(event);
+						}
+					}
+				}
 			}
 		}
 	}
 
+	/**
+	 * A batch that's waiting to be delivered.
+	 *
+	 * @author jezza
+	 */
+	private static final class Taken {
+		final EventBus bus;
+		final BatchEventSubscriber subscriber;
+		final List<Object> events;
+
+		Taken(final EventBus bus, final BatchEventSubscriber subscriber, final List<Object> events) {
+			this.bus = bus;
+			this.subscriber = subscriber;
+			this.events = events;
+		}
+	}
+
+	/**
+	 * Holds the thread that delivers lingering batches, so it's only started once something takes batches.
+	 */
+	private static final class Linger {
+		static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+			final Thread thread = new Thread(r, "ion-batch-linger");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
 	/**
 	 * A simple struct representing an event and its subscribers.
 	 *
@@ -56,12 +345,136 @@ public class DefaultEventDispatcher implements EventDispatcher {
 	 * @date 12 Sep 2016
 	 */
 	private static final class Event {
-		final Object event;
-		final Iterator<EventSubscriber> subscribers;
+		Object event;
+		Iterator<EventSubscriber> subscribers;
+		/** null if the poster is waiting for it anyway */
+		CompletableFuture<Void> completion;
+		/** the conflation key, if it's queued under one */
+		Object key;
+		/** true if the event was retained, as it's dispatched after the post returns */
+		boolean retained;
 
-		Event(final Object event, final Iterator<EventSubscriber> subscribers) {
+		Event(final Object event, final Iterator<EventSubscriber> subscribers, final CompletableFuture<Void> completion) {
 			this.event = event;
 			this.subscribers = subscribers;
+			this.completion = completion;
+		}
+
+		void retain() {
+			event = EventBus.retain(event);
+			retained = true;
+		}
+
+		void release() {
+			if (retained) {
+				retained = false;
+				EventBus.release(event);
+			}
+		}
+
+		/**
+		 * Takes the place of this event with a newer one. Whoever was waiting for this one is now waiting for its replacement.
+		 */
+		void replace(final Event newer) {
+			release();
+			retained = newer.retained;
+			event = newer.event;
+			subscribers = newer.subscribers;
+			final CompletableFuture<Void> replaced = completion;
+			completion = newer.completion;
+			if (replaced != null) {
+				if (completion == null) {
+					completion = replaced;
+				} else {
+					completion.whenComplete((v, t) -> replaced.complete(null));
+				}
+			}
+		}
+	}
+
+	/**
+	 * A queue for each {@link Priority}, drained either strictly in order of priority, or by weighted round-robin.
+	 * Events with a conflation key are also indexed by it, so a newer one can replace them in place, whichever queue they're in.
+	 *
+	 * @author jezza
+	 */
+	protected static final class Lanes {
+		private final ArrayDeque<Event>[] queues;
+		private final Map<Object, Event> keyed = new HashMap<>();
+		/** null for strict priority */
+		private final int[] weights;
+
+		/** the lane that's currently being drained, and how many more events it's allowed to drain this round */
+		private int lane;
+		private int credit;
+
+		@SuppressWarnings("unchecked")
+		Lanes(final int[] weights) {
+			this.weights = weights;
+			queues = (ArrayDeque<Event>[]) new ArrayDeque<?>[Priority.count()];
+			for (int i = 0; i < queues.length; i++) {
+				queues[i] = new ArrayDeque<>();
+			}
+			credit = weights != null ? weights[0] : 0;
+		}
+
+		void offer(final Priority priority, final Event event) {
+			final Object key = Conflation.keyOf(event.event);
+			if (key != null) {
+				final Event queued = keyed.putIfAbsent(key, event);
+				if (queued != null) {
+					queued.replace(event);
+					return;
+				}
+				event.key = key;
+			}
+			queues[priority.ordinal()].offer(event);
+		}
+
+		void clear() {
+			for (final ArrayDeque<Event> queue : queues) {
+				Event event;
+				while ((event = queue.poll()) != null) {
+					event.release();
+				}
+			}
+			keyed.clear();
+		}
+
+		Event poll() {
+			final Event event = next();
+			if (event != null && event.key != null) {
+				keyed.remove(event.key);
+				event.key = null;
+			}
+			return event;
+		}
+
+		private Event next() {
+			final ArrayDeque<Event>[] queues = this.queues;
+			if (weights == null) {
+				for (final ArrayDeque<Event> queue : queues) {
+					final Event event = queue.poll();
+					if (event != null) {
+						return event;
+					}
+				}
+				return null;
+			}
+			// Every lane gets a fresh credit when we move onto it, so if anything is queued, we'll find it within a single lap.
+			for (int tried = 0; tried <= queues.length; ) {
+				if (credit > 0) {
+					final Event event = queues[lane].poll();
+					if (event != null) {
+						credit--;
+						return event;
+					}
+				}
+				lane = (lane + 1) % queues.length;
+				credit = weights[lane];
+				tried++;
+			}
+			return null;
 		}
 	}
 }
@@ -1,20 +1,210 @@
 package me.jezza.ion.bus;
 
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import me.jezza.ion.bus.interfaces.EventSubscriber;
 import me.jezza.ion.bus.interfaces.ExceptionHandler;
 
 /**
+ * Logs every exception, along with its stack trace, by default.
+ * <p>
+ * A subscriber that throws on every event would log a stack trace for every event as well, which, at a high enough rate, turns logging into the bottleneck.
+ * Given a report interval, identical failures are aggregated instead. Failures are identical if they came from the same {@link EventSubscriber},
+ * were of the same type, and were thrown from the same place (The top frame of their stack trace).
+ * The first of every kind of failure is still logged as it happens, so nothing new goes unnoticed, and after that,
+ * once per interval, how many more there were, along with a single sampled stack trace, of each kind that happened again.
+ * <p>
+ * Reports are made by whichever thread fails once the interval is up, so nothing is logged until something fails again,
+ * {@link #report()} can be used to log what's outstanding, such as on shutdown.
+ * Every failure is still counted, see {@link #counts()}.
+ * <p>
+ * Kinds of failure that haven't happened again for an hour are forgotten, along with their counts,
+ * as are the least recent ones, once there are more than 10,000 of them. Anything they had outstanding is reported first.
+ *
  * @author jezza
  * @date 12 Sep 2016
  */
 public class DefaultExceptionHandler implements ExceptionHandler {
 	private static final Logger log = LoggerFactory.getLogger(EventBus.class);
 
+	private static final long FORGET_AFTER = 60;
+	private static final int MAX_KINDS = 10_000;
+
+	/** 0 if every failure is logged */
+	private final long interval;
+	private final AtomicLong nextReport;
+	private final ConcurrentMap<Failure, Tally> failures = Caffeine.newBuilder()
+			.expireAfterAccess(FORGET_AFTER, TimeUnit.MINUTES)
+			.maximumSize(MAX_KINDS)
+			.removalListener(DefaultExceptionHandler::forget)
+			.<Failure, Tally>build()
+			.asMap();
+
+	/**
+	 * Logs every exception.
+	 */
+	public DefaultExceptionHandler() {
+		interval = 0;
+		nextReport = null;
+	}
+
+	/**
+	 * Aggregates identical failures.
+	 *
+	 * @param interval - How often to log how many identical failures there were.
+	 * @param unit     - The unit of {@code interval}.
+	 */
+	public DefaultExceptionHandler(final long interval, final TimeUnit unit) {
+		if (interval <= 0) {
+			throw new IllegalArgumentException("Argument 'interval' must be positive: " + interval);
+		}
+		this.interval = unit.toNanos(interval);
+		nextReport = new AtomicLong(System.nanoTime() + this.interval);
+	}
+
 	@Override
 	public void handleException(final Throwable exception, final ExceptionContext context) {
-		log.error("Could not dispatch event (" + context.event.getClass() + "): " + context.subscriber, exception);
+		handleException(exception, context.eventBus, context.event, context.subscriber);
+	}
+
+	@Override
+	public void handleException(final Throwable exception, final EventBus bus, final Object event, final EventSubscriber subscriber) {
+		if (interval == 0) {
+			log.error("Could not dispatch event (" + event.getClass() + "): " + subscriber, exception);
+			return;
+		}
+		// Reflective subscribers wrap whatever they threw, which would make every failure look alike.
+		final Throwable cause = exception instanceof InvocationTargetException && exception.getCause() != null ? exception.getCause() : exception;
+		final StackTraceElement[] trace = cause.getStackTrace();
+		final Failure failure = new Failure(subscriber, cause.getClass(), trace.length != 0 ? trace[0] : null);
+		Tally tally = failures.get(failure);
+		if (tally == null) {
+			final Tally created = new Tally();
+			tally = failures.putIfAbsent(failure, created);
+			if (tally == null) {
+				created.total.increment();
+				log.error("Could not dispatch event (" + event.getClass() + "): " + subscriber + ", identical failures will be reported every " + TimeUnit.NANOSECONDS.toMillis(interval) + "ms", exception);
+				return;
+			}
+		}
+		tally.total.increment();
+		tally.pending.increment();
+		if (tally.sample == null) {
+			tally.sample = exception;
+		}
+		final long next = nextReport.get();
+		final long now = System.nanoTime();
+		if (now - next >= 0 && nextReport.compareAndSet(next, now + interval)) {
+			report();
+		}
+	}
+
+	/**
+	 * Logs how many identical failures there were since the last report, if any.
+	 * Only has an effect if failures are being aggregated.
+	 */
+	public void report() {
+		failures.forEach(DefaultExceptionHandler::report);
+	}
+
+	private static void report(final Failure failure, final Tally tally) {
+		final Throwable sample = tally.sample;
+		final long pending = tally.pending.sumThenReset();
+		if (pending != 0) {
+			tally.sample = null;
+			log.error(pending + " more " + failure + ", this is one of them:", sample);
+		}
+	}
+
+	private static void forget(final Failure failure, final Tally tally, final RemovalCause cause) {
+		if (cause.wasEvicted()) {
+			report(failure, tally);
+		}
+	}
+
+	/**
+	 * @return - A snapshot of the number of times each kind of failure that hasn't been forgotten has happened, if failures are being aggregated.
+	 */
+	public Map<Failure, Long> counts() {
+		final Map<Failure, Long> snapshot = new HashMap<>(failures.size());
+		failures.forEach((failure, tally) -> snapshot.put(failure, tally.total.sum()));
+		return snapshot;
+	}
+
+	/**
+	 * @return - The number of failures of all kinds that haven't been forgotten, if failures are being aggregated.
+	 */
+	public long total() {
+		long total = 0;
+		for (final Tally tally : failures.values()) {
+			total += tally.total.sum();
+		}
+		return total;
+	}
+
+	/**
+	 * A kind of failure, failures of the same kind are aggregated.
+	 */
+	public static final class Failure {
+		/**
+		 * The {@link EventSubscriber} that threw.
+		 */
+		public final EventSubscriber subscriber;
+
+		/**
+		 * The type of exception that was thrown.
+		 */
+		public final Class<? extends Throwable> type;
+
+		/**
+		 * Where the exception was thrown from, or null if it doesn't have a stack trace.
+		 */
+		public final StackTraceElement site;
+
+		Failure(final EventSubscriber subscriber, final Class<? extends Throwable> type, final StackTraceElement site) {
+			this.subscriber = Objects.requireNonNull(subscriber, "Argument 'subscriber' may not be null.");
+			this.type = Objects.requireNonNull(type, "Argument 'type' may not be null.");
+			this.site = site;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Failure)) {
+				return false;
+			}
+			final Failure other = (Failure) o;
+			return subscriber.equals(other.subscriber) && type == other.type && Objects.equals(site, other.site);
+		}
+
+		@Override
+		public int hashCode() {
+			return (subscriber.hashCode() * 31 + type.hashCode()) * 31 + Objects.hashCode(site);
+		}
+
+		@Override
+		public String toString() {
+			return type.getName() + " thrown by " + subscriber + (site != null ? " at " + site : "");
+		}
+	}
+
+	private static final class Tally {
+		final LongAdder total = new LongAdder();
+		final LongAdder pending = new LongAdder();
+		volatile Throwable sample;
 	}
 }
@@ -3,6 +3,7 @@ package me.jezza.ion.bus;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -11,12 +12,15 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 
 import me.jezza.ion.bus.interfaces.EventSubscriber;
+import me.jezza.ion.bus.interfaces.Registration;
 import me.jezza.ion.bus.interfaces.SubscriberRegistry;
 import me.jezza.ion.bus.interfaces.SubscriberStrategy;
 import me.jezza.ion.utils.ConcatenatedIterator;
@@ -48,49 +52,127 @@ public class DefaultSubscriberRegistry implements SubscriberRegistry {
 	 */
 	private final ConcurrentMap<Class<?>, CopyOnWriteArraySet<EventSubscriber>> subscribers = new ConcurrentHashMap<>();
 
+	/**
+	 * Every live {@link Registration}, indexed by the identity of the listener that produced it.
+	 * <p>
+	 * <p>This is only touched when registering and unregistering, so a plain lock is fine.
+	 */
+	private final Map<Object, List<Handle>> registrations = new IdentityHashMap<>();
+
+	/**
+	 * Event classes that were found to have no subscribers at all, mapped to the {@link #generation} they were found in.
+	 * <p>
+	 * <p>An entry is only trusted while its generation is still the current one, so a registration invalidates all of them at once,
+	 * without racing against a lookup that's still walking the hierarchy.
+	 * Unregistering can only ever take subscribers away, so it doesn't need to invalidate anything.
+	 */
+	private final Cache<Class<?>, Object> unsubscribed = Caffeine.newBuilder()
+			.weakKeys()
+			.build();
+
+	private volatile Object generation = new Object();
+
 	public DefaultSubscriberRegistry() {
 	}
 
 	@Override
-	public void register(final SubscriberStrategy strategy, final Object listener) {
+	public Registration register(final SubscriberStrategy strategy, final Object listener) {
 		final Map<Class<?>, Collection<EventSubscriber>> listenerMethods = strategy.findAllSubscribers(listener);
-		for (final Map.Entry<Class<?>, Collection<EventSubscriber>> entry : listenerMethods.entrySet()) {
-			// Get the subscriber set for the given event type (Create the set if it's not there), and add all of the new subscribers.
-			subscribers.computeIfAbsent(entry.getKey(), k -> new CopyOnWriteArraySet<>()).addAll(entry.getValue());
+		final Handle handle = new Handle(listener);
+		// The handle's recorded before any subscriber becomes visible, so a concurrent unregister either sees all of them, or none of them.
+		synchronized (registrations) {
+			final List<Installed> installed = new ArrayList<>(listenerMethods.size());
+			for (final Map.Entry<Class<?>, Collection<EventSubscriber>> entry : listenerMethods.entrySet()) {
+				// Get the subscriber set for the given event type (Create the set if it's not there), and add all of the new subscribers.
+				final CopyOnWriteArraySet<EventSubscriber> eventSubscribers = subscribers.computeIfAbsent(entry.getKey(), k -> new CopyOnWriteArraySet<>());
+				// Only remember the ones we actually added, so closing this handle never removes a subscriber that an earlier registration installed.
+				final List<EventSubscriber> added = new ArrayList<>(entry.getValue().size());
+				for (final EventSubscriber subscriber : entry.getValue()) {
+					if (eventSubscribers.add(subscriber)) {
+						added.add(subscriber);
+					}
+				}
+				if (!added.isEmpty()) {
+					installed.add(new Installed(eventSubscribers, added));
+				}
+			}
+			if (installed.isEmpty()) {
+				// Nothing new was installed (Either the listener has no subscribers, or it's already registered), so there's nothing to undo.
+				return () -> {
+				};
+			}
+			handle.installed = installed.toArray(new Installed[0]);
+			registrations.computeIfAbsent(listener, k -> new ArrayList<>(1)).add(handle);
 		}
+		// A type that had no subscribers might have one now, so forget everything we know about dead types.
+		generation = new Object();
+		return handle;
 	}
 
 	@Override
 	public void unregister(final SubscriberStrategy strategy, final Object listener) {
-		final Map<Class<?>, Collection<EventSubscriber>> listenerMethods = strategy.findAllSubscribers(listener);
-		for (final Map.Entry<Class<?>, Collection<EventSubscriber>> entry : listenerMethods.entrySet()) {
-			final CopyOnWriteArraySet<EventSubscriber> currentSubscribers = subscribers.get(entry.getKey());
-			if (currentSubscribers == null || !currentSubscribers.removeAll(entry.getValue())) {
-				// if removeAll returns true, all we really know is that at least one subscriber was
-				// removed... however, barring something very strange we can assume that if at least one
-				// subscriber was removed, all subscribers on listener for that event type were removed...
-				throw new IllegalArgumentException("Missing event subscriber for an annotated method. Is " + listener + " registered?");
+		final List<Handle> handles;
+		synchronized (registrations) {
+			handles = registrations.remove(listener);
+		}
+		if (handles == null) {
+			// A listener without any subscribers never needed registering in the first place, so there's nothing missing.
+			if (strategy.findAllSubscribers(listener).isEmpty()) {
+				return;
 			}
-			// don't try to remove the set if it's empty; that can't be done safely without a lock
-			// anyway, if the set is empty it'll just be wrapping an array of length 0
+			throw new IllegalArgumentException("Missing event subscriber for an annotated method. Is " + listener + " registered?");
+		}
+		for (final Handle handle : handles) {
+			handle.close();
 		}
+		// don't try to remove the sets if they're empty; that can't be done safely without a lock
+		// anyway, if the set is empty it'll just be wrapping an array of length 0
 	}
 
 	@Override
 	public Iterator<EventSubscriber> subscribersFor(final Object event) {
 		Objects.requireNonNull(event, "Argument 'event' may not be null.");
-		final Set<Class<?>> eventTypes = flattenHierarchy(event.getClass());
+		final Class<?> eventClass = event.getClass();
+		// Read the generation before walking, so a registration that lands mid-walk makes our result stale, instead of wrong.
+		final Object current = generation;
+		if (unsubscribed.getIfPresent(eventClass) == current) {
+			return Collections.emptyIterator();
+		}
+		final Set<Class<?>> eventTypes = flattenHierarchy(eventClass);
 		final List<Iterator<EventSubscriber>> subscriberIterators = new ArrayList<>(eventTypes.size());
 		for (final Class<?> eventType : eventTypes) {
 			final CopyOnWriteArraySet<EventSubscriber> eventSubscribers = subscribers.get(eventType);
-			if (eventSubscribers != null) {
+			if (eventSubscribers != null && !eventSubscribers.isEmpty()) {
 				// eager no-copy snapshot
 				subscriberIterators.add(eventSubscribers.iterator());
 			}
 		}
-		return subscriberIterators.isEmpty()
-				? Collections.emptyIterator()
-				: ConcatenatedIterator.concat(subscriberIterators.iterator());
+		if (subscriberIterators.isEmpty()) {
+			unsubscribed.put(eventClass, current);
+			return Collections.emptyIterator();
+		}
+		return ConcatenatedIterator.concat(subscriberIterators.iterator());
+	}
+
+	@Override
+	public Collection<EventSubscriber> subscribersOf(final Class<?> eventType) {
+		Objects.requireNonNull(eventType, "Argument 'eventType' may not be null.");
+		final Object current = generation;
+		if (unsubscribed.getIfPresent(eventType) == current) {
+			return Collections.emptyList();
+		}
+		final List<EventSubscriber> snapshot = new ArrayList<>();
+		for (final Class<?> type : flattenHierarchy(eventType)) {
+			final CopyOnWriteArraySet<EventSubscriber> eventSubscribers = subscribers.get(type);
+			if (eventSubscribers != null) {
+				snapshot.addAll(eventSubscribers);
+			}
+		}
+		if (snapshot.isEmpty()) {
+			unsubscribed.put(eventType, current);
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(snapshot);
 	}
 
 	/**
@@ -105,4 +187,55 @@ public class DefaultSubscriberRegistry implements SubscriberRegistry {
 	protected static final Set<Class<?>> flattenHierarchy(final Class<?> concreteClass) {
 		return FLATTEN_HIERARCHY_CACHE.get(concreteClass);
 	}
+
+	/**
+	 * The subscribers a single registration added to a single event type's set.
+	 */
+	private static final class Installed {
+		final CopyOnWriteArraySet<EventSubscriber> set;
+		final List<EventSubscriber> subscribers;
+
+		Installed(final CopyOnWriteArraySet<EventSubscriber> set, final List<EventSubscriber> subscribers) {
+			this.set = set;
+			this.subscribers = subscribers;
+		}
+	}
+
+	/**
+	 * The {@link Registration} handed back from {@link #register(SubscriberStrategy, Object)}.
+	 * It holds onto the exact subscriber instances (and the sets they were added to), so closing it is just a couple of removals.
+	 */
+	private final class Handle implements Registration {
+		private final Object listener;
+		/** guarded by the registrations, it's only set once the handle is recorded */
+		private Installed[] installed;
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		Handle(final Object listener) {
+			this.listener = listener;
+		}
+
+		@Override
+		public void close() {
+			if (!closed.compareAndSet(false, true)) {
+				return;
+			}
+			final Installed[] installed;
+			synchronized (registrations) {
+				installed = this.installed;
+				final List<Handle> handles = registrations.get(listener);
+				if (handles != null && handles.remove(this) && handles.isEmpty()) {
+					registrations.remove(listener);
+				}
+			}
+			for (final Installed entry : installed) {
+				entry.set.removeAll(entry.subscribers);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "[Registration:" + listener + ']';
+		}
+	}
 }
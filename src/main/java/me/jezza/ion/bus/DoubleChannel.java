@@ -0,0 +1,34 @@
+package me.jezza.ion.bus;
+
+import me.jezza.ion.bus.interfaces.DoubleSubscriber;
+
+/**
+ * A {@link PrimitiveChannel} of {@code double} values.
+ *
+ * @author jezza
+ */
+public final class DoubleChannel extends PrimitiveChannel<DoubleSubscriber> {
+	private static final DoubleSubscriber[] EMPTY = new DoubleSubscriber[0];
+
+	DoubleChannel(final EventBus bus, final String name) {
+		super(bus, name, EMPTY);
+	}
+
+	/**
+	 * Hands the given sample to every subscriber of this channel, on the calling thread.
+	 */
+	public void post(final int key, final double value) {
+		for (final DoubleSubscriber subscriber : subscribers) {
+			try {
+				subscriber.handle(key, value);
+			} catch (final Throwable e) {
+				handleException(e, subscriber, key, value);
+			}
+		}
+	}
+
+	@Override
+	protected void redeliver(final DoubleSubscriber subscriber, final Sample sample) throws Throwable {
+		subscriber.handle(sample.key, sample.value.doubleValue());
+	}
+}
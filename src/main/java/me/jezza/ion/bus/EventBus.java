@@ -1,18 +1,35 @@
 package me.jezza.ion.bus;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import me.jezza.ion.bus.interfaces.DeadEventPolicy;
 import me.jezza.ion.bus.interfaces.EventDispatcher;
 import me.jezza.ion.bus.interfaces.EventSubscriber;
 import me.jezza.ion.bus.interfaces.ExceptionHandler;
+import me.jezza.ion.bus.interfaces.Registration;
 import me.jezza.ion.bus.interfaces.Subscriber;
 import me.jezza.ion.bus.interfaces.SubscriberRegistry;
 import me.jezza.ion.bus.interfaces.SubscriberStrategy;
 import me.jezza.ion.bus.interfaces.ThreadSafe;
+import me.jezza.ion.bus.interfaces.TransientEvent;
+import me.jezza.ion.utils.TimingWheel;
 
 /**
  * This is an extended version from guava, called the {@link EventBus}.
@@ -21,7 +38,7 @@ import me.jezza.ion.bus.interfaces.ThreadSafe;
  * <p>
  * <h2>{@link ExceptionHandler}:</h2> This interface is used to report any issues that events had while being dispatched to any given subscriber.
  * It is given the exception that was thrown along with an {@link ExceptionContext} object that contains the {@link EventBus} that the event was posted on, the event object itself that caused the exception, and the {@link EventSubscriber} that the exception originated from.
- * <p>The default implementation, {@link DefaultExceptionHandler}, simply logs out the error, making sure that it's noticed.
+ * <p>The default implementation, {@link DefaultExceptionHandler}, simply logs out the error, making sure that it's noticed. It can also be told to aggregate identical failures, and only log them on an interval, for when a subscriber starts failing on every event.
  * <p>
  * <h2>{@link EventDispatcher}:</h2> This interface is used to dispatch any event that was posted. It'll receive the {@link EventBus} the event was posted on, along with the event itself, and the subscribers that should receive the event.
  * If an event failed to fire, or an exception was thrown, the {@link EventDispatcher} should collect the necessary information and pass it back to {@link EventBus#handleException(Throwable, Object, EventSubscriber)}, as it'll construct the appropriate objects, and pass it off to the {@link ExceptionHandler}.
@@ -29,8 +46,12 @@ import me.jezza.ion.bus.interfaces.ThreadSafe;
  * This can be overridden as {@link EventBus} is not final.
  * <p>The default implementation, {@link DefaultEventDispatcher}, is a simple, basic, thread-safe dispatcher. It will post the events to every subscriber on the same thread that posted the event, unless another thread posted something first.
  * (Side note here: it will only dispatch on the current thread, if the {@link DefaultEventDispatcher} wasn't already being dispatched by another thread. If another thread posted an event first, and then discovered that it should be dispatched, it'll start the dispatching process, but if another thread comes along while the other thread is dispatching the queue, it'll just append it to the queue, so the first thread that started the dispatch would be the one to dispatch the event that was just posted.)
+ * Events are queued per {@link Priority}, and higher priority events are drained first (Strictly, or weighted, depending on how it was constructed).
  * So, subscribers should be fast. If you have to query a database, or something else that could take a while, it's recommended to place the event on a queue, and have another thread do the work.
  * That being said, there's nothing to stop an async implementation of the {@link EventDispatcher}.
+ * <p>{@link IsolatingEventDispatcher} builds on the default one, and moves subscribers that turn slow or keep failing out of the way of everyone else.
+ * <p>{@link ParallelEventDispatcher} also builds on the default one, and fans an event with a lot of thread-safe subscribers out over a {@link java.util.concurrent.ForkJoinPool}.
+ * <p>{@link PartitionedEventDispatcher} hands events to a fixed number of single-threaded lanes by their routing key, so events with the same key stay in order, and everything else runs in parallel.
  * <p>
  * <h2>{@link SubscriberStrategy}:</h2> This interface is used to locate and return all "subscribers" for a given target.
  * These are commonly methods, but they could be anything the {@link SubscriberStrategy} deems fit. It only has to adher to a simple restriction of it must return {@link EventSubscriber}s, other than that, it's free to do as it wishes.
@@ -40,7 +61,17 @@ import me.jezza.ion.bus.interfaces.ThreadSafe;
  * <h2>{@link SubscriberRegistry}:</h2> This is an interface that is used for communication
  * with a data structure. {@link #register(Object)} and {@link #unregister(Object)} are forward directly to the {@link SubscriberRegistry}, with the additional parameter of the {@link SubscriberStrategy}.
  * The {@link SubscriberRegistry} should use the {@link SubscriberStrategy} to locate all {@link EventSubscriber}s from a given listener object, and store them for later retrieval.
+ * Every registration hands back a {@link Registration}, which removes the subscribers it installed without having to locate them again.
  * <p>The default implementation, {@link DefaultSubscriberRegistry}, stores all of this data for easy and fast retrieval.
+ * It also remembers which event types have no subscribers at all, so unhandled events don't pay for a hierarchy walk every time.
+ * <p>
+ * <h2>{@link DeadEventPolicy}:</h2> This interface decides what happens to an event that had no subscribers.
+ * <p>The default implementation, {@link DefaultDeadEventPolicy}, wraps it in a {@link DeadEvent} and reposts it, as Guava does.
+ * If that's too expensive (A node that receives a lot of traffic it doesn't care about, for example), {@link DeadEventPolicy#IGNORE} turns it off entirely,
+ * {@link SampledDeadEventPolicy} only reposts some of them, and {@link CountingDeadEventPolicy} aggregates them into counts per event type.
+ * <p>
+ * <h2>{@link PrimitiveChannel}:</h2> Streams of (int key, primitive value) samples that are too hot to wrap each sample in an event.
+ * They bypass everything above, see {@link #intChannel(String)}.
  *
  * <p>
  * <h2>Original Javadoc from Guava's EventBus.</h2>
@@ -139,6 +170,21 @@ public class EventBus {
 	 */
 	protected final SubscriberRegistry registry;
 
+	/**
+	 * The policy that's consulted whenever an event had no subscribers.
+	 */
+	protected final DeadEventPolicy deadEvents;
+
+	/**
+	 * Every {@link PrimitiveChannel} of this bus, indexed by name.
+	 */
+	private final ConcurrentMap<String, PrimitiveChannel<?>> channels = new ConcurrentHashMap<>();
+
+	/**
+	 * Holds the events that were posted with a delay, created the first time one is.
+	 */
+	private volatile TimingWheel<Object> delayed;
+
 	/**
 	 * Constructs a default {@link EventBus} with the default identifier ("default").
 	 * It uses the default {@link ExceptionHandler}, {@link EventDispatcher}, {@link SubscriberStrategy}, and {@link SubscriberRegistry}.
@@ -181,13 +227,22 @@ public class EventBus {
 
 	/**
 	 * Constructs an {@link EventBus} with the given identifier, {@link ExceptionHandler}, {@link EventDispatcher}, {@link SubscriberStrategy}, and {@link SubscriberRegistry}.
+	 * It uses the default {@link DeadEventPolicy}.
 	 */
 	public EventBus(final String identifier, final ExceptionHandler handler, final EventDispatcher dispatcher, final SubscriberStrategy strategy, final SubscriberRegistry registry) {
+		this(identifier, handler, dispatcher, strategy, registry, new DefaultDeadEventPolicy());
+	}
+
+	/**
+	 * Constructs an {@link EventBus} with the given identifier, {@link ExceptionHandler}, {@link EventDispatcher}, {@link SubscriberStrategy}, {@link SubscriberRegistry}, and {@link DeadEventPolicy}.
+	 */
+	public EventBus(final String identifier, final ExceptionHandler handler, final EventDispatcher dispatcher, final SubscriberStrategy strategy, final SubscriberRegistry registry, final DeadEventPolicy deadEvents) {
 		this.identifier = Objects.requireNonNull(identifier, "Argument 'identifier' may not be null.");
 		this.handler = Objects.requireNonNull(handler, "Argument 'handler' may not be null.");
 		this.dispatcher = Objects.requireNonNull(dispatcher, "Argument 'dispatcher' may not be null.");
 		this.strategy = Objects.requireNonNull(strategy, "Argument 'strategy' may not be null.");
 		this.registry = Objects.requireNonNull(registry, "Argument 'registry' may not be null.");
+		this.deadEvents = Objects.requireNonNull(deadEvents, "Argument 'deadEvents' may not be null.");
 	}
 
 	/**
@@ -195,13 +250,28 @@ public class EventBus {
 	 * {@link EventSubscriber}s of any given listener are classified as such by the {@link EventBus}'s {@link SubscriberStrategy}.
 	 *
 	 * @param listener - object whose subscriber methods should be registered.
+	 * @return - A {@link Registration} that, once closed, removes exactly the {@link EventSubscriber}s this call installed.
+	 */
+	public final Registration register(final Object listener) {
+		return registry.register(strategy, listener);
+	}
+
+	/**
+	 * Registers a single {@link EventSubscriber} for every event of the given type, bypassing the {@link SubscriberStrategy}.
+	 *
+	 * @param eventType  - The type of events the subscriber receives. (Along with every subtype)
+	 * @param subscriber - The subscriber.
+	 * @return - A {@link Registration} that, once closed, removes the subscriber.
 	 */
-	public final void register(final Object listener) {
-		registry.register(strategy, listener);
+	public final Registration subscribe(final Class<?> eventType, final EventSubscriber subscriber) {
+		Objects.requireNonNull(eventType, "Argument 'eventType' may not be null.");
+		Objects.requireNonNull(subscriber, "Argument 'subscriber' may not be null.");
+		return registry.register(listener -> Collections.singletonMap(eventType, Collections.singletonList(subscriber)), subscriber);
 	}
 
 	/**
 	 * Unregisters all subscriber methods on a registered {@code object}.
+	 * Prefer closing the {@link Registration} returned from {@link #register(Object)}, as that's a direct removal.
 	 *
 	 * @param listener - object whose subscriber methods should be unregistered.
 	 * @throws IllegalArgumentException if the object was not previously registered.
@@ -211,28 +281,199 @@ public class EventBus {
 	}
 
 	/**
-	 * Posts an event to all registered subscribers.  This method will return
-	 * successfully after the event has been posted to all subscribers, and
+	 * Posts an event to all registered subscribers.  This method returns
 	 * regardless of any exceptions thrown by subscribers.
 	 *
+	 * <p>Whether the event has been delivered by the time it returns is up to the
+	 * {@link EventDispatcher}. The {@link DefaultEventDispatcher} delivers it before
+	 * returning, unless the posting thread is already dispatching an event, in which
+	 * case it's queued behind it. Others, such as the {@link PartitionedEventDispatcher},
+	 * only queue it, and return before it's delivered at all.
+	 * {@link #postAsync(Object)} can be used to find out when it has been.
+	 *
 	 * <p>If no subscribers have been subscribed for {@code event}'s class, and
-	 * {@code event} is not already a {@link DeadEvent}, it will be wrapped in a
-	 * DeadEvent and reposted.
+	 * {@code event} is not already a {@link DeadEvent}, it will be handed to the
+	 * {@link DeadEventPolicy}, which by default wraps it in a DeadEvent and reposts it.
 	 *
 	 * @param event - event to post.
 	 */
 	public void post(final Object event) {
+		post(event, Priority.of(event));
+	}
+
+	/**
+	 * Posts an event to all registered subscribers, with the given {@link Priority}, instead of the one declared on its type.
+	 * If the {@link EventDispatcher} queues events, queued events of a higher priority are dispatched first.
+	 * As with {@link #post(Object)}, this can return before the event is delivered, depending on the {@link EventDispatcher}.
+	 *
+	 * @param event    - event to post.
+	 * @param priority - the priority to post the event with.
+	 * @see #post(Object)
+	 */
+	public void post(final Object event, final Priority priority) {
+		Objects.requireNonNull(priority, "Argument 'priority' may not be null.");
 		final Iterator<EventSubscriber> subscribers = registry.subscribersFor(event);
 		if (subscribers != null && subscribers.hasNext()) {
-			dispatcher.dispatch(this, event, subscribers);
+			dispatcher.dispatch(this, event, priority, subscribers);
 		} else if (!(event instanceof DeadEvent)) {
-			post(new DeadEvent(this, event));
+			deadEvents.deadEvent(this, event);
+		}
+	}
+
+	/**
+	 * Posts every event of the given batch to all registered subscribers, in order.
+	 * This is equivalent to posting them one at a time, except that the subscribers of each type of event are only looked up once,
+	 * and the whole batch is handed to the {@link EventDispatcher} at once. Events that have no subscribers are handed to the {@link DeadEventPolicy}
+	 * before the rest of the batch is dispatched.
+	 *
+	 * @param events - events to post, each with the priority declared on its type.
+	 * @see #post(Object)
+	 */
+	public void postAll(final Collection<?> events) {
+		Objects.requireNonNull(events, "Argument 'events' may not be null.");
+		final int size = events.size();
+		final List<Object> batch = new ArrayList<>(size);
+		final List<Priority> priorities = new ArrayList<>(size);
+		final List<Iterator<EventSubscriber>> subscribers = new ArrayList<>(size);
+		final Map<Class<?>, Lookup> lookups = new IdentityHashMap<>();
+		for (final Object event : events) {
+			Objects.requireNonNull(event, "Events may not be null.");
+			final Lookup lookup = lookups.computeIfAbsent(event.getClass(), this::lookup);
+			final Iterator<EventSubscriber> iterator = lookup.subscribers != null ? lookup.subscribers.iterator() : registry.subscribersFor(event);
+			if (iterator != null && iterator.hasNext()) {
+				batch.add(event);
+				priorities.add(lookup.priority);
+				subscribers.add(iterator);
+			} else if (!(event instanceof DeadEvent)) {
+				deadEvents.deadEvent(this, event);
+			}
+		}
+		if (!batch.isEmpty()) {
+			dispatcher.dispatchAll(this, batch, priorities, subscribers);
+		}
+	}
+
+	/**
+	 * @param events - events to post, each with the priority declared on its type.
+	 * @see #postAll(Collection)
+	 */
+	public void postAll(final Object... events) {
+		postAll(Arrays.asList(events));
+	}
+
+	private Lookup lookup(final Class<?> eventType) {
+		return new Lookup(registry.subscribersOf(eventType), Priority.declared(eventType));
+	}
+
+	/**
+	 * Posts an event to all registered subscribers, without waiting for them all to handle it, if the {@link EventDispatcher} is able to.
+	 * Only dispatchers that hand subscribers to other threads are, such as {@link ParallelEventDispatcher}, every other one handles it before returning.
+	 *
+	 * @param event - event to post.
+	 * @return - A future that completes once every subscriber has handled the event, or once it was handed to the {@link DeadEventPolicy}.
+	 * @see #post(Object)
+	 */
+	public CompletableFuture<Void> postAsync(final Object event) {
+		return postAsync(event, Priority.of(event));
+	}
+
+	/**
+	 * Posts an event to all registered subscribers with the given {@link Priority}, without waiting for them all to handle it, if the {@link EventDispatcher} is able to.
+	 *
+	 * @param event    - event to post.
+	 * @param priority - the priority to post the event with.
+	 * @return - A future that completes once every subscriber has handled the event, or once it was handed to the {@link DeadEventPolicy}.
+	 * @see #postAsync(Object)
+	 */
+	public CompletableFuture<Void> postAsync(final Object event, final Priority priority) {
+		Objects.requireNonNull(priority, "Argument 'priority' may not be null.");
+		final Iterator<EventSubscriber> subscribers = registry.subscribersFor(event);
+		if (subscribers != null && subscribers.hasNext()) {
+			return dispatcher.dispatchAsync(this, event, priority, subscribers);
+		}
+		if (!(event instanceof DeadEvent)) {
+			deadEvents.deadEvent(this, event);
+		}
+		return CompletableFuture.completedFuture(null);
+	}
+
+	/**
+	 * Posts an event to all registered subscribers, once the given delay has passed.
+	 * Delayed events are held in a {@link TimingWheel}, so there can be millions of them, and they're posted from its thread, to the nearest millisecond.
+	 *
+	 * @param event - event to post.
+	 * @param delay - how long to wait before posting it.
+	 * @param unit  - the unit of {@code delay}.
+	 * @return - A handle that can be used to cancel the event, before it's posted.
+	 * @see #post(Object)
+	 */
+	public TimingWheel.Timeout postDelayed(final Object event, final long delay, final TimeUnit unit) {
+		Objects.requireNonNull(event, "Argument 'event' may not be null.");
+		Objects.requireNonNull(unit, "Argument 'unit' may not be null.");
+		TimingWheel<Object> delayed = this.delayed;
+		if (delayed == null) {
+			synchronized (this) {
+				delayed = this.delayed;
+				if (delayed == null) {
+					this.delayed = delayed = TimingWheel.of("ion-delayed-" + identifier, this::post);
+				}
+			}
+		}
+		return delayed.schedule(event, delay, unit);
+	}
+
+	/**
+	 * Posts an event to all registered subscribers at the given time, or as soon as possible if it's already passed.
+	 *
+	 * @param event - event to post.
+	 * @param at    - when to post it.
+	 * @return - A handle that can be used to cancel the event, before it's posted.
+	 * @see #postDelayed(Object, long, TimeUnit)
+	 */
+	public TimingWheel.Timeout postAt(final Object event, final Instant at) {
+		Objects.requireNonNull(at, "Argument 'at' may not be null.");
+		return postDelayed(event, at.toEpochMilli() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param name - The name of the channel.
+	 * @return - The channel of {@code int} samples with the given name, it's created if it doesn't exist.
+	 * @throws IllegalArgumentException - If a channel of a different type already has that name.
+	 */
+	public final IntChannel intChannel(final String name) {
+		return channel(name, IntChannel.class, IntChannel::new);
+	}
+
+	/**
+	 * @param name - The name of the channel.
+	 * @return - The channel of {@code long} samples with the given name, it's created if it doesn't exist.
+	 * @throws IllegalArgumentException - If a channel of a different type already has that name.
+	 */
+	public final LongChannel longChannel(final String name) {
+		return channel(name, LongChannel.class, LongChannel::new);
+	}
+
+	/**
+	 * @param name - The name of the channel.
+	 * @return - The channel of {@code double} samples with the given name, it's created if it doesn't exist.
+	 * @throws IllegalArgumentException - If a channel of a different type already has that name.
+	 */
+	public final DoubleChannel doubleChannel(final String name) {
+		return channel(name, DoubleChannel.class, DoubleChannel::new);
+	}
+
+	private <C extends PrimitiveChannel<?>> C channel(final String name, final Class<C> type, final BiFunction<EventBus, String, C> factory) {
+		Objects.requireNonNull(name, "Argument 'name' may not be null.");
+		final PrimitiveChannel<?> channel = channels.computeIfAbsent(name, k -> factory.apply(this, k));
+		if (!type.isInstance(channel)) {
+			throw new IllegalArgumentException("Channel '" + name + "' is already a " + channel.getClass().getSimpleName() + ", not a " + type.getSimpleName() + '.');
 		}
+		return type.cast(channel);
 	}
 
 	/**
 	 * Handles the given exception thrown by a subscriber with the given event.
-	 * Used to construct the context, and pass that through the {@link ExceptionHandler}.
+	 * Used to pass the exception, along with its context, through the {@link ExceptionHandler}.
 	 *
 	 * @param exception  - The exception that was thrown.
 	 * @param event      - The event the subscriber threw the exception on.
@@ -243,15 +484,49 @@ public class EventBus {
 		Objects.requireNonNull(event, "Argument 'event' may not be null.");
 		Objects.requireNonNull(subscriber, "Argument 'subscriber' may not be null.");
 		try {
-			handler.handleException(exception, new ExceptionContext(this, event, subscriber));
+			handler.handleException(exception, this, event, subscriber);
 		} catch (final Throwable e) {
 			// If the exception handler throws, log it. There isn't much else to do!
 			log.error(String.format("Exception %s thrown while handling exception: %s", e, exception.getCause()), e);
 		}
 	}
 
+	/**
+	 * Has to be called by anything that holds onto an event past the post that dispatched it, such as a dispatcher that queues it, see {@link TransientEvent}.
+	 *
+	 * @param event - The event that's about to be held onto.
+	 * @return - The event to hold onto instead, which has to be handed to {@link #release(Object)} once it's done with.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T retain(final T event) {
+		return event instanceof TransientEvent ? (T) ((TransientEvent) event).retained() : event;
+	}
+
+	/**
+	 * @param event - An event returned by {@link #retain(Object)}.
+	 */
+	public static void release(final Object event) {
+		if (event instanceof TransientEvent) {
+			((TransientEvent) event).release();
+		}
+	}
+
 	@Override
 	public String toString() {
 		return "[EventBus-" + identifier + ']';
 	}
+
+	/**
+	 * Everything {@link #postAll(Collection)} looks up per type of event.
+	 */
+	private static final class Lookup {
+		/** null if the registry can't look subscribers up by type */
+		final Collection<EventSubscriber> subscribers;
+		final Priority priority;
+
+		Lookup(final Collection<EventSubscriber> subscribers, final Priority priority) {
+			this.subscribers = subscribers;
+			this.priority = priority;
+		}
+	}
 }
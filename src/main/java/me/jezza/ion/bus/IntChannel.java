@@ -0,0 +1,34 @@
+package me.jezza.ion.bus;
+
+import me.jezza.ion.bus.interfaces.IntSubscriber;
+
+/**
+ * A {@link PrimitiveChannel} of {@code int} values.
+ *
+ * @author jezza
+ */
+public final class IntChannel extends PrimitiveChannel<IntSubscriber> {
+	private static final IntSubscriber[] EMPTY = new IntSubscriber[0];
+
+	IntChannel(final EventBus bus, final String name) {
+		super(bus, name, EMPTY);
+	}
+
+	/**
+	 * Hands the given sample to every subscriber of this channel, on the calling thread.
+	 */
+	public void post(final int key, final int value) {
+		for (final IntSubscriber subscriber : subscribers) {
+			try {
+				subscriber.handle(key, value);
+			} catch (final Throwable e) {
+				handleException(e, subscriber, key, value);
+			}
+		}
+	}
+
+	@Override
+	protected void redeliver(final IntSubscriber subscriber, final Sample sample) throws Throwable {
+		subscriber.handle(sample.key, sample.value.intValue());
+	}
+}
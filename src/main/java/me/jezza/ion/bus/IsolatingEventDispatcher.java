@@ -0,0 +1,335 @@
+package me.jezza.ion.bus;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+
+import me.jezza.ion.bus.interfaces.Conflate;
+import me.jezza.ion.bus.interfaces.EventSubscriber;
+import me.jezza.ion.bus.interfaces.ExceptionHandler;
+import me.jezza.ion.utils.ConflatingQueue;
+
+/**
+ * A {@link DefaultEventDispatcher} that keeps track of how long each {@link EventSubscriber} takes, and how often it fails,
+ * so a single misbehaving subscriber can't degrade every other subscriber that shares the dispatching thread.
+ * <p>
+ * <ul>
+ * <li>A subscriber that is slower than the threshold for too many consecutive calls is <i>quarantined</i>:
+ * from then on, its events are handed to its own bounded, single-threaded executor, instead of being run inline.
+ * While they're queued there, events of a {@link Conflate} type replace any older event with the same key,
+ * and if the queue falls too far behind anyway, events for that subscriber are dropped.</li>
+ * <li>A subscriber that fails too many consecutive times is <i>circuit-broken</i>: its events are dropped for a while,
+ * after which a single event is let through as a probe. If the probe succeeds, the circuit is closed again, otherwise it stays open for another period.</li>
+ * </ul>
+ * Every transition is reported through the {@link ExceptionHandler} as an {@link IsolationException}, and so are dropped events,
+ * but only the first event dropped while a circuit is open, or while a quarantine is full, until it's drained again. The rest are only counted, see {@link Health#dropped()}.
+ * <p>
+ * Note: Once a subscriber has been quarantined, events that were posted before and after the quarantine may be delivered concurrently.
+ * The usual guarantee still holds, a subscriber that isn't thread-safe is never called by two threads at once.
+ *
+ * @author jezza
+ */
+public class IsolatingEventDispatcher extends DefaultEventDispatcher {
+	private final LoadingCache<EventSubscriber, Health> health = Caffeine.newBuilder()
+			.weakKeys()
+			.build(subscriber -> new Health());
+
+	protected final long slowThreshold;
+	protected final int slowLimit;
+	protected final int failureLimit;
+	protected final long breakPeriod;
+	protected final int quarantineCapacity;
+
+	/**
+	 * Quarantines subscribers after 5 consecutive calls that took over 10ms, and breaks the circuit for 5 seconds after 10 consecutive failures.
+	 * Quarantined subscribers can fall 1024 events behind.
+	 */
+	public IsolatingEventDispatcher() {
+		this(10, TimeUnit.MILLISECONDS, 5, 10, 5, TimeUnit.SECONDS, 1024);
+	}
+
+	/**
+	 * @param slowThreshold      - How long a single call can take, before it's considered slow.
+	 * @param slowUnit           - The unit of {@code slowThreshold}.
+	 * @param slowLimit          - How many consecutive slow calls a subscriber can make, before it's quarantined.
+	 * @param failureLimit       - How many consecutive failures a subscriber can have, before its circuit is broken.
+	 * @param breakPeriod        - How long a broken circuit stays open, before a probe is let through.
+	 * @param breakUnit          - The unit of {@code breakPeriod}.
+	 * @param quarantineCapacity - How many events a quarantined subscriber can fall behind, before new events are dropped.
+	 */
+	public IsolatingEventDispatcher(final long slowThreshold, final TimeUnit slowUnit, final int slowLimit, final int failureLimit, final long breakPeriod, final TimeUnit breakUnit, final int quarantineCapacity) {
+		if (slowLimit < 1 || failureLimit < 1 || quarantineCapacity < 1) {
+			throw new IllegalArgumentException("Limits must be positive: slowLimit=" + slowLimit + ", failureLimit=" + failureLimit + ", quarantineCapacity=" + quarantineCapacity);
+		}
+		this.slowThreshold = slowUnit.toNanos(slowThreshold);
+		this.slowLimit = slowLimit;
+		this.failureLimit = failureLimit;
+		this.breakPeriod = breakUnit.toNanos(breakPeriod);
+		this.quarantineCapacity = quarantineCapacity;
+	}
+
+	@Override
+	protected void deliver(final EventBus bus, final Object event, final EventSubscriber subscriber) {
+		final Health health = this.health.get(subscriber);
+		if (health.brokenUntil != 0) {
+			// Drop everything until the period has passed, and then only let a single probe through.
+			if (System.nanoTime() - health.brokenUntil < 0 || !health.probing.compareAndSet(false, true)) {
+				health.dropped.increment();
+				if (health.droppedWhileBroken.getAndIncrement() == 0) {
+					bus.handleException(new IsolationException("Circuit is open, dropping events until it's probed again."), event, subscriber);
+				}
+				return;
+			}
+		}
+		final Quarantine quarantine = health.quarantine;
+		if (quarantine == null) {
+			invoke(bus, event, subscriber, health);
+		} else if (!quarantine.offer(bus, event, subscriber)) {
+			health.dropped.increment();
+			if (health.droppedWhileFull.getAndIncrement() == 0) {
+				bus.handleException(new IsolationException("Quarantined subscriber is " + quarantineCapacity + " events behind, dropping events until it catches up."), event, subscriber);
+			}
+		}
+	}
+
+	/**
+	 * Invokes the subscriber on the current thread, and records how it went.
+	 */
+	protected void invoke(final EventBus bus, final Object event, final EventSubscriber subscriber, final Health health) {
+		final long start = System.nanoTime();
+		try {
+			subscriber.handle(event);
+		} catch (final Throwable e) {
+			health.record(System.nanoTime() - start, true);
+			bus.handleException(e, event, subscriber);
+			failed(bus, event, subscriber, health);
+			return;
+		}
+		final long elapsed = System.nanoTime() - start;
+		health.record(elapsed, false);
+		succeeded(bus, event, subscriber, health, elapsed);
+	}
+
+	protected void failed(final EventBus bus, final Object event, final EventSubscriber subscriber, final Health health) {
+		final boolean probe = health.brokenUntil != 0;
+		if (!probe && health.consecutiveFailures.incrementAndGet() < failureLimit) {
+			return;
+		}
+		health.consecutiveFailures.set(0);
+		health.droppedWhileBroken.set(0);
+		health.brokenUntil = (System.nanoTime() + breakPeriod) | 1L;
+		health.probing.set(false);
+		final String message = probe
+				? "Subscriber failed its probe, keeping the circuit open for another " + TimeUnit.NANOSECONDS.toMillis(breakPeriod) + "ms."
+				: "Subscriber failed " + failureLimit + " consecutive times, breaking the circuit for " + TimeUnit.NANOSECONDS.toMillis(breakPeriod) + "ms.";
+		bus.handleException(new IsolationException(message), event, subscriber);
+	}
+
+	protected void succeeded(final EventBus bus, final Object event, final EventSubscriber subscriber, final Health health, final long elapsed) {
+		health.consecutiveFailures.set(0);
+		if (health.brokenUntil != 0) {
+			health.brokenUntil = 0;
+			health.probing.set(false);
+		}
+		if (health.quarantine != null) {
+			return;
+		}
+		if (elapsed < slowThreshold) {
+			health.consecutiveSlow.set(0);
+		} else if (health.consecutiveSlow.incrementAndGet() >= slowLimit && quarantine(subscriber, health)) {
+			bus.handleException(new IsolationException("Subscriber took over " + TimeUnit.NANOSECONDS.toMicros(slowThreshold) + "us for " + slowLimit + " consecutive calls, moving it to its own executor."), event, subscriber);
+		}
+	}
+
+	private boolean quarantine(final EventSubscriber subscriber, final Health health) {
+		synchronized (health) {
+			if (health.quarantine != null) {
+				return false;
+			}
+			health.quarantine = new Quarantine(subscriber.toString(), health);
+			return true;
+		}
+	}
+
+	/**
+	 * @param subscriber - The subscriber in question.
+	 * @return - The {@link Health} this dispatcher is tracking for the given subscriber.
+	 */
+	public Health health(final EventSubscriber subscriber) {
+		return health.get(subscriber);
+	}
+
+	/**
+	 * Shuts down the executors of every quarantined subscriber.
+	 * Events that are still queued for them are still delivered.
+	 */
+	public void shutdown() {
+		for (final Health health : this.health.asMap().values()) {
+			final Quarantine quarantine = health.quarantine;
+			if (quarantine != null) {
+				quarantine.executor.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * The mailbox of a quarantined subscriber.
+	 * Events are queued (and conflated), and drained by a single thread, that only exists while there's something to drain.
+	 * The subscriber is only referenced by the events that are queued for it, so the quarantine doesn't keep it from being collected.
+	 *
+	 * @author jezza
+	 */
+	private final class Quarantine implements Runnable {
+		private final Health health;
+		private final ConflatingQueue<Pending> pending = new ConflatingQueue<>();
+		private final ThreadPoolExecutor executor;
+
+		/** true if a drain has been submitted to the executor, and hasn't finished yet */
+		private boolean scheduled;
+
+		Quarantine(final String name, final Health health) {
+			this.health = health;
+			executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+				final Thread thread = new Thread(r, "ion-quarantine-" + name);
+				thread.setDaemon(true);
+				return thread;
+			});
+			// Let the thread die when the subscriber goes quiet, so an unregistered subscriber doesn't hold onto it.
+			executor.allowCoreThreadTimeOut(true);
+		}
+
+		boolean offer(final EventBus bus, final Object event, final EventSubscriber subscriber) {
+			final Object key = Conflation.keyOf(event);
+			synchronized (this) {
+				if (pending.size() >= quarantineCapacity && !pending.contains(key)) {
+					return false;
+				}
+				// It's delivered by the quarantine's own thread, long after the post returns.
+				final Pending replaced = pending.offer(key, new Pending(bus, EventBus.retain(event), subscriber));
+				if (replaced != null) {
+					EventBus.release(replaced.event);
+				}
+				if (!scheduled) {
+					try {
+						executor.execute(this);
+					} catch (final RejectedExecutionException e) {
+						// It's been shut down, so nothing that's queued will ever be delivered.
+						Pending dropped;
+						while ((dropped = pending.poll()) != null) {
+							EventBus.release(dropped.event);
+						}
+						return false;
+					}
+					scheduled = true;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public void run() {
+			for (; ; ) {
+				final Pending next;
+				synchronized (this) {
+					next = pending.poll();
+					if (next == null) {
+						scheduled = false;
+						// It's caught up, so the next time it falls behind is reported again.
+						health.droppedWhileFull.set(0);
+						return;
+					}
+				}
+				try {
+					invoke(next.bus, next.event, next.subscriber, health);
+				} finally {
+					EventBus.release(next.event);
+				}
+			}
+		}
+	}
+
+	private static final class Pending {
+		final EventBus bus;
+		final Object event;
+		final EventSubscriber subscriber;
+
+		Pending(final EventBus bus, final Object event, final EventSubscriber subscriber) {
+			this.bus = bus;
+			this.event = event;
+			this.subscriber = subscriber;
+		}
+	}
+
+	/**
+	 * The execution-time and failure tracking of a single {@link EventSubscriber}.
+	 * It's keyed weakly by the subscriber, so it mustn't reference it, or it'd never be collected.
+	 *
+	 * @author jezza
+	 */
+	public static final class Health {
+		private final LongAdder calls = new LongAdder();
+		private final LongAdder failures = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+		private final LongAdder dropped = new LongAdder();
+
+		final AtomicInteger consecutiveSlow = new AtomicInteger();
+		final AtomicInteger consecutiveFailures = new AtomicInteger();
+		final AtomicBoolean probing = new AtomicBoolean();
+		/** how many events were dropped since the circuit was last broken */
+		final AtomicLong droppedWhileBroken = new AtomicLong();
+		/** how many events were dropped since the quarantine was last drained */
+		final AtomicLong droppedWhileFull = new AtomicLong();
+
+		/** 0 if the circuit is closed, otherwise the {@link System#nanoTime()} it stays open until */
+		volatile long brokenUntil;
+
+		/** null unless the subscriber was quarantined */
+		volatile Quarantine quarantine;
+
+		void record(final long elapsed, final boolean failed) {
+			calls.increment();
+			nanos.add(elapsed);
+			if (failed) {
+				failures.increment();
+			}
+		}
+
+		public long calls() {
+			return calls.sum();
+		}
+
+		public long failures() {
+			return failures.sum();
+		}
+
+		public long dropped() {
+			return dropped.sum();
+		}
+
+		public long averageNanos() {
+			final long calls = this.calls.sum();
+			return calls == 0 ? 0 : nanos.sum() / calls;
+		}
+
+		public boolean quarantined() {
+			return quarantine != null;
+		}
+
+		public boolean broken() {
+			return brokenUntil != 0;
+		}
+
+		@Override
+		public String toString() {
+			return "Health{calls=" + calls() + ", failures=" + failures() + ", dropped=" + dropped() + ", avg=" + averageNanos() + "ns, quarantined=" + quarantined() + ", broken=" + broken() + '}';
+		}
+	}
+}
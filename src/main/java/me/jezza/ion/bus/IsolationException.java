@@ -0,0 +1,18 @@
+package me.jezza.ion.bus;
+
+import me.jezza.ion.bus.interfaces.EventSubscriber;
+import me.jezza.ion.bus.interfaces.ExceptionHandler;
+
+/**
+ * Reported through the {@link ExceptionHandler} whenever the {@link IsolatingEventDispatcher} changes how it treats an {@link EventSubscriber},
+ * or has to drop an event because of it.
+ *
+ * @author jezza
+ */
+public class IsolationException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	public IsolationException(final String message) {
+		super(message, null, false, false);
+	}
+}
@@ -0,0 +1,34 @@
+package me.jezza.ion.bus;
+
+import me.jezza.ion.bus.interfaces.LongSubscriber;
+
+/**
+ * A {@link PrimitiveChannel} of {@code long} values.
+ *
+ * @author jezza
+ */
+public final class LongChannel extends PrimitiveChannel<LongSubscriber> {
+	private static final LongSubscriber[] EMPTY = new LongSubscriber[0];
+
+	LongChannel(final EventBus bus, final String name) {
+		super(bus, name, EMPTY);
+	}
+
+	/**
+	 * Hands the given sample to every subscriber of this channel, on the calling thread.
+	 */
+	public void post(final int key, final long value) {
+		for (final LongSubscriber subscriber : subscribers) {
+			try {
+				subscriber.handle(key, value);
+			} catch (final Throwable e) {
+				handleException(e, subscriber, key, value);
+			}
+		}
+	}
+
+	@Override
+	protected void redeliver(final LongSubscriber subscriber, final Sample sample) throws Throwable {
+		subscriber.handle(sample.key, sample.value.longValue());
+	}
+}
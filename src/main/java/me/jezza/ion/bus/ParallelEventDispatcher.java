@@ -0,0 +1,94 @@
+package me.jezza.ion.bus;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+import me.jezza.ion.bus.interfaces.EventSubscriber;
+
+/**
+ * A {@link DefaultEventDispatcher} that fans an event out over a {@link ForkJoinPool}, if it has a lot of thread-safe subscribers.
+ * <p>
+ * If at least {@code threshold} of an event's subscribers are thread-safe (See {@link EventSubscriber#isThreadSafe()}), they're split into chunks of {@code chunkSize},
+ * and each chunk is handed to the pool. Everything else is left as it is:
+ * <ul>
+ * <li>Subscribers that aren't thread-safe are still invoked one after another, on the thread that's dispatching, so they're never invoked concurrently.</li>
+ * <li>Events with fewer thread-safe subscribers than that aren't worth the hand-off, so they're dispatched just like {@link DefaultEventDispatcher} does.</li>
+ * </ul>
+ * {@link EventBus#post(Object)} waits for every chunk, (The dispatching thread takes one of them itself) so it still returns once every subscriber has handled the event.
+ * {@link EventBus#postAsync(Object)} doesn't, so the dispatching thread moves onto the next event straight away.
+ * That means thread-safe subscribers can receive asynchronously posted events out of order.
+ *
+ * @author jezza
+ */
+public class ParallelEventDispatcher extends DefaultEventDispatcher {
+	protected final ForkJoinPool pool;
+	protected final int threshold;
+	protected final int chunkSize;
+
+	/**
+	 * Fans out over the common pool, once an event has 32 thread-safe subscribers, in chunks of 8.
+	 */
+	public ParallelEventDispatcher() {
+		this(ForkJoinPool.commonPool(), 32, 8);
+	}
+
+	/**
+	 * @param pool      - The pool chunks of subscribers are handed to.
+	 * @param threshold - How many thread-safe subscribers an event needs to have, before it's fanned out.
+	 * @param chunkSize - How many subscribers are handed to the pool at once.
+	 */
+	public ParallelEventDispatcher(final ForkJoinPool pool, final int threshold, final int chunkSize) {
+		this.pool = Objects.requireNonNull(pool, "Argument 'pool' may not be null.");
+		if (threshold < 1) {
+			throw new IllegalArgumentException("Threshold must be positive: " + threshold);
+		}
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+		}
+		this.threshold = threshold;
+		this.chunkSize = chunkSize;
+	}
+
+	@Override
+	protected CompletableFuture<Void> deliverAll(final EventBus bus, final Object event, final Iterator<EventSubscriber> subscribers, final boolean async) {
+		final List<EventSubscriber> serial = new ArrayList<>();
+		final List<EventSubscriber> parallel = new ArrayList<>();
+		while (subscribers.hasNext()) {
+			final EventSubscriber subscriber = subscribers.next();
+			(subscriber.isThreadSafe() ? parallel : serial).add(subscriber);
+		}
+		if (parallel.size() < threshold) {
+			serial.addAll(parallel);
+			deliver(bus, event, serial);
+			return null;
+		}
+		// If we're waiting anyway, the last chunk is ours.
+		final int end = async ? parallel.size() : parallel.size() - chunkSize;
+		// If we're not, the chunks can still be delivering it after we've returned.
+		final Object shared = async ? EventBus.retain(event) : event;
+		final List<CompletableFuture<Void>> chunks = new ArrayList<>(parallel.size() / chunkSize + 1);
+		int from = 0;
+		for (; from < end; from += chunkSize) {
+			final List<EventSubscriber> chunk = parallel.subList(from, Math.min(from + chunkSize, parallel.size()));
+			chunks.add(CompletableFuture.runAsync(() -> deliver(bus, shared, chunk), pool));
+		}
+		deliver(bus, event, serial);
+		final CompletableFuture<Void> delivered = CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0]));
+		if (async) {
+			return delivered.whenComplete((v, t) -> EventBus.release(shared));
+		}
+		deliver(bus, event, parallel.subList(from, parallel.size()));
+		delivered.join();
+		return null;
+	}
+
+	private void deliver(final EventBus bus, final Object event, final List<EventSubscriber> subscribers) {
+		for (final EventSubscriber subscriber : subscribers) {
+			offer(bus, event, subscriber);
+		}
+	}
+}
@@ -0,0 +1,326 @@
+package me.jezza.ion.bus;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import me.jezza.ion.bus.interfaces.Conflate;
+import me.jezza.ion.bus.interfaces.EventSubscriber;
+import me.jezza.ion.bus.interfaces.Partition;
+
+/**
+ * A {@link DefaultEventDispatcher} that spreads events over a fixed number of lanes, each of which has a single thread, that delivers its events in order.
+ * <p>
+ * Which lane an event goes to is decided by its routing key (See {@link Partition}), so every event with the same key is delivered in the order it was posted,
+ * while events with different keys are delivered in parallel. Events without a key are routed by their type instead, so they stay in order among their own type.
+ * <p>
+ * Every lane has its own lock-free queue, which posting threads only ever append to, so posting never blocks, and never waits for the event to be delivered,
+ * which means {@link EventBus#post(Object)} returns straight away. {@link EventBus#postAsync(Object)} can be used to find out when an event's been delivered.
+ * Priorities are ignored, as jumping the queue would break the order of a key.
+ * Events are retained while they're queued, so a {@link me.jezza.ion.bus.interfaces.TransientEvent} is still valid by the time it's delivered.
+ * <p>
+ * While queued, an event of a {@link Conflate} type is replaced in place by a newer one with the same key, which keeps the subscribers it was queued with.
+ * Events posted with {@link EventBus#postAsync(Object)} are never replaced, nor replace anything, as someone's waiting for that exact event.
+ * <p>
+ * Subscribers that aren't thread-safe can still be invoked by several lanes at once, they're just never invoked concurrently, as usual.
+ * A lane that falls behind shows up in {@link #depth(int)}, and a key, (Or a few) that takes more than its share of events shows up in {@link #skew()}.
+ *
+ * @author jezza
+ */
+public class PartitionedEventDispatcher extends DefaultEventDispatcher {
+	private final Lane[] lanes;
+
+	/**
+	 * One lane for every available processor.
+	 */
+	public PartitionedEventDispatcher() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param lanes - How many lanes to spread events over.
+	 */
+	public PartitionedEventDispatcher(final int lanes) {
+		this(lanes, r -> {
+			final Thread thread = new Thread(r, "ion-lane");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * @param lanes   - How many lanes to spread events over.
+	 * @param threads - Creates the thread of each lane. They should be daemon threads.
+	 */
+	public PartitionedEventDispatcher(final int lanes, final ThreadFactory threads) {
+		if (lanes < 1) {
+			throw new IllegalArgumentException("Lanes must be positive: " + lanes);
+		}
+		Objects.requireNonNull(threads, "Argument 'threads' may not be null.");
+		this.lanes = new Lane[lanes];
+		for (int i = 0; i < lanes; i++) {
+			final Lane lane = new Lane();
+			lane.thread = threads.newThread(lane);
+			this.lanes[i] = lane;
+		}
+		for (final Lane lane : this.lanes) {
+			lane.thread.start();
+		}
+	}
+
+	@Override
+	public void dispatch(final EventBus bus, final Object event, final Priority priority, final Iterator<EventSubscriber> subscribers) {
+		final Lane lane = laneOf(event);
+		final Task task = new Task(bus, EventBus.retain(event), subscribers, null);
+		final Object key = Conflation.keyOf(event);
+		if (key != null) {
+			lane.conflate(key, task);
+		} else {
+			lane.offer(task);
+		}
+	}
+
+	@Override
+	public CompletableFuture<Void> dispatchAsync(final EventBus bus, final Object event, final Priority priority, final Iterator<EventSubscriber> subscribers) {
+		final CompletableFuture<Void> completion = new CompletableFuture<>();
+		laneOf(event).offer(new Task(bus, EventBus.retain(event), subscribers, completion));
+		return completion;
+	}
+
+	/**
+	 * Each event of the batch is routed on its own, so events of the batch only stay in order if they share a lane.
+	 */
+	@Override
+	public void dispatchAll(final EventBus bus, final List<?> events, final List<Priority> priorities, final List<Iterator<EventSubscriber>> subscribers) {
+		for (int i = 0, l = events.size(); i < l; i++) {
+			dispatch(bus, events.get(i), priorities.get(i), subscribers.get(i));
+		}
+	}
+
+	private Lane laneOf(final Object event) {
+		final int hash = Partitioning.keyOf(event).hashCode();
+		return lanes[Math.floorMod(hash ^ hash >>> 16, lanes.length)];
+	}
+
+	/**
+	 * @return - How many lanes events are spread over.
+	 */
+	public int lanes() {
+		return lanes.length;
+	}
+
+	/**
+	 * @param lane - The lane in question.
+	 * @return - How many events are queued on the given lane, but haven't been delivered yet.
+	 */
+	public long depth(final int lane) {
+		return lanes[lane].depth();
+	}
+
+	/**
+	 * @return - How many events are queued on every lane combined.
+	 */
+	public long depth() {
+		long depth = 0;
+		for (final Lane lane : lanes) {
+			depth += lane.depth();
+		}
+		return depth;
+	}
+
+	/**
+	 * @param lane - The lane in question.
+	 * @return - How many events the given lane has delivered.
+	 */
+	public long dispatched(final int lane) {
+		return lanes[lane].delivered;
+	}
+
+	/**
+	 * @return - How many events the busiest lane has been given, compared to the average of all of them.
+	 * 1 means the events are spread evenly, and {@link #lanes()} means every event went to the same lane.
+	 */
+	public double skew() {
+		long max = 0;
+		long total = 0;
+		for (final Lane lane : lanes) {
+			final long offered = lane.offered.sum();
+			max = Math.max(max, offered);
+			total += offered;
+		}
+		return total == 0 ? 1 : (double) max * lanes.length / total;
+	}
+
+	/**
+	 * Stops every lane, once it's delivered what's already queued.
+	 * Anything dispatched after that is never delivered.
+	 */
+	public void shutdown() {
+		for (final Lane lane : lanes) {
+			lane.running = false;
+			LockSupport.unpark(lane.thread);
+		}
+	}
+
+	/**
+	 * A single event, and its subscribers, as well as the link to the next one in its lane.
+	 *
+	 * @author jezza
+	 */
+	private static final class Task {
+		/** stands in for the event of a conflatable task once the lane's taken it, so it can't be replaced anymore */
+		static final Object TAKEN = new Object();
+		static final AtomicReferenceFieldUpdater<Task, Object> EVENT = AtomicReferenceFieldUpdater.newUpdater(Task.class, Object.class, "event");
+
+		/** published by the link to this task, and cleared once it's been delivered */
+		EventBus bus;
+		Iterator<EventSubscriber> subscribers;
+		/** null if the poster isn't waiting for it */
+		CompletableFuture<Void> completion;
+		/** the conflation key, if it's queued under one */
+		Object key;
+		/** swapped for a newer event by posting threads, while the task's conflatable and queued */
+		volatile Object event;
+
+		volatile Task next;
+
+		Task(final EventBus bus, final Object event, final Iterator<EventSubscriber> subscribers, final CompletableFuture<Void> completion) {
+			this.bus = bus;
+			this.event = event;
+			this.subscribers = subscribers;
+			this.completion = completion;
+		}
+	}
+
+	/**
+	 * A queue with any number of producers, and a single consumer, the lane's thread.
+	 * Producers swap themselves in as the tail, and then link the previous tail to themselves, so the queue is lock-free, and every task is its own node.
+	 * The consumer always keeps the last task it took as the head, as it's the only way to reach whatever's linked after it.
+	 * <p>
+	 * Conflatable tasks are also indexed by their key until they're taken, and a producer with the same key swaps its event into the queued task instead.
+	 * The swap and the take race on the task's event, so a producer that loses just queues its own task.
+	 *
+	 * @author jezza
+	 */
+	private final class Lane implements Runnable {
+		private final AtomicReference<Task> tail;
+		/** only touched by the lane's thread */
+		private Task head;
+		private final ConcurrentMap<Object, Task> conflating = new ConcurrentHashMap<>();
+
+		private final LongAdder offered = new LongAdder();
+		/** only written by the lane's thread */
+		private volatile long delivered;
+
+		/** true if the lane's thread is parked, or about to be */
+		private final AtomicBoolean idle = new AtomicBoolean();
+		private volatile boolean running = true;
+		private Thread thread;
+
+		Lane() {
+			final Task stub = new Task(null, null, null, null);
+			head = stub;
+			tail = new AtomicReference<>(stub);
+		}
+
+		void offer(final Task task) {
+			offered.increment();
+			final Task previous = tail.getAndSet(task);
+			previous.next = task;
+			if (idle.get() && idle.compareAndSet(true, false)) {
+				LockSupport.unpark(thread);
+			}
+		}
+
+		void conflate(final Object key, final Task task) {
+			for (; ; ) {
+				final Task queued = conflating.putIfAbsent(key, task);
+				if (queued == null) {
+					task.key = key;
+					offer(task);
+					return;
+				}
+				final Object event = queued.event;
+				if (event != Task.TAKEN && Task.EVENT.compareAndSet(queued, event, task.event)) {
+					// It was swapped out before the lane could take it, so nothing else holds it.
+					EventBus.release(event);
+					return;
+				}
+				// The lane's already taken it, so it just hasn't been unindexed yet.
+				conflating.remove(key, queued);
+			}
+		}
+
+		long depth() {
+			return offered.sum() - delivered;
+		}
+
+		@Override
+		public void run() {
+			for (; ; ) {
+				final Task task = head.next;
+				if (task == null) {
+					if (!running && tail.get() == head) {
+						return;
+					}
+					idle.set(true);
+					// Something might have been linked in between us looking, and saying we're idle.
+					if (head.next == null && running) {
+						LockSupport.park(this);
+					}
+					idle.set(false);
+					continue;
+				}
+				// The task becomes the new head, so once it's delivered, drop what it holds, or it'll be held until the next one's taken.
+				head = task;
+				final Object key = task.key;
+				final Object event;
+				if (key != null) {
+					// Taking the event stops anyone replacing it, as it's too late for that now.
+					event = Task.EVENT.getAndSet(task, Task.TAKEN);
+					conflating.remove(key, task);
+					task.key = null;
+				} else {
+					event = task.event;
+					task.event = null;
+				}
+				deliver(task, event);
+				task.bus = null;
+				task.subscribers = null;
+				task.completion = null;
+				delivered++;
+			}
+		}
+
+		private void deliver(final Task task, final Object event) {
+			final CompletableFuture<Void> completion = task.completion;
+			try {
+				final CompletableFuture<Void> delivered = deliverAll(task.bus, event, task.subscribers, completion != null);
+				if (completion != null) {
+					if (delivered == null) {
+						completion.complete(null);
+					} else {
+						delivered.whenComplete((v, t) -> completion.complete(null));
+					}
+				}
+			} catch (final Throwable e) {
+				// Subscriber failures are already handed to the bus, so this is something else, and the lane has to keep going regardless.
+				if (completion != null) {
+					completion.completeExceptionally(e);
+				}
+			} finally {
+				// Anything that's still delivering it by now has retained it for itself.
+				EventBus.release(event);
+			}
+		}
+	}
+}
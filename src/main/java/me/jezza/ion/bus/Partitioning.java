@@ -0,0 +1,54 @@
+package me.jezza.ion.bus;
+
+import java.lang.invoke.MethodHandle;
+import java.util.function.Function;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+
+import me.jezza.ion.bus.interfaces.Partition;
+
+/**
+ * Resolves the routing key of events whose type is annotated with {@link Partition}.
+ *
+ * @author jezza
+ */
+public final class Partitioning {
+	/**
+	 * A thread-safe cache of how to read the key of any given event class.
+	 * The lookup is only ever done once per class, after that, it's just a call through a {@link MethodHandle}.
+	 */
+	private static final LoadingCache<Class<?>, Function<Object, Object>> KEYS = Caffeine.newBuilder()
+			.weakKeys()
+			.build(Partitioning::resolve);
+
+	private Partitioning() {
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * @param event - The event in question.
+	 * @return - The routing key of the given event, or its type, if it doesn't have one.
+	 * Unlike conflation keys, keys of different event types can collide, as that's what keeps everything for the same key in order.
+	 */
+	public static Object keyOf(final Object event) {
+		final Object key = KEYS.get(event.getClass()).apply(event);
+		return key != null ? key : event.getClass();
+	}
+
+	private static Function<Object, Object> resolve(final Class<?> type) {
+		final Partition partition = type.getAnnotation(Partition.class);
+		if (partition == null) {
+			return event -> null;
+		}
+		final String name = partition.value();
+		final MethodHandle accessor = Conflation.accessor(type, name);
+		return event -> {
+			try {
+				return accessor.invoke(event);
+			} catch (final Throwable e) {
+				throw new IllegalStateException("Failed to read routing key '" + name + "' of " + event, e);
+			}
+		};
+	}
+}
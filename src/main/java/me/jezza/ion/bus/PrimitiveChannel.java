@@ -0,0 +1,130 @@
+package me.jezza.ion.bus;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import me.jezza.ion.bus.interfaces.EventSubscriber;
+import me.jezza.ion.bus.interfaces.Registration;
+
+/**
+ * A named stream of (int key, primitive value) samples, such as metrics, that's dispatched without ever allocating.
+ * <p>
+ * A channel skips everything an {@link EventBus} does to an event: There's no hierarchy lookup, and no {@link me.jezza.ion.bus.interfaces.EventDispatcher}.
+ * A sample is handed to every subscriber of the channel straight away, on the thread that posted it,
+ * so a subscriber of a channel that's posted to from several threads has to be thread-safe.
+ * A sample that nobody subscribed to is just dropped, it's never considered dead.
+ * <p>
+ * Channels are obtained from the bus they belong to, see {@link EventBus#intChannel(String)}, and should be held onto, as that's a lookup.
+ * Exceptions thrown by a subscriber are still handed to the {@link me.jezza.ion.bus.interfaces.ExceptionHandler} of the bus, along with a {@link Sample}.
+ *
+ * @param <S> - The type of subscriber.
+ * @author jezza
+ */
+public abstract class PrimitiveChannel<S> {
+	protected final EventBus bus;
+	public final String name;
+
+	/**
+	 * Copied on write, so posting never has to lock.
+	 */
+	protected volatile S[] subscribers;
+
+	PrimitiveChannel(final EventBus bus, final String name, final S[] empty) {
+		this.bus = bus;
+		this.name = name;
+		subscribers = empty;
+	}
+
+	/**
+	 * @param subscriber - Handles every sample posted to this channel from now on.
+	 * @return - A {@link Registration} that, once closed, removes the given subscriber.
+	 */
+	public final Registration subscribe(final S subscriber) {
+		Objects.requireNonNull(subscriber, "Argument 'subscriber' may not be null.");
+		synchronized (this) {
+			final S[] subscribers = Arrays.copyOf(this.subscribers, this.subscribers.length + 1);
+			subscribers[subscribers.length - 1] = subscriber;
+			this.subscribers = subscribers;
+		}
+		return () -> unsubscribe(subscriber);
+	}
+
+	private synchronized void unsubscribe(final S subscriber) {
+		final S[] subscribers = this.subscribers;
+		for (int i = 0; i < subscribers.length; i++) {
+			if (subscribers[i] == subscriber) {
+				final S[] remaining = Arrays.copyOf(subscribers, subscribers.length - 1);
+				System.arraycopy(subscribers, i + 1, remaining, i, remaining.length - i);
+				this.subscribers = remaining;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return - true if anyone's subscribed to this channel, if not, there's no point in producing samples for it.
+	 */
+	public final boolean hasSubscribers() {
+		return subscribers.length != 0;
+	}
+
+	/**
+	 * Hands the given sample back to the given subscriber, this is how a {@link Sample} is replayed by whoever handles the exception.
+	 */
+	protected abstract void redeliver(S subscriber, Sample sample) throws Throwable;
+
+	/**
+	 * Reports an exception thrown by the given subscriber. This is the only place a sample is ever boxed.
+	 */
+	protected final void handleException(final Throwable exception, final S subscriber, final int key, final Number value) {
+		bus.handleException(exception, new Sample(name, key, value), new Redelivery(subscriber));
+	}
+
+	/**
+	 * A channel subscriber, as the {@link EventSubscriber} that {@link Sample}s are replayed through.
+	 * A new one's created for every failure, so it's equal to every other one for the same subscriber of the same channel,
+	 * which is what lets an {@link me.jezza.ion.bus.interfaces.ExceptionHandler} tell that it's the same subscriber failing again.
+	 *
+	 * @author jezza
+	 */
+	private final class Redelivery implements EventSubscriber {
+		private final S subscriber;
+
+		Redelivery(final S subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void handle(final Object event) throws Throwable {
+			redeliver(subscriber, (Sample) event);
+		}
+
+		private PrimitiveChannel<S> channel() {
+			return PrimitiveChannel.this;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(channel()) * 31 + subscriber.hashCode();
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof PrimitiveChannel.Redelivery)) {
+				return false;
+			}
+			final PrimitiveChannel<?>.Redelivery other = (PrimitiveChannel<?>.Redelivery) obj;
+			return channel() == other.channel() && subscriber.equals(other.subscriber);
+		}
+
+		@Override
+		public String toString() {
+			return subscriber.toString();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return '[' + getClass().getSimpleName() + '-' + name + ']';
+	}
+}
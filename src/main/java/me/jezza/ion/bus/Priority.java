@@ -0,0 +1,64 @@
+package me.jezza.ion.bus;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+
+import me.jezza.ion.bus.interfaces.EventPriority;
+
+/**
+ * The lane an event travels in.
+ * Queued events of a higher priority are always (or, with weighted draining, mostly) handled before queued events of a lower priority,
+ * so small, urgent events (shutdowns, configuration changes, heartbeats) aren't stuck behind a burst of bulk data.
+ * <p>
+ * The constants are declared from highest to lowest priority.
+ *
+ * @author jezza
+ */
+public enum Priority {
+	CONTROL,
+	NORMAL,
+	BULK;
+
+	private static final Priority[] VALUES = values();
+
+	/**
+	 * A thread-safe cache of the declared priority of each event class.
+	 */
+	private static final LoadingCache<Class<?>, Priority> DECLARED = Caffeine.newBuilder()
+			.weakKeys()
+			.build(type -> {
+				final EventPriority priority = type.getAnnotation(EventPriority.class);
+				return priority != null ? priority.value() : NORMAL;
+			});
+
+	/**
+	 * @param event - The event in question.
+	 * @return - The priority that was declared on the event's type, using {@link EventPriority}, or {@link #NORMAL} if there was none.
+	 */
+	public static Priority of(final Object event) {
+		return DECLARED.get(event.getClass());
+	}
+
+	/**
+	 * @param type - The type of event in question.
+	 * @return - The priority that was declared on the given type, using {@link EventPriority}, or {@link #NORMAL} if there was none.
+	 */
+	public static Priority declared(final Class<?> type) {
+		return DECLARED.get(type);
+	}
+
+	/**
+	 * @param ordinal - The ordinal of a priority.
+	 * @return - The priority with the given ordinal.
+	 */
+	public static Priority of(final int ordinal) {
+		return VALUES[ordinal];
+	}
+
+	/**
+	 * @return - The number of priorities.
+	 */
+	public static int count() {
+		return VALUES.length;
+	}
+}
@@ -0,0 +1,23 @@
+package me.jezza.ion.bus;
+
+/**
+ * A boxed sample of a {@link PrimitiveChannel}. It's only ever created to report an exception thrown by one of its subscribers, see {@link ExceptionContext#event}.
+ *
+ * @author jezza
+ */
+public final class Sample {
+	public final String channel;
+	public final int key;
+	public final Number value;
+
+	public Sample(final String channel, final int key, final Number value) {
+		this.channel = channel;
+		this.key = key;
+		this.value = value;
+	}
+
+	@Override
+	public String toString() {
+		return "Sample{channel=" + channel + ", key=" + key + ", value=" + value + '}';
+	}
+}
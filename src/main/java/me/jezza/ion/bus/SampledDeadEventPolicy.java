@@ -0,0 +1,46 @@
+package me.jezza.ion.bus;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+
+import me.jezza.ion.bus.interfaces.DeadEventPolicy;
+
+/**
+ * Only forwards one out of every {@code rate} dead events of any given type to another {@link DeadEventPolicy}.
+ * The first dead event of a type is always forwarded, so a new kind of unhandled traffic is still noticed.
+ *
+ * @author jezza
+ */
+public class SampledDeadEventPolicy implements DeadEventPolicy {
+	private final LoadingCache<Class<?>, AtomicLong> counters = Caffeine.newBuilder()
+			.weakKeys()
+			.build(k -> new AtomicLong());
+
+	private final long rate;
+	private final DeadEventPolicy delegate;
+
+	/**
+	 * Samples the dead events that are reposted as {@link DeadEvent}s.
+	 */
+	public SampledDeadEventPolicy(final long rate) {
+		this(rate, new DefaultDeadEventPolicy());
+	}
+
+	public SampledDeadEventPolicy(final long rate, final DeadEventPolicy delegate) {
+		if (rate < 1) {
+			throw new IllegalArgumentException("Argument 'rate' must be positive: " + rate);
+		}
+		this.rate = rate;
+		this.delegate = Objects.requireNonNull(delegate, "Argument 'delegate' may not be null.");
+	}
+
+	@Override
+	public void deadEvent(final EventBus bus, final Object event) {
+		if (counters.get(event.getClass()).getAndIncrement() % rate == 0) {
+			delegate.deadEvent(bus, event);
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package me.jezza.ion.bus.interfaces;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Marks a subscriber method as taking its events in batches.
+ * The method's single parameter has to be a {@link java.util.List}, and the type of its elements is the type of event it subscribes to, such as {@code List<MyEvent>}.
+ * A raw {@code List}, or a {@code List<?>}, doesn't say what that is, so it's rejected when the listener is registered.
+ * <p>
+ * The dispatcher accumulates the events, and hands them over once {@link #maxSize()} of them have accumulated,
+ * or once the first of them has waited for {@link #linger()}, whichever comes first.
+ * Batches are handed over one at a time, in the order their events were dispatched.
+ *
+ * @author jezza
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Batch {
+	/**
+	 * @return - The most events a single batch can hold.
+	 */
+	int maxSize() default 256;
+
+	/**
+	 * @return - How long an event can wait for its batch to fill up. 0 to never wait.
+	 */
+	long linger() default 10;
+
+	/**
+	 * @return - The unit of {@link #linger()}.
+	 */
+	TimeUnit unit() default TimeUnit.MILLISECONDS;
+}
@@ -0,0 +1,24 @@
+package me.jezza.ion.bus.interfaces;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an event type as "last-value-wins".
+ * If an event of this type is still queued when another one with the same key is queued, the queued one is replaced in place by the newer one.
+ * <p>
+ * The key is read from the field or no-argument method named by {@link #value()}.
+ * If no name is given, every event of the type shares the same key, so only the latest one is ever kept.
+ *
+ * @author jezza
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Conflate {
+	/**
+	 * @return - The name of the field or no-argument method that holds the key.
+	 */
+	String value() default "";
+}
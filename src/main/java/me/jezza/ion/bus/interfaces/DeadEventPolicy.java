@@ -0,0 +1,27 @@
+package me.jezza.ion.bus.interfaces;
+
+import me.jezza.ion.bus.DeadEvent;
+import me.jezza.ion.bus.EventBus;
+
+/**
+ * Decides what happens to an event that was posted, but had no subscribers.
+ * <p>
+ * The {@link EventBus} won't allocate anything on this path by itself, so a policy that ignores, samples or counts
+ * dead events is basically free, whereas one that reposts a {@link DeadEvent} costs a second lookup.
+ *
+ * @author jezza
+ */
+@FunctionalInterface
+public interface DeadEventPolicy {
+	/**
+	 * A policy that silently drops every dead event.
+	 */
+	DeadEventPolicy IGNORE = (bus, event) -> {
+	};
+
+	/**
+	 * @param bus   - The {@link EventBus} the event was posted on.
+	 * @param event - The event that no subscriber accepted. This is never a {@link DeadEvent}.
+	 */
+	void deadEvent(EventBus bus, Object event);
+}
@@ -0,0 +1,13 @@
+package me.jezza.ion.bus.interfaces;
+
+import me.jezza.ion.bus.DoubleChannel;
+
+/**
+ * Receives the samples of a {@link DoubleChannel}, without either of them ever being boxed.
+ *
+ * @author jezza
+ */
+@FunctionalInterface
+public interface DoubleSubscriber {
+	void handle(int key, double value) throws Throwable;
+}
@@ -1,8 +1,11 @@
 package me.jezza.ion.bus.interfaces;
 
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import me.jezza.ion.bus.EventBus;
+import me.jezza.ion.bus.Priority;
 
 /**
  * @author jezza
@@ -10,4 +13,32 @@ import me.jezza.ion.bus.EventBus;
  */
 public interface EventDispatcher {
 	void dispatch(EventBus bus, Object event, Iterator<EventSubscriber> subscribers);
+
+	/**
+	 * Dispatches an event that was posted with the given {@link Priority}.
+	 * Dispatchers that don't queue events have no use for the priority, so by default, it's ignored.
+	 */
+	default void dispatch(EventBus bus, Object event, Priority priority, Iterator<EventSubscriber> subscribers) {
+		dispatch(bus, event, subscribers);
+	}
+
+	/**
+	 * Dispatches a batch of events, in order. Each event is posted with the {@link Priority}, and to the subscribers, at the same index.
+	 * By default, they're dispatched one at a time.
+	 */
+	default void dispatchAll(EventBus bus, List<?> events, List<Priority> priorities, List<Iterator<EventSubscriber>> subscribers) {
+		for (int i = 0, l = events.size(); i < l; i++)
+			dispatch(bus, events.get(i), priorities.get(i), subscribers.get(i));
+	}
+
+	/**
+	 * Dispatches an event without waiting for every subscriber to handle it, if the dispatcher is able to.
+	 * Dispatchers that only ever dispatch on the calling thread can't, so by default, it's dispatched before returning.
+	 *
+	 * @return - A future that completes once every subscriber has handled the event. (Exceptions thrown by subscribers are reported as usual, they don't fail the future)
+	 */
+	default CompletableFuture<Void> dispatchAsync(EventBus bus, Object event, Priority priority, Iterator<EventSubscriber> subscribers) {
+		dispatch(bus, event, priority, subscribers);
+		return CompletableFuture.completedFuture(null);
+	}
 }
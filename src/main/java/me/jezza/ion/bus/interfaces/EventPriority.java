@@ -0,0 +1,20 @@
+package me.jezza.ion.bus.interfaces;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import me.jezza.ion.bus.Priority;
+
+/**
+ * Declares the {@link Priority} every event of this type is posted with, unless one is given explicitly.
+ * Event types without this annotation are {@link Priority#NORMAL}.
+ *
+ * @author jezza
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface EventPriority {
+	Priority value();
+}
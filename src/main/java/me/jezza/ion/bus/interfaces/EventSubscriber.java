@@ -7,4 +7,12 @@ package me.jezza.ion.bus.interfaces;
 @FunctionalInterface
 public interface EventSubscriber {
 	void handle(Object event) throws Throwable;
+
+	/**
+	 * @return - true if this subscriber can handle several events at once, from different threads. (By default, this is declared with {@link ThreadSafe})
+	 * Dispatchers only ever invoke a subscriber that isn't from one thread at a time, see {@link me.jezza.ion.bus.ParallelEventDispatcher}.
+	 */
+	default boolean isThreadSafe() {
+		return false;
+	}
 }
@@ -1,5 +1,6 @@
 package me.jezza.ion.bus.interfaces;
 
+import me.jezza.ion.bus.EventBus;
 import me.jezza.ion.bus.ExceptionContext;
 
 /**
@@ -8,4 +9,12 @@ import me.jezza.ion.bus.ExceptionContext;
  */
 public interface ExceptionHandler {
 	void handleException(Throwable exception, ExceptionContext context);
+
+	/**
+	 * Called by the {@link EventBus} for every exception, constructs the {@link ExceptionContext}, and hands it to {@link #handleException(Throwable, ExceptionContext)}.
+	 * Handlers that don't always need the context can override this instead, so nothing's allocated when they don't.
+	 */
+	default void handleException(Throwable exception, EventBus bus, Object event, EventSubscriber subscriber) {
+		handleException(exception, new ExceptionContext(bus, event, subscriber));
+	}
 }
@@ -0,0 +1,13 @@
+package me.jezza.ion.bus.interfaces;
+
+import me.jezza.ion.bus.IntChannel;
+
+/**
+ * Receives the samples of an {@link IntChannel}, without either of them ever being boxed.
+ *
+ * @author jezza
+ */
+@FunctionalInterface
+public interface IntSubscriber {
+	void handle(int key, int value) throws Throwable;
+}
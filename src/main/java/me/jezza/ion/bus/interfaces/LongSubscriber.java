@@ -0,0 +1,13 @@
+package me.jezza.ion.bus.interfaces;
+
+import me.jezza.ion.bus.LongChannel;
+
+/**
+ * Receives the samples of a {@link LongChannel}, without either of them ever being boxed.
+ *
+ * @author jezza
+ */
+@FunctionalInterface
+public interface LongSubscriber {
+	void handle(int key, long value) throws Throwable;
+}
@@ -0,0 +1,23 @@
+package me.jezza.ion.bus.interfaces;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Gives an event type a routing key, see {@link me.jezza.ion.bus.PartitionedEventDispatcher}.
+ * Events with equal keys are always dispatched in order, even if they're of different types.
+ * <p>
+ * The key is read from the field or no-argument method named by {@link #value()}.
+ *
+ * @author jezza
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Partition {
+	/**
+	 * @return - The name of the field or no-argument method that holds the key.
+	 */
+	String value();
+}
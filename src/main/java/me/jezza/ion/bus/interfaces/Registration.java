@@ -0,0 +1,19 @@
+package me.jezza.ion.bus.interfaces;
+
+/**
+ * A handle to the {@link EventSubscriber}s that were installed by a single registration.
+ * Closing it removes exactly those subscribers, without having to rediscover them through a {@link SubscriberStrategy}.
+ * <p>
+ * Closing a handle more than once has no effect.
+ *
+ * @author jezza
+ */
+@FunctionalInterface
+public interface Registration extends AutoCloseable {
+
+	/**
+	 * Removes all {@link EventSubscriber}s that this registration installed.
+	 */
+	@Override
+	void close();
+}
@@ -1,5 +1,6 @@
 package me.jezza.ion.bus.interfaces;
 
+import java.util.Collection;
 import java.util.Iterator;
 
 /**
@@ -13,11 +14,13 @@ public interface SubscriberRegistry {
 	 *
 	 * @param strategy - The strategy that should be used to retreive any {@link EventSubscriber}s from the given listener.
 	 * @param listener - The object that was registered.
+	 * @return - A {@link Registration} that removes exactly the {@link EventSubscriber}s that were installed by this call.
 	 */
-	void register(SubscriberStrategy strategy, Object listener);
+	Registration register(SubscriberStrategy strategy, Object listener);
 
 	/**
 	 * Unregisters any and all {@link EventSubscriber}s that originated from this listener.
+	 * This is equivalent to closing every {@link Registration} that was returned for the listener.
 	 *
 	 * @param strategy - The strategy that should be used to retreive any {@link EventSubscriber}s from the given listener.
 	 * @param listener - The object that should be unregistered.
@@ -31,4 +34,15 @@ public interface SubscriberRegistry {
 	 * @return - An immutable iterator of all {@link EventSubscriber}s that accept the given event. Note: doesn't have to be immutable, but it's recommended.
 	 */
 	Iterator<EventSubscriber> subscribersFor(Object event);
+
+	/**
+	 * A snapshot of the {@link EventSubscriber}s for every event of the given type, so a batch of events only looks each of its types up once.
+	 * Registries that can only look subscribers up by event have no way of doing that, so by default, it's null.
+	 *
+	 * @param eventType - The type of the events.
+	 * @return - An immutable collection of all {@link EventSubscriber}s that accept events of the given type, or null, if the registry can't look them up by type.
+	 */
+	default Collection<EventSubscriber> subscribersOf(Class<?> eventType) {
+		return null;
+	}
 }
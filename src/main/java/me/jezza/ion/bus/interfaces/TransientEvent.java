@@ -0,0 +1,25 @@
+package me.jezza.ion.bus.interfaces;
+
+/**
+ * An event that's only valid until the post that dispatched it returns, such as a view over a buffer that's about to be reused.
+ * <p>
+ * Anything that holds onto an event past that (A dispatcher that queues it, or hands it to another thread, a batch, a buffer) holds onto
+ * {@link #retained()} instead, and releases that once it's done with it, see {@link me.jezza.ion.bus.EventBus#retain(Object)}.
+ * So subscribers are always handed an event that's valid for as long as they're handling it, however it reached them.
+ * <p>
+ * Note: {@link me.jezza.ion.bus.EventBus#postDelayed(Object, long, java.util.concurrent.TimeUnit)} holds onto the event it's given as is,
+ * so a transient event can't be posted with a delay.
+ *
+ * @author jezza
+ */
+public interface TransientEvent {
+	/**
+	 * @return - An equivalent event, of the same type, that stays valid until it's released.
+	 */
+	TransientEvent retained();
+
+	/**
+	 * Releases an event returned by {@link #retained()}. It's no longer valid afterwards.
+	 */
+	void release();
+}
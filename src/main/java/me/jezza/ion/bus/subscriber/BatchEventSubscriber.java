@@ -0,0 +1,68 @@
+package me.jezza.ion.bus.subscriber;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import me.jezza.ion.bus.interfaces.Batch;
+import me.jezza.ion.bus.interfaces.EventSubscriber;
+
+/**
+ * A subscriber that takes its events in batches, see {@link Batch}.
+ * It's registered for the type of event it takes, but {@link #handle(Object)} is only ever given whole batches, as a {@link java.util.List}.
+ * Accumulating the events is left to the {@link me.jezza.ion.bus.interfaces.EventDispatcher}, see {@link me.jezza.ion.bus.DefaultEventDispatcher}.
+ *
+ * @author jezza
+ */
+public class BatchEventSubscriber implements EventSubscriber {
+	/**
+	 * The subscriber that's handed every batch.
+	 */
+	private final EventSubscriber delegate;
+
+	/**
+	 * The most events a single batch can hold.
+	 */
+	public final int maxSize;
+
+	/**
+	 * How long an event can wait for its batch to fill up, in nanoseconds. 0 to never wait.
+	 */
+	public final long linger;
+
+	public BatchEventSubscriber(final EventSubscriber delegate, final int maxSize, final long linger, final TimeUnit unit) {
+		this.delegate = Objects.requireNonNull(delegate, "Argument 'delegate' may not be null.");
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Argument 'maxSize' must be positive: " + maxSize);
+		}
+		if (linger < 0) {
+			throw new IllegalArgumentException("Argument 'linger' can't be negative: " + linger);
+		}
+		this.maxSize = maxSize;
+		this.linger = unit.toNanos(linger);
+	}
+
+	@Override
+	public void handle(final Object batch) throws Throwable {
+		delegate.handle(batch);
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return delegate.isThreadSafe();
+	}
+
+	@Override
+	public String toString() {
+		return "[BatchEventSubscriber:" + delegate + "]";
+	}
+
+	@Override
+	public int hashCode() {
+		return delegate.hashCode() * 31 + 1;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		return obj instanceof BatchEventSubscriber && delegate.equals(((BatchEventSubscriber) obj).delegate);
+	}
+}
@@ -45,6 +45,14 @@ public class MethodEventSubscriber implements EventSubscriber {
 		}
 	}
 
+	/**
+	 * Only methods that were declared thread-safe are wrapped by this class directly, the rest are wrapped by {@link SynchronisedMethodEventSubscriber}.
+	 */
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
 	@Override
 	public String toString() {
 		return "[EventSubscriber:" + method + "]";
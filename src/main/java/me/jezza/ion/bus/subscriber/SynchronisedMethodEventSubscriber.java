@@ -18,4 +18,9 @@ public class SynchronisedMethodEventSubscriber extends MethodEventSubscriber {
 			super.handle(event);
 		}
 	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return false;
+	}
 }
@@ -0,0 +1,352 @@
+package me.jezza.ion.journal;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * An append-only journal of opaque records, stored in memory-mapped segment files.
+ * <p>
+ * Appending never blocks: {@link #append(ByteBuf)} just retains the buffer and queues it, and a dedicated writer thread copies queued records
+ * into the current segment in batches. Dirty pages are forced to disk by yet another thread, on a fixed interval, and whenever a segment is finished.
+ * If the writer falls too far behind, records are dropped (and counted, see {@link #dropped()}) rather than blocking whoever's appending.
+ * <p>
+ * Each segment is a pair of files, named after the sequence number of the segment:
+ * <ul>
+ * <li>{@code <sequence>.seg}: The records, each one laid out as {@code [int length][long timestamp][length bytes]}.
+ * A length of 0 marks the end of the segment. The length is written last, so a reader never sees a partially written record.</li>
+ * <li>{@code <sequence>.idx}: A sparse index, made up of {@code [long timestamp][int position]} entries.
+ * The first record of a segment is always indexed, after that, a record is indexed once it's at least the index interval past the last indexed record.</li>
+ * </ul>
+ * Replaying seeks using the index, and streams records straight out of the mapped segment, so segments are never loaded onto the heap.
+ * Opening a journal over a directory that already contains segments keeps them (So they can be replayed), and starts a new segment.
+ *
+ * @author Jezza
+ */
+public final class Journal implements AutoCloseable {
+	private static final Logger log = LoggerFactory.getLogger(Journal.class);
+
+	private static final String SEGMENT = ".seg";
+	private static final String INDEX = ".idx";
+
+	/** int length + long timestamp */
+	private static final int RECORD_HEADER = 12;
+	/** the zeroed length that ends a segment */
+	private static final int END = 4;
+	/** long timestamp + int position */
+	private static final int INDEX_ENTRY = 12;
+
+	private static final int BATCH = 1024;
+
+	private final Path directory;
+	private final int segmentSize;
+	private final int indexInterval;
+
+	private final BlockingQueue<ByteBuf> queue;
+	private final LongAdder dropped = new LongAdder();
+	private final Thread writer;
+	private final ScheduledExecutorService flusher;
+
+	/** only ever touched by the writer thread, but read by the flusher */
+	private volatile Segment current;
+	private volatile boolean closed;
+
+	private Journal(Path directory, int segmentSize, int indexInterval, int capacity, long flushInterval, TimeUnit unit) throws IOException {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.indexInterval = indexInterval;
+		queue = new LinkedBlockingQueue<>(capacity);
+
+		List<Long> sequences = sequences(directory);
+		long next = sequences.isEmpty() ? 0 : sequences.get(sequences.size() - 1) + 1;
+		current = new Segment(next);
+
+		flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "ion-journal-flusher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		flusher.scheduleWithFixedDelay(() -> current.force(), flushInterval, flushInterval, unit);
+
+		writer = new Thread(this::write, "ion-journal-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Opens a journal with 64MB segments, an index entry every 4KB, room for 65536 queued records, and pages forced to disk every second.
+	 */
+	public static Journal open(Path directory) throws IOException {
+		return open(directory, 64 * 1024 * 1024, 4 * 1024, 64 * 1024, 1, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @param directory     - The directory the segments are stored in. It's created if it doesn't exist.
+	 * @param segmentSize   - The size of each segment, in bytes. This also bounds the size of a single record.
+	 * @param indexInterval - How many bytes of records there can be between two index entries.
+	 * @param capacity      - How many records can be queued for the writer, before records are dropped.
+	 * @param flushInterval - How often dirty pages are forced to disk.
+	 * @param unit          - The unit of {@code flushInterval}.
+	 */
+	public static Journal open(Path directory, int segmentSize, int indexInterval, int capacity, long flushInterval, TimeUnit unit) throws IOException {
+		Objects.requireNonNull(directory, "Argument 'directory' may not be null.");
+		if (segmentSize <= RECORD_HEADER + END || indexInterval < 1 || capacity < 1 || flushInterval < 1)
+			throw new IllegalArgumentException("Invalid journal configuration: segmentSize=" + segmentSize + ", indexInterval=" + indexInterval + ", capacity=" + capacity + ", flushInterval=" + flushInterval);
+		Files.createDirectories(directory);
+		return new Journal(directory, segmentSize, indexInterval, capacity, flushInterval, Objects.requireNonNull(unit));
+	}
+
+	/**
+	 * Queues the readable bytes of the given buffer as a record. The buffer itself isn't modified.
+	 * The record is timestamped when it's written, and it's dropped if the writer is too far behind.
+	 */
+	public void append(ByteBuf record) {
+		if (closed)
+			return;
+		ByteBuf duplicate = record.retainedDuplicate();
+		if (!queue.offer(duplicate)) {
+			duplicate.release();
+			dropped.increment();
+		}
+	}
+
+	/**
+	 * @return - The number of records that were dropped, either because the writer was too far behind, because they were bigger than a segment,
+	 * or because they couldn't be written, such as when the journal was closed before they were.
+	 */
+	public long dropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * Streams every record that was written at, or after, the given time to the consumer, in the order they were written.
+	 * The buffers handed to the consumer are views straight into the mapped segment, they're only valid for the duration of the call.
+	 *
+	 * @param from     - The earliest timestamp of a record that should be replayed, in milliseconds since the epoch.
+	 * @param consumer - The consumer of the records.
+	 */
+	public void replay(long from, Consumer<ByteBuffer> consumer) throws IOException {
+		List<Long> sequences = sequences(directory);
+		// Find the last segment that started before the given time, everything before it is too old.
+		int start = 0;
+		for (int i = sequences.size() - 1; i >= 0; i--) {
+			long first = firstTimestamp(sequences.get(i));
+			if (first != 0 && first <= from) {
+				start = i;
+				break;
+			}
+		}
+		for (int i = start; i < sequences.size(); i++)
+			replay(sequences.get(i), from, consumer);
+	}
+
+	private void replay(long sequence, long from, Consumer<ByteBuffer> consumer) throws IOException {
+		ByteBuffer index = map(sequence, INDEX, MapMode.READ_ONLY);
+		ByteBuffer data = map(sequence, SEGMENT, MapMode.READ_ONLY);
+		if (index == null || data == null)
+			return;
+		int position = 0;
+		for (int entry = 0; entry + INDEX_ENTRY <= index.capacity(); entry += INDEX_ENTRY) {
+			long timestamp = index.getLong(entry);
+			if (timestamp == 0 || timestamp > from)
+				break;
+			position = index.getInt(entry + 8);
+		}
+		while (position + RECORD_HEADER <= data.capacity()) {
+			int length = data.getInt(position);
+			if (length <= 0)
+				break;
+			int body = position + RECORD_HEADER;
+			if (data.getLong(position + 4) >= from) {
+				ByteBuffer record = data.duplicate();
+				record.limit(body + length).position(body);
+				consumer.accept(record.slice());
+			}
+			position = body + length;
+		}
+	}
+
+	private long firstTimestamp(long sequence) throws IOException {
+		ByteBuffer index = map(sequence, INDEX, MapMode.READ_ONLY);
+		return index != null && index.capacity() >= INDEX_ENTRY ? index.getLong(0) : 0;
+	}
+
+	private void write() {
+		List<ByteBuf> batch = new ArrayList<>(BATCH);
+		while (!closed || !queue.isEmpty()) {
+			int written = 0;
+			try {
+				ByteBuf first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null)
+					continue;
+				batch.add(first);
+				queue.drainTo(batch, BATCH - 1);
+				long timestamp = System.currentTimeMillis();
+				for (; written < batch.size(); written++) {
+					ByteBuf record = batch.get(written);
+					write(timestamp, record);
+					record.release();
+				}
+			} catch (InterruptedException e) {
+				// close() interrupts us, the loop condition decides whether there's anything left to do.
+			} catch (IOException e) {
+				// Such as close() interrupting us while a new segment is being mapped.
+				log.error("Failed to write to journal: " + directory, e);
+			} finally {
+				// Whatever's left of the batch, from the record that failed onwards, is dropped.
+				for (int i = written; i < batch.size(); i++) {
+					batch.get(i).release();
+					dropped.increment();
+				}
+				batch.clear();
+			}
+		}
+	}
+
+	private void write(long timestamp, ByteBuf record) throws IOException {
+		if (!record.isReadable())
+			return;
+		// A record has to fit into a segment of its own, end and all.
+		if (record.readableBytes() + RECORD_HEADER + END > segmentSize) {
+			dropped.increment();
+			return;
+		}
+		Segment segment = current;
+		if (!segment.append(timestamp, record)) {
+			// The segment is full, so move onto a new one, and get the old one onto disk.
+			Segment next = new Segment(segment.sequence + 1);
+			current = next;
+			flusher.execute(segment::force);
+			if (!next.append(timestamp, record))
+				dropped.increment();
+		}
+	}
+
+	@Override
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		writer.interrupt();
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// Anything that raced its way into the queue after the writer stopped.
+		ByteBuf leftover;
+		while ((leftover = queue.poll()) != null) {
+			leftover.release();
+			dropped.increment();
+		}
+		flusher.shutdown();
+		current.force();
+	}
+
+	private ByteBuffer map(long sequence, String extension, MapMode mode) throws IOException {
+		Path path = directory.resolve(name(sequence, extension));
+		if (!Files.exists(path))
+			return null;
+		try (FileChannel channel = FileChannel.open(path)) {
+			return channel.map(mode, 0, channel.size());
+		}
+	}
+
+	private static List<Long> sequences(Path directory) throws IOException {
+		List<Long> sequences = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT)) {
+			for (Path path : stream) {
+				String name = path.getFileName().toString();
+				try {
+					sequences.add(Long.parseLong(name.substring(0, name.length() - SEGMENT.length())));
+				} catch (NumberFormatException e) {
+					// Not one of ours.
+				}
+			}
+		}
+		Collections.sort(sequences);
+		return sequences;
+	}
+
+	private static String name(long sequence, String extension) {
+		return String.format("%016d%s", sequence, extension);
+	}
+
+	@Override
+	public String toString() {
+		return "[Journal:" + directory + ']';
+	}
+
+	/**
+	 * A single segment that's being written to. Only the writer thread appends to it.
+	 */
+	private final class Segment {
+		final long sequence;
+		final MappedByteBuffer data;
+		final MappedByteBuffer index;
+
+		int position;
+		int lastIndexed = -indexInterval;
+
+		Segment(long sequence) throws IOException {
+			this.sequence = sequence;
+			data = create(name(sequence, SEGMENT), segmentSize);
+			index = create(name(sequence, INDEX), (segmentSize / indexInterval + 1) * INDEX_ENTRY);
+		}
+
+		private MappedByteBuffer create(String name, int size) throws IOException {
+			try (RandomAccessFile file = new RandomAccessFile(directory.resolve(name).toFile(), "rw")) {
+				file.setLength(size);
+				return file.getChannel().map(MapMode.READ_WRITE, 0, size);
+			}
+		}
+
+		boolean append(long timestamp, ByteBuf record) {
+			int length = record.readableBytes();
+			int start = position;
+			int body = start + RECORD_HEADER;
+			// Always leave room for a zeroed length, so the end of the segment is explicit.
+			if (body + length + END > data.capacity())
+				return false;
+			data.putLong(start + 4, timestamp);
+			data.limit(body + length).position(body);
+			record.getBytes(record.readerIndex(), data);
+			data.clear();
+			// Publish the record.
+			data.putInt(start, length);
+			if (start - lastIndexed >= indexInterval && index.remaining() >= INDEX_ENTRY) {
+				index.putLong(timestamp).putInt(start);
+				lastIndexed = start;
+			}
+			position = body + length;
+			return true;
+		}
+
+		void force() {
+			data.force();
+			index.force();
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package me.jezza.ion.reactive;
+
+/**
+ * The source of the events an {@link EventPublisher} publishes, for subscriptions that would rather pause it than drop anything, see {@link Overflow#PAUSE}.
+ * Every call to {@link #pause()} is eventually followed by exactly one call to {@link #resume()}, and several subscriptions can pause it at once,
+ * so it should only carry on once they've all resumed it.
+ *
+ * @author Jezza
+ */
+public interface Backpressure {
+	/**
+	 * Stops producing events, or at least slows down.
+	 */
+	void pause();
+
+	/**
+	 * Carries on producing events.
+	 */
+	void resume();
+}
@@ -0,0 +1,297 @@
+package me.jezza.ion.reactive;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import me.jezza.ion.bus.EventBus;
+import me.jezza.ion.bus.interfaces.EventSubscriber;
+import me.jezza.ion.bus.interfaces.Registration;
+
+/**
+ * Publishes every event of a single type that's posted to an {@link EventBus}, as a Reactive Streams {@link Publisher}.
+ * <p>
+ * Each subscription subscribes to the bus on its own, and buffers up to {@code capacity} events that its subscriber hasn't requested yet.
+ * What happens once the buffer is full is up to the {@link Overflow} strategy.
+ * Events are handed to the subscriber on whichever thread made them available, either the thread that posted the event, or the thread that requested it.
+ * <p>
+ * Subscribers only see events that were posted after they subscribed. Once the publisher is closed, every subscriber completes as soon as it has drained its buffer.
+ * <p>
+ * Buffered events are retained, see {@link me.jezza.ion.bus.interfaces.TransientEvent}, and released once {@link Subscriber#onNext(Object)} returns,
+ * so a subscriber that holds onto a transient event any longer has to retain it itself.
+ *
+ * @param <T> - The type of events.
+ * @author Jezza
+ */
+public final class EventPublisher<T> implements Publisher<T>, AutoCloseable {
+	private final EventBus bus;
+	private final Class<T> type;
+	private final int capacity;
+	private final Overflow overflow;
+	private final Backpressure backpressure;
+
+	private final Set<EventSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+	private final AtomicLong dropped = new AtomicLong();
+	private volatile boolean closed;
+
+	/**
+	 * @param bus      - The bus the events are posted to.
+	 * @param type     - The type of events. (Along with every subtype)
+	 * @param capacity - How many events each subscription buffers.
+	 * @param overflow - What each subscription does once its buffer is full, it can't be {@link Overflow#PAUSE}, as there's nothing to pause.
+	 */
+	public EventPublisher(EventBus bus, Class<T> type, int capacity, Overflow overflow) {
+		this(bus, type, capacity, overflow, null);
+	}
+
+	/**
+	 * @param bus          - The bus the events are posted to.
+	 * @param type         - The type of events. (Along with every subtype)
+	 * @param capacity     - How many events each subscription buffers.
+	 * @param overflow     - What each subscription does once its buffer is full.
+	 * @param backpressure - What's paused once a buffer is full, if the strategy is {@link Overflow#PAUSE}, otherwise it can be null.
+	 */
+	public EventPublisher(EventBus bus, Class<T> type, int capacity, Overflow overflow, Backpressure backpressure) {
+		this.bus = Objects.requireNonNull(bus, "Argument 'bus' may not be null.");
+		this.type = Objects.requireNonNull(type, "Argument 'type' may not be null.");
+		this.overflow = Objects.requireNonNull(overflow, "Argument 'overflow' may not be null.");
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		if (overflow == Overflow.PAUSE && backpressure == null)
+			throw new IllegalArgumentException("Overflow.PAUSE needs something to pause.");
+		this.capacity = capacity;
+		this.backpressure = backpressure;
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super T> subscriber) {
+		Objects.requireNonNull(subscriber, "Argument 'subscriber' may not be null.");
+		EventSubscription subscription = new EventSubscription(subscriber);
+		subscriptions.add(subscription);
+		subscriber.onSubscribe(subscription);
+		// Only subscribe once the subscriber knows about the subscription, so nothing is signalled before onSubscribe.
+		Registration registration = bus.subscribe(type, subscription);
+		subscription.registration = registration;
+		if (subscription.cancelled)
+			registration.close();
+		// It might have been closed before we were added, in which case, nobody completed us.
+		if (closed)
+			subscription.complete();
+	}
+
+	/**
+	 * @return - How many events have been dropped across every subscription, (including the ones that have since ended) because their buffer was full.
+	 */
+	public long dropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Completes every subscription, once it has drained its buffer. Anyone that subscribes afterwards is completed straight away.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (EventSubscription subscription : subscriptions)
+			subscription.complete();
+	}
+
+	@Override
+	public String toString() {
+		return "[EventPublisher:" + type.getName() + ']';
+	}
+
+	private final class EventSubscription implements Subscription, EventSubscriber {
+		private final Subscriber<? super T> downstream;
+
+		/**
+		 * Guarded by this.
+		 */
+		private final ArrayDeque<T> buffer = new ArrayDeque<>();
+		/**
+		 * true if we've paused the source, guarded by this.
+		 */
+		private boolean paused;
+
+		private final AtomicLong requested = new AtomicLong();
+		/**
+		 * How many times the subscription was asked to drain, while it was already draining. Only whoever takes it from 0 drains.
+		 */
+		private final AtomicInteger wip = new AtomicInteger();
+
+		private volatile boolean done;
+		private volatile Throwable error;
+		private volatile boolean cancelled;
+
+		volatile Registration registration;
+
+		EventSubscription(Subscriber<? super T> downstream) {
+			this.downstream = downstream;
+		}
+
+		@Override
+		public void handle(Object event) {
+			boolean pause = false;
+			synchronized (this) {
+				if (done || cancelled)
+					return;
+				if (buffer.size() >= capacity) {
+					switch (overflow) {
+						case DROP_OLDEST:
+							EventBus.release(buffer.poll());
+							dropped.incrementAndGet();
+							break;
+						case DROP_LATEST:
+							dropped.incrementAndGet();
+							return;
+						case ERROR:
+							clear();
+							error = new IllegalStateException("Subscriber of " + EventPublisher.this + " fell more than " + capacity + " events behind.");
+							done = true;
+							break;
+						case PAUSE:
+							pause = !paused;
+							paused = true;
+							break;
+					}
+				}
+				// It's only handed on once it's requested, which is usually after the post has returned.
+				if (!done)
+					buffer.offer(type.cast(EventBus.retain(event)));
+			}
+			if (pause)
+				backpressure.pause();
+			drain();
+		}
+
+		/**
+		 * Events are only ever buffered here, so it's safe to hand it several at once, from different threads.
+		 */
+		@Override
+		public boolean isThreadSafe() {
+			return true;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				synchronized (this) {
+					clear();
+				}
+				error = new IllegalArgumentException("Rule 3.9: Requested a non-positive number of events: " + n);
+				done = true;
+			} else {
+				long current;
+				do {
+					current = requested.get();
+					if (current == Long.MAX_VALUE)
+						break;
+				} while (!requested.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+			}
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			if (!cancelled) {
+				cancelled = true;
+				release();
+			}
+		}
+
+		void complete() {
+			done = true;
+			drain();
+		}
+
+		private void drain() {
+			if (wip.getAndIncrement() != 0)
+				return;
+			int missed = 1;
+			do {
+				long requested = this.requested.get();
+				long emitted = 0;
+				while (emitted != requested && !cancelled) {
+					T next;
+					boolean resume = false;
+					synchronized (this) {
+						next = buffer.poll();
+						if (paused && buffer.size() <= capacity / 2) {
+							paused = false;
+							resume = true;
+						}
+					}
+					if (resume)
+						backpressure.resume();
+					if (next == null)
+						break;
+					try {
+						downstream.onNext(next);
+					} catch (RuntimeException | Error e) {
+						// Rule 2.13: The subscriber is broken, so it's as good as cancelled.
+						cancel();
+						throw e;
+					} finally {
+						EventBus.release(next);
+					}
+					emitted++;
+				}
+				if (emitted != 0 && requested != Long.MAX_VALUE)
+					this.requested.addAndGet(-emitted);
+				if (cancelled)
+					return;
+				if (done) {
+					Throwable error = this.error;
+					boolean empty;
+					synchronized (this) {
+						empty = buffer.isEmpty();
+					}
+					if (error != null || empty) {
+						cancelled = true;
+						release();
+						if (error != null) {
+							downstream.onError(error);
+						} else {
+							downstream.onComplete();
+						}
+						return;
+					}
+				}
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		/**
+		 * Guarded by this.
+		 */
+		private void clear() {
+			T event;
+			while ((event = buffer.poll()) != null)
+				EventBus.release(event);
+		}
+
+		/**
+		 * Unsubscribes from the bus, and lets go of the source, if we paused it.
+		 */
+		private void release() {
+			Registration registration = this.registration;
+			if (registration != null)
+				registration.close();
+			subscriptions.remove(this);
+			boolean resume;
+			synchronized (this) {
+				clear();
+				resume = paused;
+				paused = false;
+			}
+			if (resume)
+				backpressure.resume();
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package me.jezza.ion.reactive;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import me.jezza.ion.Ion;
+
+/**
+ * A Reactive Streams {@link Subscriber} that posts everything it receives to a cluster, in batches, see {@link Ion#postAll(java.util.Collection)}.
+ * <p>
+ * A batch is posted once it's full, or once its first event has waited for {@code linger}, whichever comes first.
+ * The sink only ever requests two batches worth of events, and requests more as batches are actually sent,
+ * so a publisher can't get any further ahead of the network than that.
+ * <p>
+ * If a batch can't be sent, the subscription is cancelled, and {@link #done()} fails.
+ *
+ * @param <T> - The type of events.
+ * @author Jezza
+ */
+public final class IonSink<T extends Serializable> implements Subscriber<T> {
+	private final Ion ion;
+	private final int batchSize;
+	private final long linger;
+	private final ScheduledExecutorService scheduler;
+
+	private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+	private volatile Subscription subscription;
+
+	/**
+	 * Guarded by this.
+	 */
+	private List<T> batch;
+	private ScheduledFuture<?> lingering;
+	/** how many batches are on their way */
+	private int sending;
+	/** true once the publisher is done with us */
+	private boolean completed;
+
+	/**
+	 * @param ion       - Where the events are posted.
+	 * @param batchSize - The most events that are posted at once.
+	 * @param linger    - How long an event can wait for its batch to fill up. 0 to never wait.
+	 * @param unit      - The unit of {@code linger}.
+	 * @param scheduler - Posts every batch, it has to be single-threaded, so batches are sent in order. Ideally, it's the event loop of the {@link Ion}, see {@link Ion#sink(int, long, TimeUnit)}.
+	 */
+	public IonSink(Ion ion, int batchSize, long linger, TimeUnit unit, ScheduledExecutorService scheduler) {
+		this.ion = Objects.requireNonNull(ion, "Argument 'ion' may not be null.");
+		this.scheduler = Objects.requireNonNull(scheduler, "Argument 'scheduler' may not be null.");
+		if (batchSize < 1)
+			throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+		if (linger < 0)
+			throw new IllegalArgumentException("Linger can't be negative: " + linger);
+		this.batchSize = batchSize;
+		this.linger = unit.toNanos(linger);
+		batch = new ArrayList<>(batchSize);
+	}
+
+	@Override
+	public void onSubscribe(Subscription subscription) {
+		Objects.requireNonNull(subscription, "Argument 'subscription' may not be null.");
+		// Rule 2.5: We can only ever have a single subscription.
+		if (this.subscription != null || done.isDone()) {
+			subscription.cancel();
+			return;
+		}
+		this.subscription = subscription;
+		subscription.request(2L * batchSize);
+	}
+
+	@Override
+	public void onNext(T event) {
+		Objects.requireNonNull(event, "Argument 'event' may not be null.");
+		synchronized (this) {
+			batch.add(event);
+			if (batch.size() >= batchSize || linger == 0) {
+				send(take());
+			} else if (batch.size() == 1) {
+				lingering = scheduler.schedule(this::flush, linger, TimeUnit.NANOSECONDS);
+			}
+		}
+	}
+
+	@Override
+	public void onError(Throwable t) {
+		Objects.requireNonNull(t, "Argument 't' may not be null.");
+		flush();
+		done.completeExceptionally(t);
+	}
+
+	@Override
+	public void onComplete() {
+		flush();
+		synchronized (this) {
+			completed = true;
+			if (sending != 0)
+				return;
+		}
+		done.complete(null);
+	}
+
+	/**
+	 * Stops receiving events, and posts whatever's already been received.
+	 */
+	public void cancel() {
+		Subscription subscription = this.subscription;
+		if (subscription != null)
+			subscription.cancel();
+		onComplete();
+	}
+
+	/**
+	 * @return - A future that completes once the publisher has completed, and everything it published was sent.
+	 */
+	public CompletableFuture<Void> done() {
+		return done;
+	}
+
+	private synchronized void flush() {
+		if (!batch.isEmpty())
+			send(take());
+	}
+
+	/**
+	 * Guarded by this.
+	 */
+	private List<T> take() {
+		if (lingering != null) {
+			lingering.cancel(false);
+			lingering = null;
+		}
+		List<T> batch = this.batch;
+		this.batch = new ArrayList<>(batchSize);
+		return batch;
+	}
+
+	/**
+	 * Guarded by this, so batches are handed to the scheduler in the order they were taken.
+	 * They're only ever sent from the scheduler, as a batch that's sent from any other thread is queued behind the ones the event loop sends itself.
+	 */
+	private void send(List<T> batch) {
+		sending++;
+		scheduler.execute(() -> ion.postAll(batch).addListener(future -> {
+			boolean finished;
+			synchronized (this) {
+				finished = --sending == 0 && completed;
+			}
+			if (!future.isSuccess()) {
+				Subscription subscription = this.subscription;
+				if (subscription != null)
+					subscription.cancel();
+				done.completeExceptionally(future.cause());
+			} else if (finished) {
+				done.complete(null);
+			} else {
+				subscription.request(batch.size());
+			}
+		}));
+	}
+
+	@Override
+	public String toString() {
+		return "[IonSink:" + ion + ']';
+	}
+}
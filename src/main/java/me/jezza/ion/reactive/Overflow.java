@@ -0,0 +1,27 @@
+package me.jezza.ion.reactive;
+
+/**
+ * What an {@link EventPublisher} does with an event that arrives while a subscription's buffer is full.
+ *
+ * @author Jezza
+ */
+public enum Overflow {
+	/**
+	 * The oldest buffered event is dropped to make room, so the subscriber always sees the latest events.
+	 */
+	DROP_OLDEST,
+	/**
+	 * The new event is dropped, so the subscriber sees an unbroken prefix of the stream.
+	 */
+	DROP_LATEST,
+	/**
+	 * The subscription fails with an {@link IllegalStateException}, and everything that was buffered is discarded.
+	 */
+	ERROR,
+	/**
+	 * The event is buffered anyway, and whoever produces the events is asked to stop, see {@link Backpressure}.
+	 * They're asked to carry on once the subscriber has drained half of the buffer.
+	 * The buffer can only grow beyond its capacity by however many events were already on their way.
+	 */
+	PAUSE
+}
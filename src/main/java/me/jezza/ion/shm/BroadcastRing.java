@@ -0,0 +1,300 @@
+package me.jezza.ion.shm;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.util.Objects;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import me.jezza.ion.utils.Bypass;
+import sun.misc.Unsafe;
+
+/**
+ * A single-writer, many-reader broadcast ring buffer over a memory-mapped file, meant to live in shared memory (/dev/shm).
+ * <p>
+ * The writer never waits on readers. Every reader keeps its own cursor, and a reader that falls more than a lap behind
+ * (or is overtaken while it's copying a record) skips ahead to the writer, counting what it lost, see {@link #lost()}.
+ * Handing a record from the writer to a reader is just a couple of ordered stores and volatile loads, no syscalls are involved.
+ * <p>
+ * Layout of the file:
+ * <pre>
+ * 0    long  magic (written last, so an attaching reader never sees a half-initialised header)
+ * 8    int   capacity of the data region (a power of two)
+ * 12   int   length of the metadata
+ * 16   ...   metadata, up to {@link #METADATA_MAX} bytes
+ * 256  long  tail intent: where the tail will be, once the record that's currently being written is done
+ * 320  long  tail
+ * 384  long  heartbeat: the last time the writer said it was alive, in milliseconds since the epoch
+ * 512  ...   data
+ * </pre>
+ * Each record is {@code [int length][int type][payload]}, aligned to 8 bytes, where the length includes the record header.
+ * A record that doesn't fit before the end of the data region is preceded by a padding record that fills it, so records never wrap.
+ *
+ * @author Jezza
+ */
+public final class BroadcastRing {
+	public static final int METADATA_MAX = 240;
+
+	private static final Unsafe UNSAFE = Bypass.UNSAFE;
+	private static final long ADDRESS;
+
+	private static final long MAGIC = 0x49_6F_6E_52_69_6E_67_01L;
+
+	private static final int MAGIC_OFFSET = 0;
+	private static final int CAPACITY_OFFSET = 8;
+	private static final int METADATA_LENGTH_OFFSET = 12;
+	private static final int METADATA_OFFSET = 16;
+	private static final int TAIL_INTENT_OFFSET = 256;
+	private static final int TAIL_OFFSET = 320;
+	private static final int HEARTBEAT_OFFSET = 384;
+	private static final int DATA_OFFSET = 512;
+
+	private static final int RECORD_HEADER = 8;
+	private static final int MESSAGE = 1;
+	private static final int PADDING = 2;
+
+	static {
+		try {
+			Field address = Buffer.class.getDeclaredField("address");
+			ADDRESS = UNSAFE.objectFieldOffset(address);
+		} catch (NoSuchFieldException e) {
+			throw new IllegalStateException("Failed to locate Buffer.address", e);
+		}
+	}
+
+	private final Path path;
+	private final MappedByteBuffer buffer;
+	/** the address of the start of the file */
+	private final long address;
+	private final int capacity;
+	private final int mask;
+	private final ByteBuffer view;
+
+	/** writer: where the next record goes, reader: where the next record is read from */
+	private long position;
+	private long lost;
+
+	private BroadcastRing(Path path, MappedByteBuffer buffer, int capacity) {
+		this.path = path;
+		this.buffer = buffer;
+		this.capacity = capacity;
+		address = UNSAFE.getLong(buffer, ADDRESS);
+		mask = capacity - 1;
+		view = buffer.duplicate();
+	}
+
+	/**
+	 * Creates (or replaces) the ring at the given path, ready to be written to.
+	 *
+	 * @param path     - The file backing the ring.
+	 * @param capacity - The capacity of the data region, it has to be a power of two.
+	 * @param metadata - Anything readers should know about the writer, up to {@link #METADATA_MAX} bytes.
+	 */
+	public static BroadcastRing create(Path path, int capacity, byte[] metadata) throws IOException {
+		Objects.requireNonNull(path, "Argument 'path' may not be null.");
+		if (capacity < 64 || Integer.bitCount(capacity) != 1)
+			throw new IllegalArgumentException("Capacity must be a power of two, and at least 64: " + capacity);
+		if (metadata.length > METADATA_MAX)
+			throw new IllegalArgumentException("Metadata can't be longer than " + METADATA_MAX + " bytes: " + metadata.length);
+		MappedByteBuffer buffer;
+		try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+			file.setLength(0);
+			file.setLength(DATA_OFFSET + capacity);
+			buffer = file.getChannel().map(MapMode.READ_WRITE, 0, DATA_OFFSET + capacity);
+		}
+		BroadcastRing ring = new BroadcastRing(path, buffer, capacity);
+		buffer.putInt(CAPACITY_OFFSET, capacity);
+		buffer.putInt(METADATA_LENGTH_OFFSET, metadata.length);
+		for (int i = 0; i < metadata.length; i++)
+			buffer.put(METADATA_OFFSET + i, metadata[i]);
+		ring.heartbeat();
+		UNSAFE.putOrderedLong(null, ring.address + MAGIC_OFFSET, MAGIC);
+		return ring;
+	}
+
+	/**
+	 * Attaches to an existing ring, ready to be read from. Reading starts at the current tail, so only records written from now on are read.
+	 *
+	 * @return - The ring, or null if the file isn't a (fully initialised) ring.
+	 */
+	public static BroadcastRing attach(Path path) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(path)) {
+			if (channel.size() < DATA_OFFSET)
+				return null;
+			buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (UNSAFE.getLongVolatile(null, UNSAFE.getLong(buffer, ADDRESS) + MAGIC_OFFSET) != MAGIC)
+			return null;
+		int capacity = buffer.getInt(CAPACITY_OFFSET);
+		if (Integer.bitCount(capacity) != 1 || DATA_OFFSET + (long) capacity > buffer.capacity())
+			return null;
+		BroadcastRing ring = new BroadcastRing(path, buffer, capacity);
+		ring.position = UNSAFE.getLongVolatile(null, ring.address + TAIL_OFFSET);
+		return ring;
+	}
+
+	/**
+	 * Reads the heartbeat of the ring at the given path, straight from its header, without mapping the whole file.
+	 *
+	 * @return - The last time the writer of the ring said it was alive, in milliseconds since the epoch, or -1 if the file isn't a (fully initialised) ring.
+	 */
+	public static long lastHeartbeat(Path path) throws IOException {
+		// Both are written through Unsafe, so they're in native order.
+		ByteBuffer header = ByteBuffer.allocate(HEARTBEAT_OFFSET + 8).order(ByteOrder.nativeOrder());
+		try (FileChannel channel = FileChannel.open(path)) {
+			if (channel.size() < DATA_OFFSET)
+				return -1;
+			while (header.hasRemaining()) {
+				if (channel.read(header) == -1)
+					return -1;
+			}
+		}
+		return header.getLong(MAGIC_OFFSET) == MAGIC ? header.getLong(HEARTBEAT_OFFSET) : -1;
+	}
+
+	public Path path() {
+		return path;
+	}
+
+	public byte[] metadata() {
+		int length = Math.min(buffer.getInt(METADATA_LENGTH_OFFSET), METADATA_MAX);
+		byte[] metadata = new byte[Math.max(length, 0)];
+		for (int i = 0; i < metadata.length; i++)
+			metadata[i] = buffer.get(METADATA_OFFSET + i);
+		return metadata;
+	}
+
+	/**
+	 * Writer only: Marks the writer as alive.
+	 */
+	public void heartbeat() {
+		UNSAFE.putOrderedLong(null, address + HEARTBEAT_OFFSET, System.currentTimeMillis());
+	}
+
+	/**
+	 * @return - The last time the writer said it was alive, in milliseconds since the epoch.
+	 */
+	public long lastHeartbeat() {
+		return UNSAFE.getLongVolatile(null, address + HEARTBEAT_OFFSET);
+	}
+
+	/**
+	 * Writer only: Appends the readable bytes of the given buffer as a single record. The buffer itself isn't modified.
+	 *
+	 * @return - false if the record is too big for the ring.
+	 */
+	public synchronized boolean write(ByteBuf src) {
+		int length = src.readableBytes();
+		int record = align(RECORD_HEADER + length);
+		// Anything bigger than half the ring would lap readers the moment it's written.
+		if (record > capacity >> 1)
+			return false;
+		long tail = position;
+		int index = (int) (tail & mask);
+		int remaining = capacity - index;
+		if (record > remaining) {
+			intend(tail + remaining + record);
+			UNSAFE.putInt(null, address + DATA_OFFSET + index, remaining);
+			UNSAFE.putInt(null, address + DATA_OFFSET + index + 4, PADDING);
+			tail += remaining;
+			index = 0;
+		} else {
+			intend(tail + record);
+		}
+		UNSAFE.putInt(null, address + DATA_OFFSET + index, RECORD_HEADER + length);
+		UNSAFE.putInt(null, address + DATA_OFFSET + index + 4, MESSAGE);
+		int body = DATA_OFFSET + index + RECORD_HEADER;
+		view.limit(body + length).position(body);
+		src.getBytes(src.readerIndex(), view);
+		tail += record;
+		// Publish the record.
+		UNSAFE.putOrderedLong(null, address + TAIL_OFFSET, tail);
+		position = tail;
+		return true;
+	}
+
+	private void intend(long tail) {
+		UNSAFE.putOrderedLong(null, address + TAIL_INTENT_OFFSET, tail);
+		// Readers have to be able to see the intent before they can see any of the bytes it's about to overwrite.
+		UNSAFE.storeFence();
+	}
+
+	/**
+	 * Reader only: Copies the next record into a new buffer.
+	 *
+	 * @return - The record, or null if there's nothing new to read.
+	 */
+	public ByteBuf read(ByteBufAllocator allocator) {
+		while (true) {
+			long cursor = position;
+			long tail = UNSAFE.getLongVolatile(null, address + TAIL_OFFSET);
+			if (cursor >= tail)
+				return null;
+			if (tail - cursor > capacity) {
+				skip(tail);
+				continue;
+			}
+			int index = (int) (cursor & mask);
+			int length = UNSAFE.getInt(null, address + DATA_OFFSET + index);
+			int type = UNSAFE.getInt(null, address + DATA_OFFSET + index + 4);
+			if (overtaken(cursor) || length < RECORD_HEADER || length > capacity - index) {
+				skip(tail);
+				continue;
+			}
+			if (type == PADDING) {
+				position = cursor + length;
+				continue;
+			}
+			int body = DATA_OFFSET + index + RECORD_HEADER;
+			int size = length - RECORD_HEADER;
+			ByteBuf copy = allocator.buffer(size);
+			view.limit(body + size).position(body);
+			copy.writeBytes(view);
+			if (overtaken(cursor)) {
+				copy.release();
+				skip(UNSAFE.getLongVolatile(null, address + TAIL_OFFSET));
+				continue;
+			}
+			position = cursor + align(length);
+			return copy;
+		}
+	}
+
+	/**
+	 * @return - true if the writer might have written over the record at the given position.
+	 */
+	private boolean overtaken(long cursor) {
+		UNSAFE.loadFence();
+		return UNSAFE.getLongVolatile(null, address + TAIL_INTENT_OFFSET) - cursor > capacity;
+	}
+
+	private void skip(long tail) {
+		lost++;
+		position = tail;
+	}
+
+	/**
+	 * Reader only: @return - How many times this reader fell behind, and had to skip ahead to the writer.
+	 */
+	public long lost() {
+		return lost;
+	}
+
+	private static int align(int length) {
+		return (length + 7) & ~7;
+	}
+
+	@Override
+	public String toString() {
+		return "[BroadcastRing:" + path + ']';
+	}
+}
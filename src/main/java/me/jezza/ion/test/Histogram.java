@@ -0,0 +1,108 @@
+package me.jezza.ion.test;
+
+/**
+ * A log-linear histogram of non-negative values, such as latencies in nanoseconds.
+ * <p>
+ * Values under 64 are exact. Past that, every power of two is split into 32 buckets, so any value it reports is within about 3% of the real one.
+ * It never allocates once it's created, and histograms of separate processes can be merged, bucket by bucket.
+ *
+ * @author Jezza
+ */
+final class Histogram {
+	private static final int EXACT = 64;
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = EXACT + (63 - 6) * SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKETS];
+	private long total;
+	private long max;
+
+	void record(long value) {
+		if (value < 0)
+			value = 0;
+		counts[index(value)]++;
+		total++;
+		if (value > max)
+			max = value;
+	}
+
+	void merge(Histogram other) {
+		for (int i = 0; i < BUCKETS; i++)
+			counts[i] += other.counts[i];
+		total += other.total;
+		if (other.max > max)
+			max = other.max;
+	}
+
+	long total() {
+		return total;
+	}
+
+	long max() {
+		return max;
+	}
+
+	/**
+	 * @param percentile - Between 0 and 100.
+	 * @return - The value that the given percentage of the recorded values are at, or under. 0 if nothing was recorded.
+	 */
+	long percentile(double percentile) {
+		if (total == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(value(i), max);
+		}
+		return max;
+	}
+
+	/**
+	 * @return - Every bucket that isn't empty, as "index:count,index:count", followed by the max, see {@link #decode(String)}.
+	 */
+	String encode() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(max);
+		for (int i = 0; i < BUCKETS; i++) {
+			if (counts[i] != 0)
+				builder.append(',').append(i).append(':').append(counts[i]);
+		}
+		return builder.toString();
+	}
+
+	static Histogram decode(String encoded) {
+		Histogram histogram = new Histogram();
+		String[] parts = encoded.split(",");
+		histogram.max = Long.parseLong(parts[0]);
+		for (int i = 1; i < parts.length; i++) {
+			int split = parts[i].indexOf(':');
+			long count = Long.parseLong(parts[i].substring(split + 1));
+			histogram.counts[Integer.parseInt(parts[i].substring(0, split))] = count;
+			histogram.total += count;
+		}
+		return histogram;
+	}
+
+	private static int index(long value) {
+		if (value < EXACT)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return EXACT + (exponent - 6) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * @return - The highest value that falls into the given bucket.
+	 */
+	private static long value(int index) {
+		if (index < EXACT)
+			return index;
+		int exponent = (index - EXACT) / SUB_BUCKETS + 6;
+		int sub = (index - EXACT) % SUB_BUCKETS;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		return ((SUB_BUCKETS + sub) * width) + width - 1;
+	}
+}
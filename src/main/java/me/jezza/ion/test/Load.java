@@ -0,0 +1,429 @@
+package me.jezza.ion.test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import me.jezza.ion.Ion;
+
+/**
+ * A load generator, and soak tool, for a cluster.
+ * <p>
+ * It launches a number of sender, and receiver, processes on this host, all in the same cluster, and has the senders post as fast as they're told to, for as long as they're told to.
+ * Once they're done, and the receivers have drained, it reports the sustained throughput, the loss, the duplicates, and the latency percentiles of every receiver,
+ * as JSON, so runs can be compared over time.
+ * <pre>
+ * java -cp ... me.jezza.ion.test.Load --senders 2 --receivers 2 --rate 20000 --sizes 64,512,1400 --mix event:3,sample:1 --duration 60 --out run.json
+ * </pre>
+ * Options:
+ * <ul>
+ * <li>--senders (1), --receivers (1): How many processes of each.</li>
+ * <li>--name (load), --port (5000): The cluster.</li>
+ * <li>--interface: The network interface, lo for loopback. (Default: The first one that's up)</li>
+ * <li>--rate (0): How many messages each sender posts a second, 0 for as fast as it can.</li>
+ * <li>--sizes (64): The payload sizes of events, in bytes. Each event picks one at random.</li>
+ * <li>--mix (event:1): The weights of the kinds of message, either event ({@link LoadEvent}), or sample (A {@link me.jezza.ion.bus.LongChannel} sample, which ignores the sizes).</li>
+ * <li>--duration (30), --warmup (5), --drain (2): In seconds. Nothing sent during the warmup counts towards latency, as every process starts out cold.</li>
+ * <li>--window (4096): The most posts a sender has in flight, which keeps an unlimited rate from buffering without bound.</li>
+ * <li>--receive-buffer (8388608): SO_RCVBUF of the receivers.</li>
+ * <li>--interval (5): How often, in seconds, the receivers report their progress, on stderr. 0 to never.</li>
+ * <li>--out: Where the JSON goes. (Default: stdout)</li>
+ * </ul>
+ * Every process is started with the same JVM arguments as this one, so system properties, such as {@code -Dion.shm.enabled=false}, apply to all of them.
+ * Shared memory is off by default. Enabling it ({@code -Dion.shm.enabled=true}) lets processes on the same host hear each other sooner, but frames are still multicast as well,
+ * (The second copy is dropped as a duplicate) so it doesn't take the network out of the results.
+ * <p>
+ * Latency is measured with {@link System#nanoTime()}, which is only comparable between processes on the same host, which is why everything runs on this host.
+ *
+ * @author Jezza
+ */
+public final class Load {
+	static final String SENDER = "sender";
+	static final String RECEIVER = "receiver";
+
+	/**
+	 * Every line a sender or receiver writes to stdout that starts with this is meant for us. Everything else is passed through.
+	 */
+	static final String PREFIX = "@";
+
+	private Load() {
+		throw new IllegalStateException();
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0 && (args[0].equals(SENDER) || args[0].equals(RECEIVER))) {
+			int id = Integer.parseInt(args[1]);
+			Options options = Options.parse(args, 2);
+			if (args[0].equals(SENDER)) {
+				LoadSender.run(id, options);
+			} else {
+				LoadReceiver.run(id, options);
+			}
+			return;
+		}
+		coordinate(args, Options.parse(args, 0));
+	}
+
+	/**
+	 * Starts the node a sender, or receiver, posts to, or receives from.
+	 */
+	static Ion join(Options options, boolean receiver) throws Exception {
+		Ion.Builder builder = Ion.builder()
+				.name(options.name)
+				.port(options.port);
+		if (options.networkInterface != null)
+			builder.networkInterface(options.networkInterface);
+		if (receiver)
+			builder.receiveBufferSize(options.receiveBuffer);
+		return builder.start().get(30, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Blocks until the coordinator sends the given command, on stdin.
+	 *
+	 * @return - The command, split on spaces.
+	 */
+	static String[] await(BufferedReader in, String command) throws IOException {
+		String line;
+		while ((line = in.readLine()) != null) {
+			String[] parts = line.trim().split(" ");
+			if (parts[0].equals(command))
+				return parts;
+		}
+		throw new IOException("The coordinator is gone.");
+	}
+
+	private static void coordinate(String[] args, Options options) throws Exception {
+		List<Child> receivers = new ArrayList<>();
+		List<Child> senders = new ArrayList<>();
+		try {
+			for (int i = 0; i < options.receivers; i++)
+				receivers.add(new Child(RECEIVER, i, args));
+			for (int i = 0; i < options.senders; i++)
+				senders.add(new Child(SENDER, i, args));
+			List<Child> children = new ArrayList<>(receivers);
+			children.addAll(senders);
+			for (Child child : children)
+				child.expect("ready", 30);
+
+			long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+			for (Child child : children)
+				child.send("start " + start);
+			System.err.println("Running for " + options.duration + "s...");
+
+			long sent = 0;
+			for (Child child : senders)
+				sent += Long.parseLong(child.expect("sent", options.duration + 60)[1]);
+			TimeUnit.SECONDS.sleep(options.drain);
+
+			List<Result> results = new ArrayList<>();
+			for (Child child : receivers) {
+				child.send("stop");
+				String[] result = child.expect("result", 30);
+				results.add(new Result(child.id, Long.parseLong(result[1]), Long.parseLong(result[2]), Long.parseLong(result[3]), Histogram.decode(result[4])));
+			}
+			report(options, sent, results);
+		} finally {
+			for (Child child : receivers)
+				child.process.destroy();
+			for (Child child : senders)
+				child.process.destroy();
+		}
+	}
+
+	private static void report(Options options, long sent, List<Result> results) throws IOException {
+		Histogram overall = new Histogram();
+		long received = 0;
+		long unique = 0;
+		long duplicates = 0;
+		StringBuilder json = new StringBuilder();
+		json.append("{\n");
+		json.append("  \"timestamp\": \"").append(Instant.now()).append("\",\n");
+		json.append("  \"options\": ").append(options.json()).append(",\n");
+		json.append("  \"sent\": ").append(sent).append(",\n");
+		json.append("  \"sendRate\": ").append(format(sent / (double) options.duration)).append(",\n");
+		json.append("  \"receivers\": [\n");
+		for (int i = 0; i < results.size(); i++) {
+			Result result = results.get(i);
+			overall.merge(result.latency);
+			received += result.received;
+			unique += result.unique;
+			duplicates += result.duplicates;
+			json.append("    ").append(result(result.id, sent, result.received, result.unique, result.duplicates, result.latency, options));
+			json.append(i + 1 < results.size() ? ",\n" : "\n");
+		}
+		json.append("  ],\n");
+		json.append("  \"total\": ").append(result(-1, sent * results.size(), received, unique, duplicates, overall, options)).append('\n');
+		json.append("}\n");
+
+		if (options.out == null) {
+			System.out.print(json);
+		} else {
+			try (Writer writer = Files.newBufferedWriter(Paths.get(options.out), StandardCharsets.UTF_8)) {
+				writer.write(json.toString());
+			}
+			System.err.println("Results written to " + options.out);
+		}
+	}
+
+	private static String result(int id, long expected, long received, long unique, long duplicates, Histogram latency, Options options) {
+		long lost = Math.max(0, expected - unique);
+		StringBuilder json = new StringBuilder("{");
+		if (id >= 0)
+			json.append("\"id\": ").append(id).append(", ");
+		json.append("\"received\": ").append(received)
+				.append(", \"unique\": ").append(unique)
+				.append(", \"duplicates\": ").append(duplicates)
+				.append(", \"lost\": ").append(lost)
+				.append(", \"loss\": ").append(format(expected == 0 ? 0 : lost / (double) expected))
+				.append(", \"throughput\": ").append(format(unique / (double) options.duration))
+				.append(", \"latencyMicros\": {")
+				.append("\"samples\": ").append(latency.total())
+				.append(", \"p50\": ").append(micros(latency.percentile(50)))
+				.append(", \"p99\": ").append(micros(latency.percentile(99)))
+				.append(", \"p99.9\": ").append(micros(latency.percentile(99.9)))
+				.append(", \"max\": ").append(micros(latency.max()))
+				.append("}}");
+		return json.toString();
+	}
+
+	private static String micros(long nanos) {
+		return format(nanos / 1000D);
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+
+	/**
+	 * A sender, or receiver, process.
+	 */
+	private static final class Child {
+		final String role;
+		final int id;
+		final Process process;
+		final PrintStream in;
+		final BlockingQueue<String[]> lines = new LinkedBlockingQueue<>();
+
+		Child(String role, int id, String[] args) throws IOException {
+			this.role = role;
+			this.id = id;
+			List<String> command = new ArrayList<>();
+			command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+			command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(Load.class.getName());
+			command.add(role);
+			command.add(Integer.toString(id));
+			for (String arg : args)
+				command.add(arg);
+			process = new ProcessBuilder(command)
+					.redirectError(ProcessBuilder.Redirect.INHERIT)
+					.start();
+			in = new PrintStream(process.getOutputStream(), true, "UTF-8");
+			Thread reader = new Thread(this::read, role + '-' + id);
+			reader.setDaemon(true);
+			reader.start();
+		}
+
+		void send(String line) {
+			in.println(line);
+		}
+
+		/**
+		 * @return - The next line meant for us, split on spaces. The first part is always the given type.
+		 */
+		String[] expect(String type, long timeout) throws IOException, InterruptedException {
+			String[] line = lines.poll(timeout, TimeUnit.SECONDS);
+			if (line == null)
+				throw new IOException(this + " didn't report '" + type + "' within " + timeout + "s.");
+			if (line.length == 0)
+				throw new IOException(this + " exited with " + process.waitFor() + ", instead of reporting '" + type + "'.");
+			if (!line[0].equals(type))
+				throw new IOException(this + " reported '" + line[0] + "', instead of '" + type + "'.");
+			return line;
+		}
+
+		private void read() {
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.startsWith(PREFIX)) {
+						lines.add(line.substring(PREFIX.length()).split(" "));
+					} else {
+						System.err.println('[' + role + '-' + id + "] " + line);
+					}
+				}
+			} catch (IOException ignored) {
+			}
+			// Wakes up whoever's waiting, the process is gone.
+			lines.add(new String[0]);
+		}
+
+		@Override
+		public String toString() {
+			return role + '-' + id;
+		}
+	}
+
+	private static final class Result {
+		final int id;
+		final long received;
+		final long unique;
+		final long duplicates;
+		final Histogram latency;
+
+		Result(int id, long received, long unique, long duplicates, Histogram latency) {
+			this.id = id;
+			this.received = received;
+			this.unique = unique;
+			this.duplicates = duplicates;
+			this.latency = latency;
+		}
+	}
+
+	static final class Options {
+		int senders = 1;
+		int receivers = 1;
+		String name = "load";
+		int port = 5000;
+		String networkInterface;
+		int rate;
+		int[] sizes = {64};
+		/** the weights of events, and samples */
+		int events = 1;
+		int samples;
+		int duration = 30;
+		int warmup = 5;
+		int drain = 2;
+		int window = 4096;
+		int receiveBuffer = 8 * 1024 * 1024;
+		int interval = 5;
+		String out;
+
+		static Options parse(String[] args, int offset) {
+			Options options = new Options();
+			for (int i = offset; i < args.length; i += 2) {
+				String key = args[i];
+				if (!key.startsWith("--") || i + 1 >= args.length)
+					throw new IllegalArgumentException("Expected '--option value', but got: " + key);
+				String value = args[i + 1];
+				switch (key.substring(2)) {
+					case "senders":
+						options.senders = positive(key, value);
+						break;
+					case "receivers":
+						options.receivers = positive(key, value);
+						break;
+					case "name":
+						options.name = value;
+						break;
+					case "port":
+						options.port = positive(key, value);
+						break;
+					case "interface":
+						options.networkInterface = value;
+						break;
+					case "rate":
+						options.rate = Integer.parseInt(value);
+						break;
+					case "sizes":
+						String[] sizes = value.split(",");
+						options.sizes = new int[sizes.length];
+						for (int s = 0; s < sizes.length; s++)
+							options.sizes[s] = positive(key, sizes[s]);
+						break;
+					case "mix":
+						options.events = 0;
+						options.samples = 0;
+						for (String weight : value.split(",")) {
+							int split = weight.indexOf(':');
+							String kind = split == -1 ? weight : weight.substring(0, split);
+							int amount = split == -1 ? 1 : positive(key, weight.substring(split + 1));
+							if (kind.equals("event")) {
+								options.events = amount;
+							} else if (kind.equals("sample")) {
+								options.samples = amount;
+							} else {
+								throw new IllegalArgumentException("Unknown kind of message: " + kind);
+							}
+						}
+						break;
+					case "duration":
+						options.duration = positive(key, value);
+						break;
+					case "warmup":
+						options.warmup = Integer.parseInt(value);
+						break;
+					case "drain":
+						options.drain = Integer.parseInt(value);
+						break;
+					case "window":
+						options.window = positive(key, value);
+						break;
+					case "receive-buffer":
+						options.receiveBuffer = positive(key, value);
+						break;
+					case "interval":
+						options.interval = Integer.parseInt(value);
+						break;
+					case "out":
+						options.out = value;
+						break;
+					default:
+						throw new IllegalArgumentException("Unknown option: " + key);
+				}
+			}
+			return options;
+		}
+
+		private static int positive(String key, String value) {
+			int parsed = Integer.parseInt(value);
+			if (parsed < 1)
+				throw new IllegalArgumentException(key + " must be positive: " + value);
+			return parsed;
+		}
+
+		String json() {
+			Map<String, Object> values = new LinkedHashMap<>();
+			values.put("senders", senders);
+			values.put("receivers", receivers);
+			values.put("name", '"' + name + '"');
+			values.put("port", port);
+			values.put("interface", networkInterface == null ? "null" : '"' + networkInterface + '"');
+			values.put("rate", rate);
+			StringBuilder sizes = new StringBuilder("[");
+			for (int i = 0; i < this.sizes.length; i++)
+				sizes.append(i == 0 ? "" : ", ").append(this.sizes[i]);
+			values.put("sizes", sizes.append(']'));
+			values.put("mix", "{\"event\": " + events + ", \"sample\": " + samples + '}');
+			values.put("duration", duration);
+			values.put("warmup", warmup);
+			values.put("window", window);
+			values.put("sharedMemory", System.getProperty("ion.shm.enabled", "false"));
+			StringBuilder json = new StringBuilder("{");
+			for (Map.Entry<String, Object> entry : values.entrySet()) {
+				if (json.length() > 1)
+					json.append(", ");
+				json.append('"').append(entry.getKey()).append("\": ").append(entry.getValue());
+			}
+			return json.append('}').toString();
+		}
+	}
+}
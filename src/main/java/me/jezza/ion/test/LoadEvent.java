@@ -0,0 +1,36 @@
+package me.jezza.ion.test;
+
+import java.io.Serializable;
+
+/**
+ * The event {@link Load} sends, padded out to whatever size it's told to.
+ *
+ * @author Jezza
+ */
+public final class LoadEvent implements Serializable {
+	private static final long serialVersionUID = 2L;
+
+	public final int sender;
+	public final long sequence;
+	/**
+	 * {@link System#nanoTime()} of the sender. Every process on a host shares the same monotonic clock, so a receiver on the same host can compare it to its own.
+	 */
+	public final long sentAt;
+	public final byte[] payload;
+
+	public LoadEvent(int sender, long sequence, long sentAt, byte[] payload) {
+		this.sender = sender;
+		this.sequence = sequence;
+		this.sentAt = sentAt;
+		this.payload = payload;
+	}
+
+	@Override
+	public String toString() {
+		return "LoadEvent{" +
+				"sender=" + sender +
+				", sequence=" + sequence +
+				", size=" + payload.length +
+				'}';
+	}
+}
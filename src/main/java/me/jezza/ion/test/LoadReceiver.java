@@ -0,0 +1,169 @@
+package me.jezza.ion.test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+
+import me.jezza.ion.Ion;
+import me.jezza.ion.bus.interfaces.Subscriber;
+import me.jezza.ion.bus.interfaces.ThreadSafe;
+import me.jezza.ion.test.Load.Options;
+
+/**
+ * Receives whatever the senders post, and keeps track of what it's lost, what it's seen twice, and how long everything took, see {@link Load}.
+ * <p>
+ * Only the last {@link #WINDOW} sequence numbers of each sender are remembered, so a run can go on for as long as it likes.
+ * A message that arrives further behind its sender's newest than that can't be told apart from a duplicate, so it's counted as neither, and shows up as lost.
+ *
+ * @author Jezza
+ */
+public final class LoadReceiver {
+	/** how many sequence numbers of each sender are remembered, a power of two */
+	static final int WINDOW = 1 << 20;
+
+	private final int id;
+
+	/**
+	 * Guarded by this.
+	 */
+	private final Seen[] seen;
+	private final Histogram latency = new Histogram();
+	private long received;
+	private long unique;
+	private long duplicates;
+
+	/** anything sent before this doesn't count towards latency */
+	private volatile long measureFrom = Long.MAX_VALUE;
+
+	private LoadReceiver(int id, int senders) {
+		this.id = id;
+		seen = new Seen[senders];
+		for (int i = 0; i < senders; i++)
+			seen[i] = new Seen();
+	}
+
+	static void run(int id, Options options) throws Exception {
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+		LoadReceiver receiver = new LoadReceiver(id, options.senders);
+		Ion ion = Load.join(options, true);
+		ion.local().register(receiver);
+		for (int sender = 0; sender < options.senders; sender++) {
+			int from = sender;
+			ion.longChannel("load." + sender).subscribe((sequence, sentAt) -> receiver.recordSample(from, sequence, sentAt));
+		}
+		System.out.println(Load.PREFIX + "ready");
+
+		long start = Long.parseLong(Load.await(in, "start")[1]);
+		receiver.measureFrom = start + TimeUnit.SECONDS.toNanos(options.warmup);
+
+		Timer timer = new Timer("progress", true);
+		if (options.interval > 0) {
+			long period = TimeUnit.SECONDS.toMillis(options.interval);
+			timer.scheduleAtFixedRate(new TimerTask() {
+				private long last;
+
+				@Override
+				public void run() {
+					long received = receiver.received();
+					System.err.println("[receiver-" + id + "] " + (received - last) / options.interval + " msg/s, " + received + " received");
+					last = received;
+				}
+			}, period, period);
+		}
+
+		Load.await(in, "stop");
+		timer.cancel();
+		ion.shutdown();
+		synchronized (receiver) {
+			System.out.println(Load.PREFIX + "result " + receiver.received + ' ' + receiver.unique + ' ' + receiver.duplicates + ' ' + receiver.latency.encode());
+		}
+	}
+
+	@Subscriber
+	@ThreadSafe
+	public void incoming(LoadEvent event) {
+		record(event.sender, event.sequence, event.sentAt);
+	}
+
+	/**
+	 * A sample only carries the low bits of its sequence number, see {@link LoadSender}.
+	 */
+	private synchronized void recordSample(int sender, int sequence, long sentAt) {
+		record(sender, sender >= 0 && sender < seen.length ? seen[sender].extend(sequence) : sequence, sentAt);
+	}
+
+	private synchronized void record(int sender, long sequence, long sentAt) {
+		long now = System.nanoTime();
+		received++;
+		if (sender < 0 || sender >= seen.length || sequence < 0)
+			return;
+		switch (seen[sender].mark(sequence)) {
+			case Seen.DUPLICATE:
+				duplicates++;
+				return;
+			case Seen.TOO_OLD:
+				return;
+		}
+		unique++;
+		if (sentAt >= measureFrom)
+			latency.record(now - sentAt);
+	}
+
+	private synchronized long received() {
+		return received;
+	}
+
+	@Override
+	public String toString() {
+		return "[LoadReceiver:" + id + ']';
+	}
+
+	/**
+	 * The sequence numbers of a single sender that are still within the {@link #WINDOW} of its newest one.
+	 */
+	private static final class Seen {
+		static final int FIRST = 0;
+		static final int DUPLICATE = 1;
+		static final int TOO_OLD = 2;
+
+		private final long[] bits = new long[WINDOW / 64];
+		private long highest = -1;
+
+		/**
+		 * @return - The full sequence number closest to the newest one, whose low bits are the given ones.
+		 */
+		long extend(int low) {
+			return highest + (low - (int) highest);
+		}
+
+		/**
+		 * @return - {@link #FIRST} if the sequence number wasn't seen before, {@link #DUPLICATE} if it was, or {@link #TOO_OLD} if it's too far behind to tell.
+		 */
+		int mark(long sequence) {
+			if (sequence > highest) {
+				if (sequence - highest >= WINDOW) {
+					Arrays.fill(bits, 0);
+				} else {
+					// These slots were last used a whole window ago.
+					for (long next = highest + 1; next < sequence; next++)
+						bits[(int) (next & WINDOW - 1) >>> 6] &= ~(1L << next);
+				}
+				highest = sequence;
+				bits[(int) (sequence & WINDOW - 1) >>> 6] |= 1L << sequence;
+				return FIRST;
+			}
+			if (highest - sequence >= WINDOW)
+				return TOO_OLD;
+			int index = (int) (sequence & WINDOW - 1) >>> 6;
+			long bit = 1L << sequence;
+			if ((bits[index] & bit) != 0)
+				return DUPLICATE;
+			bits[index] |= bit;
+			return FIRST;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package me.jezza.ion.test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import me.jezza.ion.Ion;
+import me.jezza.ion.bus.LongChannel;
+import me.jezza.ion.test.Load.Options;
+
+/**
+ * Posts messages at a fixed rate, see {@link Load}.
+ * <p>
+ * Every message has a sequence number, unique to this sender, so a receiver can tell what it's lost, and what it's seen twice.
+ * Messages are scheduled from the start, not from the previous one, so falling behind is caught up on, instead of quietly lowering the rate.
+ *
+ * @author Jezza
+ */
+final class LoadSender {
+	private LoadSender() {
+		throw new IllegalStateException();
+	}
+
+	static void run(int id, Options options) throws Exception {
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+		Ion ion = Load.join(options, false);
+		LongChannel channel = ion.longChannel("load." + id);
+		System.out.println(Load.PREFIX + "ready");
+
+		long start = Long.parseLong(Load.await(in, "start")[1]);
+		long end = start + TimeUnit.SECONDS.toNanos(options.duration);
+		long interval = options.rate == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / options.rate;
+
+		Random random = new Random(id);
+		int weights = options.events + options.samples;
+		Semaphore window = new Semaphore(options.window);
+		GenericFutureListener<Future<Void>> release = future -> window.release();
+
+		long now;
+		while ((now = System.nanoTime()) < start)
+			LockSupport.parkNanos(start - now);
+
+		long sequence = 0;
+		while ((now = System.nanoTime()) < end) {
+			if (interval != 0) {
+				long due = start + sequence * interval;
+				if (now < due) {
+					LockSupport.parkNanos(due - now);
+					continue;
+				}
+			}
+			window.acquire();
+			ChannelFuture future;
+			if (random.nextInt(weights) < options.events) {
+				byte[] payload = new byte[options.sizes[random.nextInt(options.sizes.length)]];
+				future = ion.post(new LoadEvent(id, sequence, System.nanoTime(), payload));
+			} else {
+				// Only the low bits fit in a sample's key, the receivers extend them again.
+				future = ion.post(channel, (int) sequence, System.nanoTime());
+			}
+			future.addListener(release);
+			sequence++;
+		}
+
+		// Everything's been posted, but not necessarily sent.
+		if (!window.tryAcquire(options.window, 30, TimeUnit.SECONDS))
+			System.err.println("Gave up waiting on " + (options.window - window.availablePermits()) + " posts.");
+		System.out.println(Load.PREFIX + "sent " + sequence);
+		ion.shutdown();
+	}
+}
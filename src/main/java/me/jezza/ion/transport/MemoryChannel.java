@@ -0,0 +1,175 @@
+package me.jezza.ion.transport;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayDeque;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.AbstractChannel;
+import io.netty.channel.AddressedEnvelope;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultChannelConfig;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * A datagram channel of a {@link MemoryNetwork}. It reads and writes {@link DatagramPacket}s, just like a real one.
+ *
+ * @author Jezza
+ */
+final class MemoryChannel extends AbstractChannel {
+	private static final ChannelMetadata METADATA = new ChannelMetadata(false);
+
+	/** the most datagrams that are read before the read is completed, just like NIO */
+	private static final int MAX_MESSAGES_PER_READ = 16;
+
+	private static final int OPEN = 0;
+	private static final int BOUND = 1;
+	private static final int CLOSED = 2;
+
+	private final MemoryTransport host;
+	private final ChannelConfig config = new DefaultChannelConfig(this);
+
+	private volatile InetSocketAddress localAddress;
+	private volatile int state = OPEN;
+
+	/**
+	 * The datagrams that arrived, and haven't been read yet. Only touched by the event loop.
+	 */
+	private final ArrayDeque<DatagramPacket> inbound = new ArrayDeque<>();
+	private boolean readPending;
+
+	MemoryChannel(MemoryTransport host) {
+		super(null);
+		this.host = host;
+	}
+
+	@Override
+	protected AbstractUnsafe newUnsafe() {
+		return new AbstractUnsafe() {
+			@Override
+			public void connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) {
+				promise.setFailure(new UnsupportedOperationException("Datagram channels of a MemoryNetwork can't be connected."));
+			}
+		};
+	}
+
+	@Override
+	protected boolean isCompatible(EventLoop loop) {
+		return true;
+	}
+
+	@Override
+	protected SocketAddress localAddress0() {
+		return localAddress;
+	}
+
+	@Override
+	protected SocketAddress remoteAddress0() {
+		return null;
+	}
+
+	@Override
+	protected void doBind(SocketAddress localAddress) throws Exception {
+		this.localAddress = host.network.bind(this, host.localAddress(), ((InetSocketAddress) localAddress).getPort());
+		state = BOUND;
+	}
+
+	@Override
+	protected void doDisconnect() throws Exception {
+		doClose();
+	}
+
+	@Override
+	protected void doClose() throws Exception {
+		if (state == CLOSED)
+			return;
+		state = CLOSED;
+		host.network.unbind(this);
+		DatagramPacket packet;
+		while ((packet = inbound.poll()) != null)
+			packet.release();
+	}
+
+	@Override
+	protected void doBeginRead() throws Exception {
+		if (inbound.isEmpty()) {
+			readPending = true;
+		} else {
+			// Don't read straight away, as completing the read asks for the next one, and that would recurse for as long as there's a backlog.
+			eventLoop().execute(this::read0);
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+		Object msg;
+		while ((msg = in.current()) != null) {
+			if (msg instanceof AddressedEnvelope && ((AddressedEnvelope<?, ?>) msg).content() instanceof ByteBuf) {
+				AddressedEnvelope<ByteBuf, InetSocketAddress> envelope = (AddressedEnvelope<ByteBuf, InetSocketAddress>) msg;
+				host.network.send(this, envelope.recipient(), envelope.content());
+				in.remove();
+			} else {
+				in.remove(new UnsupportedOperationException("Unsupported message type: " + msg.getClass()));
+			}
+		}
+	}
+
+	/**
+	 * Called on the event loop, once a datagram has made it across the network.
+	 */
+	void receive(DatagramPacket packet) {
+		if (state != BOUND || inbound.size() >= host.network.backlog()) {
+			// Just like a full receive buffer.
+			ReferenceCountUtil.release(packet);
+			host.network.overflow();
+			return;
+		}
+		inbound.add(packet);
+		if (readPending) {
+			readPending = false;
+			read0();
+		}
+	}
+
+	private void read0() {
+		if (state != BOUND)
+			return;
+		ChannelPipeline pipeline = pipeline();
+		DatagramPacket packet;
+		for (int i = 0; i < MAX_MESSAGES_PER_READ && (packet = inbound.poll()) != null; i++)
+			pipeline.fireChannelRead(packet);
+		pipeline.fireChannelReadComplete();
+	}
+
+	@Override
+	public ChannelConfig config() {
+		return config;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return state != CLOSED;
+	}
+
+	@Override
+	public boolean isActive() {
+		return state == BOUND;
+	}
+
+	@Override
+	public ChannelMetadata metadata() {
+		return METADATA;
+	}
+
+	@Override
+	public InetSocketAddress localAddress() {
+		return (InetSocketAddress) super.localAddress();
+	}
+}
@@ -0,0 +1,339 @@
+package me.jezza.ion.transport;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.socket.DatagramPacket;
+
+/**
+ * A simulated network, that lives entirely in a single JVM.
+ * <p>
+ * Every {@link #host()} is a separate {@link Transport}, with its own address and its own event loop, so a whole cluster can be run,
+ * and tested, and benchmarked, without touching a real network. Datagrams are routed by address, just like the real thing:
+ * Unicast to whichever channel is bound to the recipient, and multicast to every channel that joined the group, on the group's port, including the sender's own.
+ * <p>
+ * By default, the network is perfect. Latency, jitter, loss, reordering and duplication can all be dialed in, at any time.
+ * The faults are drawn from a single seeded {@link Random}, so the same seed and the same order of sends produce the same faults.
+ * Sends from different threads race each other, so a run is only ever as deterministic as the order the nodes send in.
+ * <pre>{@code
+ * MemoryNetwork network = new MemoryNetwork(42)
+ *         .latency(1, TimeUnit.MILLISECONDS)
+ *         .loss(0.01);
+ * IonRuntime first = new IonRuntime(network.host());
+ * IonRuntime second = new IonRuntime(network.host());
+ * }</pre>
+ *
+ * @author Jezza
+ */
+public final class MemoryNetwork {
+	/** The first port that's handed out to channels that bind to port 0. */
+	private static final int EPHEMERAL_PORTS = 49152;
+
+	private final Random random;
+
+	private final AtomicInteger hosts = new AtomicInteger();
+	private final AtomicInteger ports = new AtomicInteger(EPHEMERAL_PORTS);
+
+	private final Map<InetSocketAddress, List<MemoryChannel>> bound = new ConcurrentHashMap<>();
+	private final Map<InetAddress, List<MemoryChannel>> groups = new ConcurrentHashMap<>();
+
+	private volatile long latency;
+	private volatile long jitter;
+	private volatile double loss;
+	private volatile double duplication;
+	private volatile double reordering;
+	private volatile long reorderDelay;
+	private volatile int backlog = 1024;
+
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong delivered = new AtomicLong();
+	private final AtomicLong lost = new AtomicLong();
+	private final AtomicLong duplicated = new AtomicLong();
+	private final AtomicLong reordered = new AtomicLong();
+	private final AtomicLong overflowed = new AtomicLong();
+
+	/**
+	 * A perfect network, until told otherwise.
+	 */
+	public MemoryNetwork() {
+		this(0L);
+	}
+
+	/**
+	 * @param seed - The seed for every fault the network injects.
+	 */
+	public MemoryNetwork(long seed) {
+		random = new Random(seed);
+	}
+
+	/**
+	 * @return - A new host on this network, with a single event loop thread.
+	 */
+	public Transport host() {
+		return host(1);
+	}
+
+	/**
+	 * @param threads - How many event loop threads the host has.
+	 * @return - A new host on this network, with its own address, 10.0.0.1, 10.0.0.2, and so on.
+	 */
+	public Transport host(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("A host needs at least one thread: " + threads);
+		int id = hosts.incrementAndGet();
+		if (id > 0xFFFFFE)
+			throw new IllegalStateException("The network is full.");
+		byte[] address = {10, (byte) (id >>> 16), (byte) (id >>> 8), (byte) id};
+		try {
+			return new MemoryTransport(this, InetAddress.getByAddress(address), threads);
+		} catch (UnknownHostException e) {
+			// Only thrown for addresses with an illegal length.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Sets how long a datagram takes to arrive.
+	 *
+	 * @return - this
+	 */
+	public MemoryNetwork latency(long latency, TimeUnit unit) {
+		if (latency < 0)
+			throw new IllegalArgumentException("Latency can't be negative: " + latency);
+		this.latency = unit.toNanos(latency);
+		return this;
+	}
+
+	/**
+	 * Sets the most time a datagram can take on top of the latency, each datagram takes a uniformly random amount of it.
+	 * As a datagram can overtake another, jitter also reorders datagrams.
+	 *
+	 * @return - this
+	 */
+	public MemoryNetwork jitter(long jitter, TimeUnit unit) {
+		if (jitter < 0)
+			throw new IllegalArgumentException("Jitter can't be negative: " + jitter);
+		this.jitter = unit.toNanos(jitter);
+		return this;
+	}
+
+	/**
+	 * @param probability - The chance that any given datagram is lost, between 0 and 1.
+	 * @return - this
+	 */
+	public MemoryNetwork loss(double probability) {
+		loss = probability(probability);
+		return this;
+	}
+
+	/**
+	 * @param probability - The chance that any given datagram arrives twice, between 0 and 1.
+	 * @return - this
+	 */
+	public MemoryNetwork duplicate(double probability) {
+		duplication = probability(probability);
+		return this;
+	}
+
+	/**
+	 * @param probability - The chance that any given datagram is held back, between 0 and 1.
+	 * @param delay       - How long it's held back for, on top of the latency, so that whatever's sent after it overtakes it.
+	 * @param unit        - The unit of {@code delay}.
+	 * @return - this
+	 */
+	public MemoryNetwork reorder(double probability, long delay, TimeUnit unit) {
+		if (delay < 0)
+			throw new IllegalArgumentException("Delay can't be negative: " + delay);
+		reordering = probability(probability);
+		reorderDelay = unit.toNanos(delay);
+		return this;
+	}
+
+	/**
+	 * @param backlog - The most datagrams a channel holds on to before it's read, anything past that is dropped, just like a full receive buffer.
+	 * @return - this
+	 */
+	public MemoryNetwork backlog(int backlog) {
+		if (backlog < 1)
+			throw new IllegalArgumentException("Backlog must be positive: " + backlog);
+		this.backlog = backlog;
+		return this;
+	}
+
+	/**
+	 * @return - How many datagrams were sent, counting a multicast datagram once per receiver.
+	 */
+	public long sent() {
+		return sent.get();
+	}
+
+	/**
+	 * @return - How many datagrams actually made it to a receiver, including duplicates.
+	 */
+	public long delivered() {
+		return delivered.get();
+	}
+
+	/**
+	 * @return - How many datagrams were lost, either by {@link #loss(double)}, or because nothing was listening.
+	 */
+	public long lost() {
+		return lost.get();
+	}
+
+	/**
+	 * @return - How many extra copies of datagrams were delivered.
+	 */
+	public long duplicated() {
+		return duplicated.get();
+	}
+
+	/**
+	 * @return - How many datagrams were held back, see {@link #reorder(double, long, TimeUnit)}.
+	 */
+	public long reordered() {
+		return reordered.get();
+	}
+
+	/**
+	 * @return - How many datagrams arrived, but were dropped, because the receiver wasn't reading fast enough.
+	 */
+	public long overflowed() {
+		return overflowed.get();
+	}
+
+	int backlog() {
+		return backlog;
+	}
+
+	void overflow() {
+		delivered.decrementAndGet();
+		overflowed.incrementAndGet();
+	}
+
+	InetSocketAddress bind(MemoryChannel channel, InetAddress host, int port) {
+		InetSocketAddress address = new InetSocketAddress(host, port == 0 ? ports.getAndIncrement() : port);
+		bound.computeIfAbsent(address, k -> new CopyOnWriteArrayList<>()).add(channel);
+		return address;
+	}
+
+	void unbind(MemoryChannel channel) {
+		InetSocketAddress address = channel.localAddress();
+		if (address != null) {
+			List<MemoryChannel> channels = bound.get(address);
+			if (channels != null)
+				channels.remove(channel);
+		}
+		for (List<MemoryChannel> members : groups.values())
+			members.remove(channel);
+	}
+
+	void join(MemoryChannel channel, InetAddress group) {
+		List<MemoryChannel> members = groups.computeIfAbsent(group, k -> new CopyOnWriteArrayList<>());
+		if (!members.contains(channel))
+			members.add(channel);
+	}
+
+	void leave(MemoryChannel channel, InetAddress group) {
+		List<MemoryChannel> members = groups.get(group);
+		if (members != null)
+			members.remove(channel);
+	}
+
+	/**
+	 * Called by the sender's event loop. The content still belongs to the sender, so every receiver gets its own retained duplicate.
+	 */
+	void send(MemoryChannel from, InetSocketAddress recipient, ByteBuf content) {
+		InetSocketAddress sender = from.localAddress();
+		if (recipient.getAddress().isMulticastAddress()) {
+			List<MemoryChannel> members = groups.get(recipient.getAddress());
+			if (members == null)
+				return;
+			int port = recipient.getPort();
+			for (MemoryChannel member : members) {
+				InetSocketAddress address = member.localAddress();
+				if (address != null && address.getPort() == port)
+					route(member, content, recipient, sender);
+			}
+		} else {
+			List<MemoryChannel> channels = bound.get(recipient);
+			if (channels != null && !channels.isEmpty()) {
+				route(channels.get(0), content, recipient, sender);
+			} else {
+				sent.incrementAndGet();
+				lost.incrementAndGet();
+			}
+		}
+	}
+
+	private void route(MemoryChannel to, ByteBuf content, InetSocketAddress recipient, InetSocketAddress sender) {
+		sent.incrementAndGet();
+		long first;
+		long second;
+		synchronized (random) {
+			if (loss > 0 && random.nextDouble() < loss) {
+				lost.incrementAndGet();
+				return;
+			}
+			first = delay();
+			second = duplication > 0 && random.nextDouble() < duplication ? delay() : -1;
+		}
+		deliver(to, content, recipient, sender, first);
+		if (second >= 0) {
+			duplicated.incrementAndGet();
+			deliver(to, content, recipient, sender, second);
+		}
+	}
+
+	/**
+	 * Guarded by random.
+	 */
+	private long delay() {
+		long delay = latency;
+		if (jitter > 0)
+			delay += (long) (random.nextDouble() * jitter);
+		if (reordering > 0 && random.nextDouble() < reordering) {
+			reordered.incrementAndGet();
+			delay += reorderDelay;
+		}
+		return delay;
+	}
+
+	private void deliver(MemoryChannel to, ByteBuf content, InetSocketAddress recipient, InetSocketAddress sender, long delay) {
+		delivered.incrementAndGet();
+		DatagramPacket packet = new DatagramPacket(content.retainedDuplicate(), recipient, sender);
+		try {
+			if (delay == 0) {
+				to.eventLoop().execute(() -> to.receive(packet));
+			} else {
+				to.eventLoop().schedule(() -> to.receive(packet), delay, TimeUnit.NANOSECONDS);
+			}
+		} catch (RuntimeException e) {
+			// The receiver's host has been shut down.
+			packet.release();
+			delivered.decrementAndGet();
+			lost.incrementAndGet();
+		}
+	}
+
+	private static double probability(double probability) {
+		if (!(probability >= 0 && probability <= 1))
+			throw new IllegalArgumentException("Probability must be between 0 and 1: " + probability);
+		return probability;
+	}
+
+	@Override
+	public String toString() {
+		return "[MemoryNetwork:" + hosts.get() + " hosts]";
+	}
+}
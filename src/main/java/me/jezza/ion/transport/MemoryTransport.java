@@ -0,0 +1,71 @@
+package me.jezza.ion.transport;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+
+/**
+ * A single host of a {@link MemoryNetwork}, see {@link MemoryNetwork#host()}.
+ *
+ * @author Jezza
+ */
+final class MemoryTransport implements Transport {
+	final MemoryNetwork network;
+	private final InetAddress localAddress;
+	private final EventLoopGroup group;
+
+	MemoryTransport(MemoryNetwork network, InetAddress localAddress, int threads) {
+		this.network = network;
+		this.localAddress = localAddress;
+		group = new DefaultEventLoopGroup(threads);
+	}
+
+	@Override
+	public Bootstrap bootstrap() {
+		return new Bootstrap()
+				.group(group)
+				.channelFactory(() -> new MemoryChannel(this));
+	}
+
+	@Override
+	public InetAddress localAddress() {
+		return localAddress;
+	}
+
+	@Override
+	public ChannelFuture joinGroup(Channel channel, InetSocketAddress group) {
+		network.join((MemoryChannel) channel, group.getAddress());
+		return channel.newSucceededFuture();
+	}
+
+	@Override
+	public ChannelFuture leaveGroup(Channel channel, InetSocketAddress group) {
+		network.leave((MemoryChannel) channel, group.getAddress());
+		return channel.newSucceededFuture();
+	}
+
+	/**
+	 * Every host shares the same /dev/shm, so sharing memory would deliver the frames this network was meant to drop, or delay.
+	 */
+	@Override
+	public boolean sharedMemory() {
+		return false;
+	}
+
+	@Override
+	public void shutdown() {
+		// There's no socket to drain, so there's no point in waiting around.
+		group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+	}
+
+	@Override
+	public String toString() {
+		return "[MemoryTransport:" + localAddress.getHostAddress() + ']';
+	}
+}
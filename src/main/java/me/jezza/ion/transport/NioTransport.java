@@ -0,0 +1,113 @@
+package me.jezza.ion.transport;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.Objects;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.InternetProtocolFamily;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import me.jezza.ion.utils.Addresses;
+import me.jezza.ion.utils.Pair;
+
+/**
+ * Real UDP sockets, on a single IPv4 network interface.
+ *
+ * @author Jezza
+ */
+public final class NioTransport implements Transport {
+	private final EventLoopGroup group;
+	/**
+	 * false if the group was handed to us, in which case, whoever did is responsible for shutting it down.
+	 */
+	private final boolean owned;
+
+	private final NetworkInterface networkInterface;
+	private final InetAddress localAddress;
+
+	/**
+	 * @param threads          - How many event loop threads there are, 0 for Netty's default.
+	 * @param networkInterface - The interface multicast traffic is sent and received on. It has to have an IPv4 address. Null for the first one that's up.
+	 */
+	public NioTransport(int threads, NetworkInterface networkInterface) {
+		this(new NioEventLoopGroup(threads), true, networkInterface);
+	}
+
+	/**
+	 * @param group            - The event loop group the channels run on. It isn't shut down with the transport.
+	 * @param networkInterface - The interface multicast traffic is sent and received on. It has to have an IPv4 address. Null for the first one that's up.
+	 */
+	public NioTransport(EventLoopGroup group, NetworkInterface networkInterface) {
+		this(Objects.requireNonNull(group, "Argument 'group' may not be null."), false, networkInterface);
+	}
+
+	private NioTransport(EventLoopGroup group, boolean owned, NetworkInterface networkInterface) {
+		this.group = group;
+		this.owned = owned;
+		try {
+			if (networkInterface == null) {
+				final Pair<NetworkInterface, InetAddress> networkPair = Addresses.getIp4Address();
+				this.networkInterface = networkPair.first();
+				localAddress = networkPair.second();
+			} else {
+				this.networkInterface = networkInterface;
+				localAddress = Addresses.getIp4Address(networkInterface);
+			}
+		} catch (SocketException e) {
+			if (owned)
+				group.shutdownGracefully();
+			// @TODO Jezza - 23 Aug 2017: Fix this...
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public Bootstrap bootstrap() {
+		return new Bootstrap()
+				.group(group)
+				.channelFactory(() -> new NioDatagramChannel(InternetProtocolFamily.IPv4))
+//				.localAddress(localAddress, port)
+				.option(ChannelOption.SO_REUSEADDR, true)
+//				.option(ChannelOption.SO_BROADCAST, true)
+				.option(ChannelOption.IP_MULTICAST_IF, networkInterface);
+	}
+
+	@Override
+	public InetAddress localAddress() {
+		return localAddress;
+	}
+
+	@Override
+	public ChannelFuture joinGroup(Channel channel, InetSocketAddress group) {
+		return ((DatagramChannel) channel).joinGroup(group, networkInterface);
+	}
+
+	@Override
+	public ChannelFuture leaveGroup(Channel channel, InetSocketAddress group) {
+		return ((DatagramChannel) channel).leaveGroup(group, networkInterface);
+	}
+
+	@Override
+	public boolean sharedMemory() {
+		return true;
+	}
+
+	@Override
+	public void shutdown() {
+		if (owned)
+			group.shutdownGracefully().syncUninterruptibly();
+	}
+
+	@Override
+	public String toString() {
+		return "[NioTransport:" + networkInterface.getName() + '/' + localAddress.getHostAddress() + ']';
+	}
+}
@@ -0,0 +1,51 @@
+package me.jezza.ion.transport;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+
+/**
+ * Whatever {@link me.jezza.ion.IonRuntime} sends and receives datagrams through.
+ * <p>
+ * The channels a transport creates read and write {@link io.netty.channel.socket.DatagramPacket}s, so everything above them is the same, regardless of the transport.
+ * <ul>
+ * <li>{@link NioTransport}: Real sockets, on a real network interface. This is the default.</li>
+ * <li>{@link MemoryNetwork}: Simulates a network in a single JVM, with whatever latency, loss, reordering and duplication it's told to.</li>
+ * </ul>
+ *
+ * @author Jezza
+ */
+public interface Transport {
+	/**
+	 * @return - A bootstrap for datagram channels, with an event loop group and a channel factory, and anything else the transport needs.
+	 */
+	Bootstrap bootstrap();
+
+	/**
+	 * @return - The address other nodes can reach this one at.
+	 */
+	InetAddress localAddress();
+
+	/**
+	 * Starts receiving datagrams sent to the given group on the given channel. The channel has to be bound to the group's port.
+	 */
+	ChannelFuture joinGroup(Channel channel, InetSocketAddress group);
+
+	/**
+	 * Stops receiving datagrams sent to the given group on the given channel.
+	 */
+	ChannelFuture leaveGroup(Channel channel, InetSocketAddress group);
+
+	/**
+	 * @return - true if nodes on this transport that share a host can also reach each other via shared memory, see {@link me.jezza.ion.shm.BroadcastRing}.
+	 */
+	boolean sharedMemory();
+
+	/**
+	 * Releases whatever the transport owns, such as its event loop group. Every channel it created should already be closed.
+	 */
+	void shutdown();
+}
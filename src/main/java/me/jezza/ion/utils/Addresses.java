@@ -24,6 +24,19 @@ public final class Addresses {
 		return getIpAddress(address -> address instanceof Inet6Address);
 	}
 
+	/**
+	 * @return - The first IPv4 address of the given interface.
+	 */
+	public static InetAddress getIp4Address(NetworkInterface networkInterface) throws SocketException {
+		Enumeration<InetAddress> addresses = networkInterface.getInetAddresses();
+		while (addresses.hasMoreElements()) {
+			InetAddress address = addresses.nextElement();
+			if (address instanceof Inet4Address)
+				return address;
+		}
+		throw new SocketException("No IPv4 address on " + networkInterface);
+	}
+
 	public static Pair<NetworkInterface, InetAddress> getIpAddress(Predicate<InetAddress> condition) throws SocketException {
 		// Before we connect somewhere, we cannot be sure about what we'd be bound to; however,
 		// we only connect when the message where client ID is, is long constructed. Thus,
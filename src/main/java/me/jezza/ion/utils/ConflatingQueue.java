@@ -0,0 +1,71 @@
+package me.jezza.ion.utils;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A FIFO queue, where values that are offered with the same (non-null) key as a value that's still queued replace that value in place.
+ * The replacement keeps the position of the value it replaced, so a stream of updates for a single key never starves the rest of the queue.
+ * <p>
+ * This is not thread-safe.
+ *
+ * @author Jezza
+ */
+public final class ConflatingQueue<T> {
+	private final ArrayDeque<Slot<T>> slots = new ArrayDeque<>();
+	private final Map<Object, Slot<T>> keyed = new HashMap<>();
+
+	/**
+	 * @param key   - The key to conflate by, or null if the value should always be appended.
+	 * @param value - The value to queue.
+	 * @return - The value that was replaced, or null if the value was appended.
+	 */
+	public T offer(Object key, T value) {
+		if (key != null) {
+			Slot<T> slot = keyed.get(key);
+			if (slot != null) {
+				T previous = slot.value;
+				slot.value = value;
+				return previous;
+			}
+			slot = new Slot<>(key, value);
+			keyed.put(key, slot);
+			slots.offer(slot);
+		} else {
+			slots.offer(new Slot<>(null, value));
+		}
+		return null;
+	}
+
+	public boolean contains(Object key) {
+		return key != null && keyed.containsKey(key);
+	}
+
+	public T poll() {
+		Slot<T> slot = slots.poll();
+		if (slot == null)
+			return null;
+		if (slot.key != null)
+			keyed.remove(slot.key);
+		return slot.value;
+	}
+
+	public int size() {
+		return slots.size();
+	}
+
+	public boolean isEmpty() {
+		return slots.isEmpty();
+	}
+
+	private static final class Slot<T> {
+		final Object key;
+		T value;
+
+		Slot(Object key, T value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+}
@@ -3,6 +3,9 @@ package me.jezza.ion.utils;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 
 /**
@@ -65,6 +68,11 @@ public final class Strings {
 		throw new IllegalStateException();
 	}
 
+	/**
+	 * The original mapping of a name to a group: The {@link String#hashCode()} of the name, folded byte by byte into the range.
+	 * Only 32 bits go in, and bytes that are already under the range are kept as they are, so names cluster on a few groups,
+	 * and short names can even end up outside the range entirely. Prefer {@link #group(String)}.
+	 */
 	public static InetAddress normalise(String name) {
 		byte[] range = RANGE;
 		int l = range.length;
@@ -89,6 +97,49 @@ public final class Strings {
 		}
 	}
 
+	/**
+	 * Maps a name to a group anywhere in the configured range, with every address in the range being equally likely.
+	 * The name is hashed with SHA-256, so similar names don't end up on similar groups.
+	 * Unrelated names can still collide, the range is only so big, but {@link #identify(String)} keeps their traffic apart.
+	 */
+	public static InetAddress group(String name) {
+		long lower = unsigned(LOWER);
+		long span = unsigned(UPPER) - lower + 1;
+		long address = lower + Math.floorMod(sha256(name).getLong(), span);
+		byte[] result = new byte[LOWER.length];
+		for (int i = result.length - 1; i >= 0; i--, address >>>= 8)
+			result[i] = (byte) address;
+		try {
+			return InetAddress.getByAddress(result);
+		} catch (UnknownHostException e) {
+			throw new IllegalStateException("Mapping failed: '" + name + "', Range:" + Arrays.toString(LOWER) + ',' + Arrays.toString(UPPER));
+		}
+	}
+
+	/**
+	 * @return - A 64-bit id of the given name, taken from its SHA-256. (Not from the same bytes as {@link #group(String)}, so the two are independent)
+	 * Unlike the group a name maps to, it's practically unique.
+	 */
+	public static long identify(String name) {
+		return sha256(name).getLong(8);
+	}
+
+	private static ByteBuffer sha256(String name) {
+		try {
+			return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(name.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			// Every JVM has to support SHA-256.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static long unsigned(byte[] address) {
+		long value = 0;
+		for (byte b : address)
+			value = value << 8 | b & 0xFF;
+		return value;
+	}
+
 	private static byte[] hash(String name, int length) {
 		return ByteBuffer.allocate(length)
 				.putInt(name.hashCode())
@@ -0,0 +1,296 @@
+package me.jezza.ion.utils;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Hands values to a consumer once their deadline has passed, for when there's far too many of them for a heap, such as a timeout per request.
+ * <p>
+ * Time is split into ticks, and pending values are kept in {@link #LEVELS} wheels of {@link #SLOTS} slots each.
+ * The first wheel has a slot per tick, and each wheel after that has a slot per full turn of the one before it, so the wheels reach 2^32 ticks ahead between them.
+ * A value is put in the slot of the first wheel its deadline fits in, and as time passes, it's moved down into finer and finer wheels, until its slot in the first one comes up.
+ * Anything further ahead than that simply waits in the last wheel, until it's close enough.
+ * <p>
+ * Every pending value is held by a single {@link Timeout}, which is its own link in its slot's list, so scheduling, and cancelling, a value is constant time,
+ * and nothing else is allocated for it. Deadlines are rounded up to the next tick.
+ * <p>
+ * Values are handed to the consumer one at a time, on a single daemon thread, which only runs while something is pending.
+ * So a consumer that takes its time delays everything due after it.
+ *
+ * @author Jezza
+ */
+public final class TimingWheel<T> {
+	public static final int LEVELS = 4;
+	public static final int SLOTS = 256;
+
+	private static final int BITS = 8;
+	private static final int MASK = SLOTS - 1;
+
+	private final long tick;
+	private final Consumer<? super T> consumer;
+	private final ThreadFactory threads;
+	private final LongSupplier clock;
+
+	/**
+	 * Every slot of every wheel, a wheel after another. Guarded by this, as is everything else the wheels hold.
+	 */
+	private final Timeout[] slots = new Timeout[LEVELS * SLOTS];
+	/** the tick the wheels are at, counted from origin */
+	private long current;
+	private final long origin;
+	private int size;
+	/** the thread that's turning the wheels, or null if nothing's pending */
+	private Thread turning;
+
+	/**
+	 * @param tick     - How precise deadlines are.
+	 * @param unit     - The unit of {@code tick}.
+	 * @param consumer - Is handed every value, once its deadline has passed.
+	 * @param threads  - Creates the thread that turns the wheels. It should be a daemon thread.
+	 */
+	public TimingWheel(long tick, TimeUnit unit, Consumer<? super T> consumer, ThreadFactory threads) {
+		this(tick, unit, consumer, threads, System::nanoTime);
+	}
+
+	/**
+	 * @param clock - Where the time comes from, in nanoseconds.
+	 */
+	TimingWheel(long tick, TimeUnit unit, Consumer<? super T> consumer, ThreadFactory threads, LongSupplier clock) {
+		if (tick <= 0)
+			throw new IllegalArgumentException("Tick must be positive: " + tick);
+		this.tick = unit.toNanos(tick);
+		this.consumer = Objects.requireNonNull(consumer, "Argument 'consumer' may not be null.");
+		this.threads = Objects.requireNonNull(threads, "Argument 'threads' may not be null.");
+		this.clock = clock;
+		origin = clock.getAsLong();
+	}
+
+	/**
+	 * @param name     - The name of the thread that turns the wheels.
+	 * @param consumer - Is handed every value, once its deadline has passed.
+	 * @return - A wheel with a tick of a millisecond.
+	 */
+	public static <T> TimingWheel<T> of(String name, Consumer<? super T> consumer) {
+		return new TimingWheel<>(1, TimeUnit.MILLISECONDS, consumer, r -> {
+			Thread thread = new Thread(r, name);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * @param value - The value to hand to the consumer.
+	 * @param delay - How long to wait before doing so.
+	 * @param unit  - The unit of {@code delay}.
+	 * @return - A handle that can be used to cancel it.
+	 */
+	public Timeout schedule(T value, long delay, TimeUnit unit) {
+		Objects.requireNonNull(value, "Argument 'value' may not be null.");
+		long nanos = Math.max(unit.toNanos(delay), 0);
+		long now = clock.getAsLong() - origin;
+		// Round up, but make sure it never lands on the tick we're on, as that slot has already come up.
+		long deadline = (now + nanos + tick - 1) / tick;
+		Timeout timeout = new Timeout(this, value);
+		synchronized (this) {
+			if (turning == null) {
+				// Nothing's been turning the wheels, so they're empty, and can skip straight to now.
+				current = now / tick;
+				turning = threads.newThread(this::turn);
+				turning.start();
+			}
+			timeout.deadline = Math.max(deadline, current + 1);
+			place(timeout);
+			size++;
+		}
+		return timeout;
+	}
+
+	/**
+	 * @return - How many values are still pending.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Cancels everything that's still pending.
+	 *
+	 * @return - How many values were cancelled.
+	 */
+	public synchronized int clear() {
+		int cleared = size;
+		for (int i = 0; i < slots.length; i++) {
+			for (Timeout timeout = slots[i]; timeout != null; timeout = timeout.next) {
+				timeout.state = Timeout.CANCELLED;
+				timeout.value = null;
+			}
+			slots[i] = null;
+		}
+		size = 0;
+		return cleared;
+	}
+
+	/**
+	 * Guarded by this.
+	 */
+	private void place(Timeout timeout) {
+		long deadline = timeout.deadline;
+		// The highest bits the deadline, and now, differ in decide which wheel it goes into.
+		int level = (63 - Long.numberOfLeadingZeros(deadline ^ current)) / BITS;
+		if (level >= LEVELS)
+			level = LEVELS - 1;
+		int slot = level * SLOTS + (int) (deadline >>> level * BITS & MASK);
+		Timeout head = slots[slot];
+		timeout.slot = slot;
+		timeout.prev = null;
+		timeout.next = head;
+		if (head != null)
+			head.prev = timeout;
+		slots[slot] = timeout;
+	}
+
+	/**
+	 * Guarded by this.
+	 */
+	private void unlink(Timeout timeout) {
+		if (timeout.prev != null) {
+			timeout.prev.next = timeout.next;
+		} else {
+			slots[timeout.slot] = timeout.next;
+		}
+		if (timeout.next != null)
+			timeout.next.prev = timeout.prev;
+		timeout.next = null;
+		timeout.prev = null;
+	}
+
+	private void turn() {
+		for (; ; ) {
+			Timeout due;
+			boolean behind;
+			long next;
+			synchronized (this) {
+				if (size == 0) {
+					turning = null;
+					return;
+				}
+				// A tick at a time, so if we've fallen behind, earlier ticks still come first.
+				behind = current < (clock.getAsLong() - origin) / tick;
+				due = behind ? advance() : null;
+				next = (current + 1) * tick;
+			}
+			for (Timeout timeout = due; timeout != null; ) {
+				Timeout following = timeout.next;
+				timeout.next = null;
+				// Once it's fired, nothing else touches it.
+				@SuppressWarnings("unchecked")
+				T value = (T) timeout.value;
+				timeout.value = null;
+				try {
+					consumer.accept(value);
+				} catch (Throwable ignored) {
+					// The consumer's expected to deal with its own failures, it's not our place to kill the thread over it.
+				}
+				timeout = following;
+			}
+			long wait = next - (clock.getAsLong() - origin);
+			if (!behind && wait > 0)
+				LockSupport.parkNanos(this, wait);
+		}
+	}
+
+	/**
+	 * Moves the wheels on by a tick. Guarded by this.
+	 *
+	 * @return - Everything that came due, linked together.
+	 */
+	Timeout advance() {
+		long at = ++current;
+		// Every wheel whose turn just came round moves its current slot down a wheel, coarsest first.
+		for (int level = LEVELS - 1; level > 0; level--) {
+			if ((at & (1L << level * BITS) - 1) != 0)
+				continue;
+			int slot = level * SLOTS + (int) (at >>> level * BITS & MASK);
+			Timeout timeout = slots[slot];
+			slots[slot] = null;
+			while (timeout != null) {
+				Timeout following = timeout.next;
+				place(timeout);
+				timeout = following;
+			}
+		}
+		int slot = (int) (at & MASK);
+		Timeout due = slots[slot];
+		slots[slot] = null;
+		for (Timeout timeout = due; timeout != null; timeout = timeout.next) {
+			timeout.state = Timeout.FIRED;
+			timeout.prev = null;
+			size--;
+		}
+		return due;
+	}
+
+	/**
+	 * A single pending value.
+	 *
+	 * @author Jezza
+	 */
+	public static final class Timeout {
+		static final byte PENDING = 0;
+		static final byte FIRED = 1;
+		static final byte CANCELLED = 2;
+
+		private final TimingWheel<?> wheel;
+		/** all guarded by the wheel */
+		private Object value;
+		private long deadline;
+		private Timeout prev;
+		private Timeout next;
+		private int slot;
+		private byte state;
+
+		Timeout(TimingWheel<?> wheel, Object value) {
+			this.wheel = wheel;
+			this.value = value;
+		}
+
+		/**
+		 * @return - true if the value was still pending, and now never will be handed to the consumer, false if it already has been, or was already cancelled.
+		 */
+		public boolean cancel() {
+			synchronized (wheel) {
+				if (state != PENDING)
+					return false;
+				state = CANCELLED;
+				value = null;
+				wheel.unlink(this);
+				wheel.size--;
+				return true;
+			}
+		}
+
+		public boolean isCancelled() {
+			synchronized (wheel) {
+				return state == CANCELLED;
+			}
+		}
+
+		/**
+		 * @return - true if the value has been (Or is about to be) handed to the consumer.
+		 */
+		public boolean isDone() {
+			synchronized (wheel) {
+				return state == FIRED;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "[Timeout:" + (state == PENDING ? "pending" : state == FIRED ? "done" : "cancelled") + ']';
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package me.jezza.ion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+import me.jezza.ion.Deduplication.Window;
+import me.jezza.ion.bus.Priority;
+import me.jezza.ion.bus.interfaces.Subscriber;
+import me.jezza.ion.transport.MemoryNetwork;
+
+/**
+ * @author Jezza
+ */
+public class DeduplicationTest {
+	private static final int WINDOW = Deduplication.WINDOW;
+
+	@Test
+	public void sequencesWrapAround() {
+		Window window = new Window(1, 0, Integer.MAX_VALUE - 2, 0);
+		assertTrue(window.accept(Integer.MAX_VALUE - 1, 0));
+		assertTrue(window.accept(Integer.MAX_VALUE, 0));
+		assertTrue(window.accept(Integer.MIN_VALUE, 0));
+		assertTrue(window.accept(Integer.MIN_VALUE + 1, 0));
+
+		assertFalse(window.accept(Integer.MAX_VALUE, 0));
+		assertFalse(window.accept(Integer.MIN_VALUE, 0));
+		// Behind the highest, but only just, so it's still within the window.
+		assertTrue(window.accept(Integer.MAX_VALUE - 5, 0));
+		assertFalse(window.accept(Integer.MAX_VALUE - 5, 0));
+	}
+
+	@Test
+	public void jumpsOfAWholeWindowForgetEverything() {
+		Window window = new Window(1, 0, -1, 0);
+		for (int i = 0; i <= 10; i++)
+			assertTrue(window.accept(i, 0));
+
+		assertTrue(window.accept(10 + WINDOW, 0));
+		// Everything that was seen is now too old to tell.
+		assertFalse(window.accept(5, 0));
+		assertFalse(window.accept(10, 0));
+		// These share slots with what was seen before the jump, but were never seen themselves.
+		assertTrue(window.accept(9 + WINDOW, 0));
+		assertTrue(window.accept(11, 0));
+		assertFalse(window.accept(11, 0));
+
+		assertTrue(window.accept(10 + 5 * WINDOW, 0));
+		assertTrue(window.accept(10 + 4 * WINDOW + 1, 0));
+		assertFalse(window.accept(10 + 4 * WINDOW, 0));
+	}
+
+	@Test
+	public void slotsBetweenTheOldAndNewHighestAreCleared() {
+		Window window = new Window(1, 0, -1, 0);
+		for (int i = 0; i < WINDOW; i++)
+			assertTrue(window.accept(i, 0));
+
+		assertTrue(window.accept(WINDOW + 5, 0));
+		// The slots of WINDOW to WINDOW + 4 were last used by 0 to 4, which mustn't make these look like duplicates.
+		for (int i = WINDOW; i < WINDOW + 5; i++)
+			assertTrue(window.accept(i, 0));
+		// The rest of the window was left alone.
+		assertFalse(window.accept(6, 0));
+		assertFalse(window.accept(WINDOW - 1, 0));
+		assertFalse(window.accept(5, 0));
+	}
+
+	@Test
+	public void idleSendersAreEvictedOnceEveryoneIsTracked() {
+		AtomicLong clock = new AtomicLong();
+		Deduplication deduplication = new Deduplication(clock::get);
+		for (int node = 1; node <= Deduplication.SENDERS; node++)
+			assertTrue(deduplication.accept(datagram(node, 0, 0)));
+
+		// Nobody's idle, so there's no room, and the new sender goes unchecked.
+		long stranger = Deduplication.SENDERS + 1;
+		assertTrue(deduplication.accept(datagram(stranger, 0, 0)));
+		assertTrue(deduplication.accept(datagram(stranger, 0, 0)));
+
+		clock.set(Deduplication.IDLE - 1);
+		assertFalse(deduplication.accept(datagram(1, 0, 0)));
+
+		clock.set(Deduplication.IDLE + 1);
+		// Everyone but the first sender has gone idle, so they're forgotten, and there's room for the new one.
+		assertTrue(deduplication.accept(datagram(stranger, 0, 0)));
+		assertFalse(deduplication.accept(datagram(stranger, 0, 0)));
+		assertFalse(deduplication.accept(datagram(1, 0, 0)));
+		// Forgotten, so it's tracked from scratch.
+		assertTrue(deduplication.accept(datagram(2, 0, 0)));
+	}
+
+	@Test
+	public void lanesAreTrackedSeparately() {
+		Deduplication deduplication = new Deduplication();
+		assertTrue(deduplication.accept(datagram(1, 0, 0)));
+		assertTrue(deduplication.accept(datagram(1, 1, 0)));
+		assertTrue(deduplication.accept(datagram(1, 1, 10 * WINDOW)));
+		// Far behind lane 1, but not lane 0.
+		assertTrue(deduplication.accept(datagram(1, 0, 1)));
+		assertFalse(deduplication.accept(datagram(1, 0, 1)));
+		assertEquals(1, deduplication.dropped());
+	}
+
+	@Test(timeout = 30_000)
+	public void everyEventIsReceivedExactlyOnce() throws Exception {
+		MemoryNetwork network = new MemoryNetwork(46)
+				.duplicate(0.3)
+				.reorder(0.1, 2, TimeUnit.MILLISECONDS);
+		IonRuntime sending = new IonRuntime(network.host());
+		IonRuntime receiving = new IonRuntime(network.host());
+		try {
+			Ion sender = sending.cluster("deduplication", 5046);
+			Ion receiver = receiving.cluster("deduplication", 5046);
+			Counter counter = new Counter();
+			receiver.local().register(counter);
+
+			int events = 6000;
+			// A backed up sender drains its priorities in order, so the control events overtake far more than a window of bulk ones.
+			for (long i = 0; i < events; i++)
+				sender.post(i, i < events / 2 ? Priority.BULK : Priority.CONTROL);
+
+			while (counter.unique.size() < events)
+				Thread.sleep(10);
+			// Late duplicates.
+			Thread.sleep(100);
+			assertEquals(events, counter.received.get());
+			assertTrue(network.duplicated() > 0);
+			assertTrue(receiver.duplicates() > 0);
+		} finally {
+			sending.shutdown();
+			receiving.shutdown();
+		}
+	}
+
+	private static ByteBuf datagram(long node, int lane, int sequence) {
+		ByteBuf buf = Unpooled.buffer(Frame.HEADER);
+		Frame.event(1, node, Priority.NORMAL, "event").writeHeader(buf);
+		Frame.stamp(buf, lane, sequence);
+		return buf;
+	}
+
+	public static final class Counter {
+		final AtomicInteger received = new AtomicInteger();
+		final Set<Long> unique = ConcurrentHashMap.newKeySet();
+
+		@Subscriber
+		public void on(Long event) {
+			received.incrementAndGet();
+			unique.add(event);
+		}
+	}
+}
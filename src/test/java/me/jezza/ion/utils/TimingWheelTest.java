@@ -0,0 +1,150 @@
+package me.jezza.ion.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import me.jezza.ion.utils.TimingWheel.Timeout;
+
+/**
+ * Apart from {@link #valuesAreHandedToTheConsumer()}, the wheels are only ever turned by the tests themselves, a tick (Of a nanosecond) at a time,
+ * so every deadline is exact.
+ *
+ * @author Jezza
+ */
+public class TimingWheelTest {
+	private static final long FIRST = TimingWheel.SLOTS;
+	private static final long SECOND = FIRST * TimingWheel.SLOTS;
+	private static final long THIRD = SECOND * TimingWheel.SLOTS;
+	private static final long FOURTH = THIRD * TimingWheel.SLOTS;
+
+	@Test
+	public void valuesCascadeDownToTheFirstWheel() {
+		AtomicLong clock = new AtomicLong();
+		TimingWheel<Long> wheel = manual(clock);
+		// Off any wheel's boundary, so deadlines in the same wheel can still be in different turns of the one before it.
+		long start = 250;
+		clock.set(start);
+
+		long[] delays = {1, FIRST - 1, FIRST, FIRST + 7, 300, SECOND - 1, SECOND, SECOND + 4_464, THIRD - 1, THIRD, THIRD + 12_345};
+		Timeout[] timeouts = new Timeout[delays.length];
+		for (int i = 0; i < delays.length; i++)
+			timeouts[i] = wheel.schedule(delays[i], delays[i], TimeUnit.NANOSECONDS);
+		assertEquals(delays.length, wheel.size());
+
+		long[] fired = new long[delays.length];
+		for (long at = start + 1; at <= start + THIRD + 12_345; at++) {
+			if (!advance(wheel))
+				continue;
+			for (int i = 0; i < timeouts.length; i++) {
+				if (fired[i] == 0 && timeouts[i].isDone())
+					fired[i] = at;
+			}
+		}
+		for (int i = 0; i < delays.length; i++)
+			assertEquals("Delay of " + delays[i], start + delays[i], fired[i]);
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void deadlinesBeyondTheLastWheelWaitInIt() {
+		AtomicLong clock = new AtomicLong();
+		TimingWheel<Long> wheel = manual(clock);
+		// Just before the last wheel moves on a slot.
+		long start = THIRD - 1;
+		clock.set(start);
+
+		// Further ahead than the wheels reach, and in the last wheel's very next slot, once it's been clamped.
+		Timeout far = wheel.schedule(1L, FOURTH + 1, TimeUnit.NANOSECONDS);
+		Timeout near = wheel.schedule(2L, 10, TimeUnit.NANOSECONDS);
+
+		// The first tick brings the last wheel's slot round, and the far deadline has to go back into it, rather than anywhere it'd come up sooner.
+		for (long at = start + 1; at <= start + 10; at++)
+			assertEquals(at == start + 10, advance(wheel));
+		assertTrue(near.isDone());
+		assertFalse(far.isDone());
+		assertEquals(1, wheel.size());
+
+		// A whole turn of the third wheel, which is as far as any slot it could've been moved to.
+		for (long i = 0; i < THIRD; i++)
+			assertFalse(advance(wheel));
+		assertFalse(far.isDone());
+		assertTrue(far.cancel());
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void cancellingAfterFiringHasNoEffect() {
+		AtomicLong clock = new AtomicLong();
+		TimingWheel<Long> wheel = manual(clock);
+		Timeout timeout = wheel.schedule(1L, 3, TimeUnit.NANOSECONDS);
+		assertFalse(advance(wheel));
+		assertFalse(advance(wheel));
+		assertTrue(advance(wheel));
+
+		assertTrue(timeout.isDone());
+		assertFalse(timeout.cancel());
+		assertFalse(timeout.isCancelled());
+		assertTrue(timeout.isDone());
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void cancelledValuesNeverFire() {
+		AtomicLong clock = new AtomicLong();
+		TimingWheel<Long> wheel = manual(clock);
+		Timeout cancelled = wheel.schedule(1L, FIRST + 3, TimeUnit.NANOSECONDS);
+		Timeout kept = wheel.schedule(2L, FIRST + 3, TimeUnit.NANOSECONDS);
+		assertTrue(cancelled.cancel());
+		assertFalse(cancelled.cancel());
+		assertEquals(1, wheel.size());
+
+		for (long at = 1; at <= FIRST + 3; at++)
+			advance(wheel);
+		assertTrue(cancelled.isCancelled());
+		assertFalse(cancelled.isDone());
+		assertTrue(kept.isDone());
+		assertEquals(0, wheel.size());
+	}
+
+	@Test(timeout = 10_000)
+	public void valuesAreHandedToTheConsumer() throws InterruptedException {
+		CountDownLatch handed = new CountDownLatch(1);
+		TimingWheel<String> wheel = TimingWheel.of("timing-wheel-test", value -> {
+			if (value.equals("due"))
+				handed.countDown();
+		});
+		Timeout cancelled = wheel.schedule("cancelled", 5, TimeUnit.MILLISECONDS);
+		Timeout due = wheel.schedule("due", 20, TimeUnit.MILLISECONDS);
+		assertTrue(cancelled.cancel());
+
+		handed.await();
+		assertTrue(due.isDone());
+		assertFalse(due.cancel());
+		assertFalse(cancelled.isDone());
+		assertEquals(0, wheel.size());
+	}
+
+	/**
+	 * @return - A wheel with a tick of a nanosecond, that's only turned by {@link #advance(TimingWheel)}.
+	 */
+	private static TimingWheel<Long> manual(AtomicLong clock) {
+		return new TimingWheel<>(1, TimeUnit.NANOSECONDS, value -> {
+		}, r -> new Thread(() -> {
+		}), clock::get);
+	}
+
+	/**
+	 * @return - true if anything came due.
+	 */
+	private static boolean advance(TimingWheel<?> wheel) {
+		synchronized (wheel) {
+			return wheel.advance() != null;
+		}
+	}
+}